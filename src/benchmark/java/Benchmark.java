@@ -0,0 +1,44 @@
+import java.util.Map;
+
+/**
+ * A benchmark: state built for one library size and the named operations measured against it.
+ * BenchmarkRunner times each operation for a fixed period per iteration and reports the average time per call.
+ * The default package rules out JMH, whose generated code must live in a named package, so the benchmarks use
+ * this small harness instead.
+ */
+interface Benchmark {
+
+    /**
+     * A measured operation. Its result is handed to the runner so the JIT cannot drop the work as unused.
+     */
+    interface Operation {
+        /** returns the result of one call */
+        Object run();
+    }
+
+    /**
+     * Builds the state for a run; called once per library size before any iteration.
+     * parameter 'size' is the number of songs to benchmark against
+     */
+    void setUp(int size);
+
+    /**
+     * Resets state before each warmup and measured iteration. Does nothing unless overridden.
+     */
+    default void beforeIteration() {
+    }
+
+    /**
+     * Returns the operations to measure, by name, in the order they are run.
+     * returns the operations
+     */
+    Map<String, Operation> operations();
+
+    /**
+     * Tells the runner whether every thread needs its own instance, for state that is not thread-safe.
+     * returns true for one instance per thread, false to share one instance between all threads
+     */
+    default boolean perThread() {
+        return false;
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates repeatable synthetic libraries for the benchmarks.
+ * Play counts are skewed so a few songs hold most plays, like a real catalog, and titles share a small vocabulary so
+ * search words match many songs.
+ */
+final class BenchmarkData {
+
+    private static final String[] WORDS = {"love", "night", "rain", "fire", "heart", "summer", "city", "light",
+            "dream", "road", "wild", "blue", "gold", "home", "river", "dance"}; // Title vocabulary
+    private static final String[] GENRES = {"Pop", "Rock", "Indie", "Jazz", "Hip-Hop", "Country", "Classical",
+            "Electronic", "Folk", "Metal", "Soul", "Reggae"}; // Genres spread over the songs
+    private static final long MAX_PLAYS = 2_000_000_000L; // Upper bound of generated play counts
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Creates distinct songs.
+     * parameter 'count' is the number of songs
+     * parameter 'seed' makes the songs repeatable between runs
+     * returns the songs
+     */
+    static List<Song> songs(int count, long seed) {
+        Random random = new Random(seed);
+        int artists = Math.max(1, count / 8);
+        List<Song> songs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            double skew = random.nextDouble();
+            long plays = (long) (skew * skew * skew * skew * MAX_PLAYS);
+            songs.add(new Song(title, "Artist " + random.nextInt(artists), plays, 1960 + random.nextInt(65),
+                    GENRES[random.nextInt(GENRES.length)]));
+        }
+        return songs;
+    }
+
+    /**
+     * Creates a service whose library holds the given number of songs.
+     * parameter 'count' is the library size
+     * returns the filled in-memory service
+     */
+    static MusicStreamingService service(int count) {
+        MusicStreamingService service = new MusicStreamingService();
+        for (Song song : songs(count, count)) {
+            service.addSong(song);
+        }
+        return service;
+    }
+}
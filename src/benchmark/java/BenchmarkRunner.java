@@ -0,0 +1,189 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the benchmarks for each thread count and library size, reporting the average time per call.
+ * Usage: BenchmarkRunner [thread counts] [-p size=a,b] [-wi warmups] [-i iterations] [-r seconds] [name patterns]
+ * for example "1,4,16 -p size=1000 ServiceBenchmark". A pattern selects benchmarks whose "Class.operation" name
+ * contains a match for it.
+ * Each iteration runs the operation on every thread for a fixed time; warmup iterations let the JIT compile it first.
+ * The score is the mean over measured iterations of the per-thread average time, and the error is their standard
+ * deviation. Everything runs in this JVM, so run one benchmark class at a time to keep their profiles apart.
+ */
+public class BenchmarkRunner {
+
+    private static final String DEFAULT_THREADS = "1,4"; // Thread counts used when none are given
+    private static final int[] DEFAULT_SIZES = {10, 1000, 100000, 10000000}; // Library sizes used when none are given
+    private static final int DEFAULT_WARMUPS = 3; // Warmup iterations per operation
+    private static final int DEFAULT_ITERATIONS = 5; // Measured iterations per operation
+    private static final int DEFAULT_SECONDS = 2; // Length of each iteration
+
+    private static final Map<String, Supplier<Benchmark>> BENCHMARKS = new LinkedHashMap<>(); // Benchmarks by class name
+
+    static {
+        BENCHMARKS.put("PlaylistBenchmark", PlaylistBenchmark::new);
+        BENCHMARKS.put("ServiceBenchmark", ServiceBenchmark::new);
+        BENCHMARKS.put("LibraryUpdateBenchmark", LibraryUpdateBenchmark::new);
+    }
+
+    static volatile Object sink; // Last result of each thread's loop, published so results are never unused
+
+    public static void main(String[] args) throws InterruptedException {
+        String threads = DEFAULT_THREADS;
+        int[] sizes = DEFAULT_SIZES;
+        int warmups = DEFAULT_WARMUPS;
+        int iterations = DEFAULT_ITERATIONS;
+        long nanos = DEFAULT_SECONDS * 1_000_000_000L;
+        List<Pattern> patterns = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i == 0 && arg.matches("\\d+(,\\d+)*")) {
+                threads = arg;
+            } else if (arg.equals("-p") && i + 1 < args.length && args[i + 1].startsWith("size=")) {
+                sizes = parseInts(args[++i].substring("size=".length()));
+            } else if (arg.equals("-wi") && i + 1 < args.length) {
+                warmups = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-i") && i + 1 < args.length) {
+                iterations = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-r") && i + 1 < args.length) {
+                nanos = (long) (Double.parseDouble(args[++i]) * 1_000_000_000L);
+            } else if (arg.startsWith("-")) {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            } else {
+                patterns.add(Pattern.compile(arg));
+            }
+        }
+        System.out.printf(Locale.ROOT, "%-45s %10s %7s %14s   %12s  %s%n", "Benchmark", "(size)", "Threads", "Score",
+                "Error", "Units");
+        for (int count : parseInts(threads)) {
+            for (Map.Entry<String, Supplier<Benchmark>> benchmark : BENCHMARKS.entrySet()) {
+                List<String> names = selected(benchmark.getKey(), benchmark.getValue().get(), patterns);
+                if (names.isEmpty()) {
+                    continue;
+                }
+                for (int size : sizes) {
+                    List<Benchmark> states = setUp(benchmark.getValue(), size, count);
+                    for (String name : names) {
+                        double[] scores = new double[iterations];
+                        for (int i = 0; i < warmups + iterations; i++) {
+                            double score = iterate(states, name, count, nanos);
+                            if (i >= warmups) {
+                                scores[i - warmups] = score;
+                            }
+                        }
+                        report(benchmark.getKey() + "." + name, size, count, scores);
+                    }
+                }
+            }
+        }
+    }
+
+    /** returns the operations of a benchmark whose full name matches a pattern, or all of them if none are given */
+    private static List<String> selected(String className, Benchmark benchmark, List<Pattern> patterns) {
+        List<String> names = new ArrayList<>();
+        for (String name : benchmark.operations().keySet()) {
+            String full = className + "." + name;
+            if (patterns.isEmpty() || patterns.stream().anyMatch(pattern -> pattern.matcher(full).find())) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /** returns one set up instance per thread, or a single shared one */
+    private static List<Benchmark> setUp(Supplier<Benchmark> factory, int size, int threads) {
+        List<Benchmark> states = new ArrayList<>();
+        Benchmark first = factory.get();
+        first.setUp(size);
+        states.add(first);
+        if (first.perThread()) {
+            for (int t = 1; t < threads; t++) {
+                Benchmark state = factory.get();
+                state.setUp(size);
+                states.add(state);
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Runs one iteration: every thread calls the operation until the time is up.
+     * returns the average time per call in nanoseconds, averaged over the threads
+     */
+    private static double iterate(List<Benchmark> states, String name, int threads, long nanos)
+            throws InterruptedException {
+        for (Benchmark state : states) {
+            state.beforeIteration();
+        }
+        System.gc();
+        Control control = new Control();
+        CountDownLatch start = new CountDownLatch(1);
+        double[] perCall = new double[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            Benchmark.Operation operation = states.get(states.size() == 1 ? 0 : t).operations().get(name);
+            int thread = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                Object last = null;
+                long calls = 0;
+                long begin = System.nanoTime();
+                while (control.running) {
+                    last = operation.run();
+                    calls++;
+                }
+                perCall[thread] = (double) (System.nanoTime() - begin) / Math.max(1, calls);
+                sink = last;
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        control.running = false;
+        double total = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            total += perCall[t];
+        }
+        return total / threads;
+    }
+
+    /** Prints the mean and standard deviation of the measured iterations. */
+    private static void report(String name, int size, int threads, double[] scores) {
+        double mean = 0;
+        for (double score : scores) {
+            mean += score / scores.length;
+        }
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean) / Math.max(1, scores.length - 1);
+        }
+        System.out.printf(Locale.ROOT, "%-45s %10d %7d %14.1f ± %12.1f  ns/op%n", name, size, threads, mean,
+                Math.sqrt(variance));
+    }
+
+    /** returns the comma separated integers */
+    private static int[] parseInts(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    /** Stop flag shared by the threads of one iteration. */
+    private static final class Control {
+        private volatile boolean running = true; // Cleared when the iteration time is up
+    }
+}
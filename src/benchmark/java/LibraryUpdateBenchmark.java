@@ -0,0 +1,37 @@
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmarks library changes through the service, which update the library and every index.
+ * The service applies one change at a time, so runs with more threads measure how writers queue behind each other.
+ */
+public class LibraryUpdateBenchmark implements Benchmark {
+
+    private int size; // Songs in the library
+    private MusicStreamingService service; // Service under test
+    private List<Song> songs; // Library songs in their original order
+
+    /** Builds the library once per run. */
+    @Override
+    public void setUp(int size) {
+        this.size = size;
+        service = BenchmarkData.service(size);
+        songs = service.getLibrary().getSongs();
+    }
+
+    @Override
+    public Map<String, Operation> operations() {
+        return Map.of("removeAndAddSong", this::removeAndAddSong);
+    }
+
+    /** Removes a random song and adds it back, so the library size stays constant. */
+    private Object removeAndAddSong() {
+        Song song = songs.get(ThreadLocalRandom.current().nextInt(size));
+        synchronized (service) {
+            service.removeSong(song);
+            service.addSong(song);
+        }
+        return song;
+    }
+}
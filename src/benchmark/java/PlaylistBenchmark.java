@@ -0,0 +1,72 @@
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmarks the Playlist operations the library is built on.
+ * Each benchmark thread gets its own playlist, so runs with more threads show how the operations scale when they
+ * compete for memory bandwidth rather than for locks.
+ */
+public class PlaylistBenchmark implements Benchmark {
+
+    private int size; // Songs in the playlist at the start of each iteration
+    private List<Song> songs; // Songs the playlist is filled with
+    private Playlist playlist; // Playlist under test
+    private long added; // Songs added so far, used for unique titles
+    private boolean shuffle; // Shuffle state the next setShuffle call switches to
+
+    /** Generates the songs once per run. */
+    @Override
+    public void setUp(int size) {
+        this.size = size;
+        songs = BenchmarkData.songs(size, size);
+    }
+
+    /** Refills the playlist before each iteration so growth during addSong does not carry over. */
+    @Override
+    public void beforeIteration() {
+        playlist = new Playlist("Benchmark");
+        playlist.addAll(songs);
+        shuffle = true;
+    }
+
+    @Override
+    public boolean perThread() {
+        return true;
+    }
+
+    @Override
+    public Map<String, Operation> operations() {
+        Map<String, Operation> operations = new LinkedHashMap<>();
+        operations.put("addSong", this::addSong);
+        operations.put("getSongs", this::getSongs);
+        operations.put("getSongsAfterChange", this::getSongsAfterChange);
+        operations.put("setShuffle", this::setShuffle);
+        return operations;
+    }
+
+    /** Adds a new song, including creating it. */
+    private Object addSong() {
+        return playlist.addSong(new Song("Added " + added++, "Benchmark Artist", 0, 2024, "Pop"));
+    }
+
+    /** Reads the song list; repeated reads share one snapshot. */
+    private Object getSongs() {
+        return playlist.getSongs();
+    }
+
+    /** Reads the song list after a change, so every read rebuilds the snapshot. */
+    private Object getSongsAfterChange() {
+        Song song = songs.get((int) (added++ % size));
+        playlist.removeSong(song);
+        playlist.addSong(song);
+        return playlist.getSongs();
+    }
+
+    /** Switches shuffle on and off, building a new shuffle order every other call. */
+    private Object setShuffle() {
+        playlist.setShuffle(shuffle);
+        shuffle = !shuffle;
+        return playlist.isShuffled();
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmarks the service paths that run concurrently: plays and the queries that read the library.
+ * All threads share one service, so runs with more threads measure contention on the play path and the indexes.
+ */
+public class ServiceBenchmark implements Benchmark {
+
+    private static final int RESULT_SIZE = 100; // Songs matched by the play count threshold, and top-K size
+    private static final int WARM_PLAYS = 1000; // Plays made before measuring so the history is full
+
+    private int size; // Songs in the library
+    private MusicStreamingService service; // Service under test
+    private long threshold; // Play count matched by about RESULT_SIZE songs
+
+    /** Builds the library once per run and plays songs so the history has entries. */
+    @Override
+    public void setUp(int size) {
+        this.size = size;
+        service = BenchmarkData.service(size);
+        for (int i = 0; i < WARM_PLAYS; i++) {
+            service.playSong(i % size);
+        }
+        List<Song> top = service.topSongs(RESULT_SIZE);
+        threshold = top.get(top.size() - 1).getPlayCount();
+    }
+
+    @Override
+    public Map<String, Operation> operations() {
+        Map<String, Operation> operations = new LinkedHashMap<>();
+        operations.put("playSong", this::playSong);
+        operations.put("filterSongsByPlays", () -> service.filterSongsByPlays(threshold));
+        operations.put("countSongsByPlays", () -> service.countSongsByPlays(threshold));
+        operations.put("topSongs", () -> service.topSongs(RESULT_SIZE));
+        operations.put("playbackHistory", () -> service.getPlaybackHistory());
+        operations.put("findSongs", this::findSongs);
+        operations.put("search", this::search);
+        return operations;
+    }
+
+    /** Plays a random song by library position. */
+    private Object playSong() {
+        service.playSong(ThreadLocalRandom.current().nextInt(size));
+        return service;
+    }
+
+    /** Runs a compound genre, year range and play count filter. */
+    private Object findSongs() {
+        return service.findSongs(new SongQuery().genres("Pop").years(2020, 2022).minPlays(1_000_000));
+    }
+
+    /** Runs a two word search. */
+    private Object search() {
+        return service.search("night rain", RESULT_SIZE);
+    }
+}
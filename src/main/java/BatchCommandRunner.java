@@ -0,0 +1,256 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs library commands read from a script or stream instead of the interactive menu.
+ * Each line holds one command and its fields separated by '|'; blank lines and lines starting with '#' are skipped.
+ *
+ *   add|title|artist|plays|year|genre     remove|title|artist|year     play|title|artist|year
+ *   filter|minimum plays                  shuffle                      history[|limit]
+ *   next                                  previous                     repeat|off|all|one
+ *   enqueue|title|artist|year             playnext|title|artist|year
+ *
+ * next and previous play through the library in its current order with one play queue kept for the whole script;
+ * enqueue and playnext queue a song ahead of the rest of the library.
+ * Output goes to a Writer that should be buffered; nothing is flushed until the script ends, so replaying millions
+ * of commands runs at disk speed rather than console speed. A line that fails for any reason, including a song removed
+ * by another client between finding and changing it, is reported and counted, and the script carries on.
+ */
+public class BatchCommandRunner {
+
+    private static final char SEPARATOR = '|'; // Separates the command and its fields
+    private static final String NEW_LINE = System.lineSeparator(); // Ends every output line
+
+    private final MusicStreamingService service; // Service the commands run against
+    private final Writer out; // Destination of command output
+    private final SongFormatter formatter = new SongFormatter(); // Writes listing rows without creating strings
+    private PlayQueue queue; // Play queue of the next and previous commands, created on first use
+
+    /**
+     * Creates a runner for a service.
+     * parameter 'service' is the service the commands change
+     * parameter 'out' receives command output, ideally buffered
+     */
+    public BatchCommandRunner(MusicStreamingService service, Writer out) {
+        this.service = service;
+        this.out = out;
+    }
+
+    /**
+     * Runs every command in a script, then writes a summary line and flushes the output.
+     * parameter 'in' is the script
+     * returns the number of lines that failed
+     * throws IOException if the script cannot be read or the output cannot be written
+     */
+    public int run(BufferedReader in) throws IOException {
+        int commands = 0;
+        int errors = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            commands++;
+            try {
+                execute(split(line));
+            } catch (IllegalArgumentException e) {
+                errors++;
+                out.write("Line " + lineNumber + ": " + e.getMessage() + NEW_LINE);
+            } catch (RuntimeException e) {
+                errors++; // Any other failure of one command, so the rest of the script still runs
+                out.write("Line " + lineNumber + ": failed with " + e + NEW_LINE);
+            }
+        }
+        out.write("Processed " + commands + " commands (" + errors + " failed)" + NEW_LINE);
+        out.flush();
+        return errors;
+    }
+
+    /**
+     * Runs one parsed command.
+     * throws IllegalArgumentException if the command is unknown or its fields are invalid
+     */
+    private void execute(String[] fields) throws IOException {
+        switch (fields[0].toLowerCase(Locale.ROOT)) {
+            case "add": add(fields); break;
+            case "remove": remove(fields); break;
+            case "play": play(fields); break;
+            case "filter": filter(fields); break;
+            case "shuffle": shuffle(fields); break;
+            case "history": history(fields); break;
+            case "next": next(fields); break;
+            case "previous": previous(fields); break;
+            case "enqueue": queue().enqueue(find(fields)); break;
+            case "playnext": queue().playNext(find(fields)); break;
+            case "repeat": repeat(fields); break;
+            default: throw new IllegalArgumentException("Unknown command '" + fields[0] + "'");
+        }
+    }
+
+    /** Adds a song: add|title|artist|plays|year|genre */
+    private void add(String[] fields) throws IOException {
+        expect(fields, 6);
+        Song song = new Song(fields[1], fields[2], parseLong(fields[3], "play count"), parseInt(fields[4], "year"),
+                fields[5]);
+        if (service.addSong(song)) {
+            out.write("Added: " + song + NEW_LINE);
+        } else {
+            out.write("Song already in library: " + song + NEW_LINE);
+        }
+    }
+
+    /** Removes a song: remove|title|artist|year */
+    private void remove(String[] fields) throws IOException {
+        Song song = find(fields);
+        if (service.removeSongById(song.getId()) == null) {
+            throw new IllegalArgumentException("Song no longer in library: " + song); // Removed by someone else meanwhile
+        }
+        out.write("Removed: " + song + NEW_LINE);
+    }
+
+    /** Plays a song: play|title|artist|year */
+    private void play(String[] fields) throws IOException {
+        Song song = find(fields);
+        if (!service.playSongById(song.getId())) {
+            throw new IllegalArgumentException("Song no longer in library: " + song); // Removed by someone else meanwhile
+        }
+        out.write("Playing: " + song + NEW_LINE);
+    }
+
+    /** Lists songs over a play count: filter|minimum plays */
+    private void filter(String[] fields) throws IOException {
+        expect(fields, 2);
+        long minPlays = parseLong(fields[1], "play count");
+        Collection<Song> songs = service.filterSongsByPlays(minPlays);
+        out.write("Songs with " + minPlays + " or more plays: " + songs.size() + NEW_LINE);
+        writeNumbered(songs);
+    }
+
+    /** Toggles shuffle mode: shuffle */
+    private void shuffle(String[] fields) throws IOException {
+        expect(fields, 1);
+        boolean shuffled = service.toggleShuffle();
+        out.write("Shuffle mode is now " + (shuffled ? "ON" : "OFF") + NEW_LINE);
+    }
+
+    /** Lists recent plays: history[|limit] */
+    private void history(String[] fields) throws IOException {
+        if (fields.length > 2) {
+            expect(fields, 2);
+        }
+        int limit = fields.length == 2 ? parseInt(fields[1], "limit") : service.getHistoryDepth();
+        List<Song> songs = service.getPlaybackHistory(limit);
+        out.write("Playback History (last " + limit + " songs): " + songs.size() + NEW_LINE);
+        writeNumbered(songs);
+    }
+
+    /** Plays the next track of the play queue: next */
+    private void next(String[] fields) throws IOException {
+        expect(fields, 1);
+        Song song = service.playNext(queue());
+        out.write((song == null ? "End of queue" : "Playing: " + song) + NEW_LINE);
+    }
+
+    /** Plays the previous track of the play queue: previous */
+    private void previous(String[] fields) throws IOException {
+        expect(fields, 1);
+        Song song = service.playPrevious(queue());
+        out.write((song == null ? "Start of queue" : "Playing: " + song) + NEW_LINE);
+    }
+
+    /** Sets the repeat mode of the play queue: repeat|off|all|one */
+    private void repeat(String[] fields) throws IOException {
+        expect(fields, 2);
+        PlayQueue.RepeatMode mode;
+        try {
+            mode = PlayQueue.RepeatMode.valueOf(fields[1].toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid repeat mode '" + fields[1] + "'");
+        }
+        queue().setRepeatMode(mode);
+        out.write("Repeat mode is now " + mode + NEW_LINE);
+    }
+
+    /** returns the script's play queue, creating it on first use */
+    private PlayQueue queue() {
+        if (queue == null) {
+            queue = service.newPlayQueue();
+        }
+        return queue;
+    }
+
+    /**
+     * Looks up the library song named by title|artist|year fields.
+     * throws IllegalArgumentException if the fields are invalid or no such song is in the library
+     */
+    private Song find(String[] fields) {
+        expect(fields, 4);
+        Song song = service.getLibrary().findSong(fields[1], fields[2], parseInt(fields[3], "year"));
+        if (song == null) {
+            throw new IllegalArgumentException("No song '" + fields[1] + "' by " + fields[2] + " (" + fields[3] + ")");
+        }
+        return song;
+    }
+
+    /** Writes songs as a numbered list. */
+    private void writeNumbered(Collection<Song> songs) throws IOException {
+        int index = 1;
+        for (Song song : songs) {
+            formatter.write(out, index++, song);
+        }
+    }
+
+    /**
+     * Splits a line on the separator, trimming each field.
+     * returns the command followed by its fields
+     */
+    static String[] split(String line) {
+        int count = 1;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == SEPARATOR) {
+                count++;
+            }
+        }
+        String[] fields = new String[count];
+        int start = 0;
+        for (int field = 0; field < count; field++) {
+            int end = field == count - 1 ? line.length() : line.indexOf(SEPARATOR, start);
+            fields[field] = line.substring(start, end).trim();
+            start = end + 1;
+        }
+        return fields;
+    }
+
+    /** throws IllegalArgumentException unless a command has the given number of fields, itself included */
+    private static void expect(String[] fields, int count) {
+        if (fields.length != count) {
+            throw new IllegalArgumentException("'" + fields[0] + "' expects " + (count - 1) + " fields but got "
+                    + (fields.length - 1));
+        }
+    }
+
+    /** returns the field as a long, or throws IllegalArgumentException naming what it should have been */
+    private static long parseLong(String field, String name) {
+        try {
+            return Long.parseLong(field);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " '" + field + "'");
+        }
+    }
+
+    /** returns the field as an int, or throws IllegalArgumentException naming what it should have been */
+    private static int parseInt(String field, String name) {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " '" + field + "'");
+        }
+    }
+}
@@ -0,0 +1,441 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative ints in the Roaring layout.
+ * Values are grouped by their high 16 bits into chunks of 65536. A sparse chunk stores its low 16 bits in a sorted
+ * char array; once it holds more than 4096 values it switches to a fixed 8 KB bitmap, and back again when it empties
+ * out. Intersections and unions work chunk by chunk, so their cost follows the number of stored values rather than
+ * the range of ids. The bitmap is not thread-safe.
+ */
+public class CompressedBitmap {
+
+    private static final int ARRAY_LIMIT = 4096; // Most values a chunk stores as a sorted array
+    private static final int WORDS = 1024; // Longs in a bitmap chunk, covering 65536 values
+
+    private char[] keys; // High 16 bits of each chunk, ascending
+    private Container[] containers; // Chunk contents, parallel to keys
+    private int chunks; // Number of chunks in use
+
+    /**
+     * Creates an empty bitmap.
+     */
+    public CompressedBitmap() {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+    }
+
+    /**
+     * Adds a value.
+     * parameter 'value' is the value to add, which must not be negative
+     * returns true if the value was not already present
+     * throws IllegalArgumentException if the value is negative
+     */
+    public boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Bitmap values cannot be negative");
+        }
+        char key = (char) (value >>> 16);
+        int chunk = find(key);
+        if (chunk < 0) {
+            chunk = -chunk - 1;
+            insertChunk(chunk, key, new ArrayContainer());
+        }
+        Container container = containers[chunk];
+        int before = container.cardinality();
+        containers[chunk] = container.add((char) value);
+        return containers[chunk].cardinality() != before;
+    }
+
+    /**
+     * Removes a value.
+     * returns true if the value was present
+     */
+    public boolean remove(int value) {
+        int chunk = value < 0 ? -1 : find((char) (value >>> 16));
+        if (chunk < 0) {
+            return false;
+        }
+        Container container = containers[chunk];
+        int before = container.cardinality();
+        container = container.remove((char) value);
+        if (container.cardinality() == 0) {
+            removeChunk(chunk);
+        } else {
+            containers[chunk] = container;
+        }
+        return container.cardinality() != before;
+    }
+
+    /**
+     * Checks for a value.
+     * returns true if the value is present
+     */
+    public boolean contains(int value) {
+        int chunk = value < 0 ? -1 : find((char) (value >>> 16));
+        return chunk >= 0 && containers[chunk].contains((char) value);
+    }
+
+    /**
+     * Counts the values.
+     * returns the number of values present
+     */
+    public int cardinality() {
+        int count = 0;
+        for (int i = 0; i < chunks; i++) {
+            count += containers[i].cardinality();
+        }
+        return count;
+    }
+
+    /** return true if the bitmap holds no values */
+    public boolean isEmpty() {
+        return chunks == 0;
+    }
+
+    /**
+     * Intersects two bitmaps. Only chunks present in both are visited.
+     * returns a new bitmap with the values present in both
+     */
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < chunks && j < other.chunks) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.insertChunk(result.chunks, keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Unites two bitmaps.
+     * returns a new bitmap with the values present in either
+     */
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < chunks || j < other.chunks) {
+            if (j == other.chunks || (i < chunks && keys[i] < other.keys[j])) {
+                result.insertChunk(result.chunks, keys[i], containers[i].copy());
+                i++;
+            } else if (i == chunks || keys[i] > other.keys[j]) {
+                result.insertChunk(result.chunks, other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.insertChunk(result.chunks, keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Calls an action for every value in ascending order.
+     * parameter 'action' receives each value
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < chunks; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * Copies the values into an array.
+     * returns the values in ascending order
+     */
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] next = {0};
+        forEach(value -> values[next[0]++] = value);
+        return values;
+    }
+
+    /** returns the chunk index of a key, or -(insertion point) - 1 if it has no chunk */
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, chunks, key);
+    }
+
+    /** Inserts a chunk at a position, keeping keys ascending. */
+    private void insertChunk(int position, char key, Container container) {
+        if (chunks == keys.length) {
+            keys = Arrays.copyOf(keys, chunks * 2);
+            containers = Arrays.copyOf(containers, chunks * 2);
+        }
+        System.arraycopy(keys, position, keys, position + 1, chunks - position);
+        System.arraycopy(containers, position, containers, position + 1, chunks - position);
+        keys[position] = key;
+        containers[position] = container;
+        chunks++;
+    }
+
+    /** Removes the chunk at a position. */
+    private void removeChunk(int position) {
+        System.arraycopy(keys, position + 1, keys, position, chunks - position - 1);
+        System.arraycopy(containers, position + 1, containers, position, chunks - position - 1);
+        containers[--chunks] = null;
+    }
+
+    /**
+     * The low 16 bits of the values in one chunk. Updates return the container to use afterwards, which may be a
+     * different kind when the chunk crosses the array limit.
+     */
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container copy();
+
+        abstract void forEach(int high, IntConsumer action);
+    }
+
+    /**
+     * Sparse chunk: sorted low bits.
+     */
+    private static final class ArrayContainer extends Container {
+        private char[] values; // Sorted low bits
+        private int size; // Number of values in use
+
+        private ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        private ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        Container add(char value) {
+            int position = Arrays.binarySearch(values, 0, size, value);
+            if (position >= 0) {
+                return this;
+            }
+            if (size == ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+            position = -position - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(size * 2, ARRAY_LIMIT));
+            }
+            System.arraycopy(values, position, values, position + 1, size - position);
+            values[position] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int position = Arrays.binarySearch(values, 0, size, value);
+            if (position >= 0) {
+                System.arraycopy(values, position + 1, values, position, size - position - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[size];
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while (i < size && j < array.size) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            char[] result = new char[size + array.size];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < array.size) {
+                if (j == array.size || (i < size && values[i] < array.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i == size || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i++];
+                    j++;
+                }
+            }
+            ArrayContainer union = new ArrayContainer(result, count);
+            return count > ARRAY_LIMIT ? union.toBitmap() : union;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(size, 1)), size);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        /** returns a bitmap container with the same values */
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < size; i++) {
+                bitmap.words[values[i] >>> 6] |= 1L << values[i];
+            }
+            bitmap.cardinality = size;
+            return bitmap;
+        }
+    }
+
+    /**
+     * Dense chunk: one bit per possible low value.
+     */
+    private static final class BitmapContainer extends Container {
+        private final long[] words = new long[WORDS]; // Bit per low value
+        private int cardinality; // Number of set bits
+
+        @Override
+        Container add(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] = before | 1L << value;
+            if (before != words[value >>> 6]) {
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] = before & ~(1L << value);
+            if (before != words[value >>> 6]) {
+                cardinality--;
+            }
+            return cardinality <= ARRAY_LIMIT ? toArray() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & 1L << value) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            BitmapContainer result = new BitmapContainer();
+            long[] otherWords = ((BitmapContainer) other).words;
+            for (int i = 0; i < WORDS; i++) {
+                result.words[i] = words[i] & otherWords[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+            return result.cardinality <= ARRAY_LIMIT ? result.toArray() : result;
+        }
+
+        @Override
+        Container or(Container other) {
+            BitmapContainer result = (BitmapContainer) copy();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.size; i++) {
+                    result.add(array.values[i]);
+                }
+                return result;
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            result.cardinality = 0;
+            for (int i = 0; i < WORDS; i++) {
+                result.words[i] |= otherWords[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+            return result;
+        }
+
+        @Override
+        Container copy() {
+            BitmapContainer copy = new BitmapContainer();
+            System.arraycopy(words, 0, copy.words, 0, WORDS);
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(high | i << 6 | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        /** returns an array container with the same values */
+        private ArrayContainer toArray() {
+            char[] values = new char[Math.max(cardinality, 1)];
+            int[] count = {0};
+            forEach(0, value -> values[count[0]++] = (char) value);
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * Receives progress from a SongImporter while an import runs. Callbacks arrive on the importing thread, in file order.
+ */
+public interface ImportListener {
+
+    /**
+     * Called for each row that will not be imported.
+     * parameter 'line' is the one based line number of the row in the file
+     * parameter 'reason' explains why the row was rejected
+     */
+    default void rowRejected(long line, String reason) {
+    }
+
+    /**
+     * Called after each chunk of rows has been checked.
+     * parameter 'rows' is the number of data rows read so far
+     * parameter 'accepted' is the number of those rows queued for import
+     * parameter 'rejected' is the number of those rows rejected
+     */
+    default void progress(long rows, long accepted, long rejected) {
+    }
+}
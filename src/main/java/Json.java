@@ -0,0 +1,240 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Minimal JSON support for the HTTP API: writing strings and reading flat request objects.
+ * Only objects whose values are strings, numbers, booleans or null are read; nested values are rejected.
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Appends a value as a JSON string literal, or null.
+     * parameter 'out' is the builder to append to
+     * parameter 'value' is the string to quote, may be null
+     * returns the builder
+     */
+    static StringBuilder appendString(StringBuilder out, String value) {
+        if (value == null) {
+            return out.append("null");
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"');
+    }
+
+    /**
+     * Appends a song as a JSON object.
+     * parameter 'out' is the builder to append to
+     * parameter 'song' specifies the song to write
+     * returns the builder
+     */
+    static StringBuilder appendSong(StringBuilder out, Song song) {
+        out.append("{\"id\":").append(song.getId()).append(",\"title\":");
+        appendString(out, song.getTitle()).append(",\"artist\":");
+        appendString(out, song.getArtist()).append(",\"plays\":").append(song.getPlayCount())
+                .append(",\"year\":").append(song.getYear()).append(",\"genre\":");
+        return appendString(out, song.getGenre()).append('}');
+    }
+
+    /**
+     * Appends songs as a JSON array of objects.
+     * returns the builder
+     */
+    static StringBuilder appendSongs(StringBuilder out, Iterable<Song> songs) {
+        out.append('[');
+        boolean first = true;
+        for (Song song : songs) {
+            if (!first) {
+                out.append(',');
+            }
+            appendSong(out, song);
+            first = false;
+        }
+        return out.append(']');
+    }
+
+    /**
+     * Reads a flat JSON object.
+     * parameter 'text' is the JSON text
+     * returns the members in order; values are String, Long, Double, Boolean or null
+     * throws IllegalArgumentException if the text is not a flat JSON object
+     */
+    static Map<String, Object> parseObject(String text) {
+        Parser parser = new Parser(text);
+        parser.skipWhitespace();
+        Map<String, Object> members = parser.object();
+        parser.skipWhitespace();
+        if (parser.position != text.length()) {
+            throw parser.error("Unexpected text after object");
+        }
+        return members;
+    }
+
+    /**
+     * Recursive descent reader over one JSON text.
+     */
+    private static final class Parser {
+        private final String text; // Text being read
+        private int position; // Next character to read
+
+        private Parser(String text) {
+            this.text = text;
+        }
+
+        /** returns the members of the object starting at the current position */
+        private Map<String, Object> object() {
+            Map<String, Object> members = new LinkedHashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return members;
+            }
+            while (true) {
+                skipWhitespace();
+                String name = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                members.put(name, value());
+                skipWhitespace();
+                char next = next();
+                if (next == '}') {
+                    return members;
+                }
+                if (next != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        /** returns the scalar value starting at the current position */
+        private Object value() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (text.startsWith("true", position)) {
+                position += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", position)) {
+                position += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                return number();
+            }
+            throw error("Unsupported value");
+        }
+
+        /** returns the number starting at the current position, as a Long when it has no fraction or exponent */
+        private Object number() {
+            int start = position;
+            boolean integral = true;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                integral &= Character.isDigit(text.charAt(position)) || text.charAt(position) == '-';
+                position++;
+            }
+            String literal = text.substring(start, position);
+            try {
+                return integral ? (Object) Long.parseLong(literal) : (Object) Double.parseDouble(literal);
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + literal + "'");
+            }
+        }
+
+        /** returns the string literal starting at the current position, unescaped */
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case '"': case '\\': case '/': value.append(escaped); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error("Truncated escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid escape");
+                        }
+                        position += 4;
+                        break;
+                    default: throw error("Invalid escape");
+                }
+            }
+        }
+
+        /** Skips spaces, tabs and line breaks. */
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        /** Reads the given character or fails. */
+        private void expect(char c) {
+            if (next() != c) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        /** returns the next character without consuming it */
+        private char peek() {
+            if (position >= text.length()) {
+                throw error("Unexpected end of JSON");
+            }
+            return text.charAt(position);
+        }
+
+        /** returns the next character, consuming it */
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        /** returns an exception describing a problem at the current position */
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position);
+        }
+    }
+}
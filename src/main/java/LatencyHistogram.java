@@ -0,0 +1,169 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets.
+ * Values below 128 get a bucket each; above that every power of two is split into 64 buckets, so any recorded value
+ * is reported within about 1.6% while the whole long range fits in under 4000 buckets.
+ * Recording is one atomic increment plus a striped add, so it is cheap enough for every call on a hot path and never
+ * blocks. The bucket counts are striped too: threads count into one of several bucket arrays, picked by thread id and
+ * created on first use, so threads timing the same operation do not fight over the cache line of a popular bucket.
+ * Readers take a Snapshot, which sums the stripes and is consistent per bucket but not across buckets while recording
+ * continues.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 7; // Values below 2^SUB_BITS are counted exactly
+    private static final int EXACT = 1 << SUB_BITS; // Number of exact buckets
+    private static final int HALF = EXACT / 2; // Buckets per power of two above the exact range
+    private static final int BUCKETS = EXACT + (63 - SUB_BITS) * HALF; // Buckets covering every non-negative long
+    private static final int STRIPES = // Bucket arrays to spread threads over: processors rounded up to a power of two
+            Integer.highestOneBit(Math.min(64, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes; // Values recorded per bucket, null until a stripe is used
+    private final LongAdder total; // Sum of all recorded values
+    private final AtomicLong max; // Largest value recorded
+
+    /**
+     * Creates an empty histogram.
+     */
+    public LatencyHistogram() {
+        this.stripes = new AtomicReferenceArray<>(STRIPES);
+        this.total = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records one value. Negative values, such as from a clock step, are recorded as 0.
+     * parameter 'nanos' is the measured latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        stripe().incrementAndGet(bucket(value));
+        total.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Copies the current counts.
+     * returns a snapshot of the values recorded so far
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            AtomicLongArray counts = stripes.get(stripe);
+            for (int i = 0; counts != null && i < BUCKETS; i++) {
+                long added = counts.get(i);
+                copy[i] += added;
+                count += added;
+            }
+        }
+        return new Snapshot(copy, count, total.sum(), max.get());
+    }
+
+    /** returns the calling thread's bucket counts, creating them on the stripe's first use */
+    private AtomicLongArray stripe() {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        AtomicLongArray counts = stripes.get(stripe);
+        if (counts == null) {
+            stripes.compareAndSet(stripe, null, new AtomicLongArray(BUCKETS));
+            counts = stripes.get(stripe);
+        }
+        return counts;
+    }
+
+    /** returns the bucket a non-negative value is counted in */
+    static int bucket(long value) {
+        if (value < EXACT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return EXACT + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+    }
+
+    /** returns the largest value counted in a bucket */
+    static long highestValue(int bucket) {
+        if (bucket < EXACT) {
+            return bucket;
+        }
+        int shift = (bucket - EXACT) / HALF + 1;
+        long sub = (bucket - EXACT) % HALF + HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Point-in-time copy of a histogram, used to read counts and percentiles.
+     */
+    public static final class Snapshot {
+        private final long[] counts; // Values per bucket
+        private final long count; // Number of values
+        private final long total; // Sum of the values
+        private final long max; // Largest value
+
+        private Snapshot(long[] counts, long count, long total, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /** return The number of values recorded */
+        public long getCount() {
+            return count;
+        }
+
+        /** return The mean value, 0 if nothing was recorded */
+        public double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /** return The largest value recorded, 0 if nothing was recorded */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the value at or below which the given percentage of values fall.
+         * parameter 'percentile' is the percentage, from 0 to 100
+         * returns the percentile value, reported as the top of its bucket; 0 if nothing was recorded
+         * throws IllegalArgumentException if the percentile is outside 0 to 100
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100");
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        /** return The median value */
+        public long getP50() {
+            return getValueAtPercentile(50);
+        }
+
+        /** return The 99th percentile value */
+        public long getP99() {
+            return getValueAtPercentile(99);
+        }
+
+        /** return The 99.9th percentile value */
+        public long getP999() {
+            return getValueAtPercentile(99.9);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Migrates the legacy songs.dat file, a Java-serialized ArrayList of Song objects, into the binary SongCatalog format.
+ * The songs become the first snapshot of the service's data directory, so the next start of the service opens them.
+ * Song is no longer Serializable, so the legacy records are read into a private stand-in class with the same fields,
+ * and the stream refuses every class the legacy format does not use.
+ */
+public class LegacyCatalogImporter {
+
+    private static final String LEGACY_SONG_CLASS = "Song"; // Class name recorded in the legacy stream
+    private static final Set<String> LEGACY_CLASSES = Set.of( // Classes the legacy stream may hold besides songs
+            "java.util.ArrayList", "java.lang.String", "java.lang.Number", "java.lang.Boolean", "java.lang.Byte",
+            "java.lang.Character", "java.lang.Short", "java.lang.Integer", "java.lang.Long", "java.lang.Float",
+            "java.lang.Double");
+
+    /**
+     * Converts a legacy file from the command line.
+     * Usage: LegacyCatalogImporter [legacy file] [data directory], defaulting to songs.dat and the application's data
+     */
+    public static void main(String[] args) throws IOException {
+        Path legacy = Paths.get(args.length > 0 ? args[0] : "songs.dat");
+        Path dataDir = Paths.get(args.length > 1 ? args[1] : "data");
+        int imported = migrate(legacy, dataDir);
+        System.out.println("Imported " + imported + " songs from " + legacy + " into " + dataDir);
+    }
+
+    /**
+     * Reads a legacy file and writes its songs as the starting library of a service data directory.
+     * parameter 'legacy' is the serialized songs.dat file
+     * parameter 'dataDir' is the data directory MusicStreamingService.open reads, created if missing
+     * returns the number of songs migrated, leaving out repeats of a song
+     * throws IOException if the legacy file cannot be read, the directory already holds a library, or the catalog
+     * cannot be written
+     */
+    public static int migrate(Path legacy, Path dataDir) throws IOException {
+        return PlayJournal.seed(dataDir, readLegacy(legacy));
+    }
+
+    /**
+     * Reads the songs from a legacy file. Only the leading song list is read; anything serialized after it is ignored.
+     * Records that no longer pass Song validation are skipped.
+     * parameter 'legacy' is the serialized songs.dat file
+     * returns the songs, in file order
+     * throws IOException if the file is not a legacy song list
+     */
+    public static List<Song> readLegacy(Path legacy) throws IOException {
+        Object stored;
+        try (ObjectInputStream in = new LegacyInputStream(new BufferedInputStream(Files.newInputStream(legacy)))) {
+            stored = in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unexpected class in legacy song file: " + e.getMessage(), e);
+        }
+        if (!(stored instanceof List)) {
+            throw new IOException("Legacy song file does not start with a song list");
+        }
+        List<Song> songs = new ArrayList<>();
+        for (Object item : (List<?>) stored) {
+            if (!(item instanceof LegacySong)) {
+                throw new IOException("Unexpected entry in legacy song list: " + item);
+            }
+            LegacySong old = (LegacySong) item;
+            try {
+                songs.add(new Song(old.title, old.artist, old.playCount, old.year, old.genre));
+            } catch (IllegalArgumentException e) {
+                // Records the current Song rules reject cannot be migrated
+            }
+        }
+        return songs;
+    }
+
+    /**
+     * Object stream that reads serialized Song records into LegacySong and refuses any class the legacy song list
+     * does not use, so a crafted file cannot make it load or run anything else.
+     */
+    private static final class LegacyInputStream extends ObjectInputStream {
+
+        private LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            ObjectStreamClass descriptor = super.readClassDescriptor();
+            if (LEGACY_SONG_CLASS.equals(descriptor.getName())) {
+                return ObjectStreamClass.lookup(LegacySong.class);
+            }
+            return descriptor;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass descriptor) throws IOException, ClassNotFoundException {
+            String name = descriptor.getName();
+            if (name.equals(LegacySong.class.getName()) || LEGACY_CLASSES.contains(name)) {
+                return super.resolveClass(descriptor);
+            }
+            throw new InvalidClassException(name, "Not allowed in a legacy song file");
+        }
+    }
+
+    /**
+     * Field-for-field stand-in for the serialized form of the old Song class.
+     */
+    private static final class LegacySong implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private long playCount;
+        private int year;
+        private String artist;
+        private String genre;
+        private String title;
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Open addressing hash map from positive long keys to int values, stored in two primitive arrays.
+ * Lookups hash the key once and probe neighbouring cells, with no boxing and no entry objects, so finding a song's
+ * slot by id costs a couple of array reads. Deletion shifts later entries of the probe run back instead of leaving
+ * tombstones, so lookups never slow down as keys come and go. The map is not thread-safe.
+ */
+public class LongIntHashMap {
+
+    static final int MISSING = -1; // Returned by get for keys not in the map
+    private static final long EMPTY = 0; // Key marking an unused cell; real keys are positive
+
+    private long[] keys; // Cell keys, EMPTY for unused cells
+    private int[] values; // Cell values, parallel to keys
+    private int size; // Number of keys in the map
+    private int mask; // Cell count minus one, used to wrap probes
+
+    /**
+     * Creates an empty map.
+     */
+    public LongIntHashMap() {
+        this.keys = new long[16];
+        this.values = new int[16];
+        this.mask = 15;
+    }
+
+    /**
+     * Returns the value stored for a key.
+     * returns the value, or MISSING if the key is not in the map
+     */
+    public int get(long key) {
+        if (key <= 0) {
+            return MISSING;
+        }
+        for (int cell = hash(key) & mask; ; cell = (cell + 1) & mask) {
+            long stored = keys[cell];
+            if (stored == key) {
+                return values[cell];
+            }
+            if (stored == EMPTY) {
+                return MISSING;
+            }
+        }
+    }
+
+    /**
+     * Stores a value for a key, replacing any previous value.
+     * parameter 'key' must be positive
+     * throws IllegalArgumentException if the key is not positive
+     */
+    public void put(long key, int value) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Keys must be positive");
+        }
+        int cell = hash(key) & mask;
+        while (keys[cell] != EMPTY && keys[cell] != key) {
+            cell = (cell + 1) & mask;
+        }
+        if (keys[cell] == EMPTY) {
+            keys[cell] = key;
+            if (++size > keys.length / 2) {
+                values[cell] = value;
+                resize(keys.length * 2);
+                return;
+            }
+        }
+        values[cell] = value;
+    }
+
+    /**
+     * Removes a key.
+     * returns the value the key had, or MISSING if it was not in the map
+     */
+    public int remove(long key) {
+        if (key <= 0) {
+            return MISSING;
+        }
+        int cell = hash(key) & mask;
+        while (keys[cell] != key) {
+            if (keys[cell] == EMPTY) {
+                return MISSING;
+            }
+            cell = (cell + 1) & mask;
+        }
+        int value = values[cell];
+        size--;
+        // Shift later entries of the probe run back into the hole so every key stays reachable from its home cell
+        int hole = cell;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        return value;
+    }
+
+    /**
+     * Returns the number of keys in the map.
+     * returns the map size
+     */
+    public int size() {
+        return size;
+    }
+
+    /** Moves every entry into arrays of the given power of two capacity. */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int cell = hash(oldKeys[i]) & mask;
+                while (keys[cell] != EMPTY) {
+                    cell = (cell + 1) & mask;
+                }
+                keys[cell] = oldKeys[i];
+                values[cell] = oldValues[i];
+            }
+        }
+    }
+
+    /** returns well mixed bits of a key, so sequential ids spread over the table */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Returns the map's keys and values, for debugging.
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                out.append(out.length() > 1 ? ", " : "").append(keys[i]).append('=').append(values[i]);
+            }
+        }
+        return out.append('}').toString();
+    }
+}
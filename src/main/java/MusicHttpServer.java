@@ -0,0 +1,386 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Year;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local HTTP/JSON front end for a MusicStreamingService, built on the JDK's com.sun.net.httpserver.
+ *
+ *   GET    /songs?page=1&size=50                     songs in library order, a page at a time
+ *   POST   /songs    {"title","artist","plays","year","genre"}   adds a song
+ *   DELETE /songs?id=  or  ?title=&artist=&year=     removes a song
+ *   POST   /play?id=  or  ?title=&artist=&year=      plays a song
+ *   GET    /songs/popular?minPlays=1000&offset=0     songs with at least that many plays, most played first,
+ *                                                    limit=50 at a time
+ *   GET    /songs/trending?window=24h&limit=10       songs played most in the last 1h, 24h or 7d
+ *   POST   /shuffle                                  toggles shuffle mode
+ *   GET    /history?limit=5                          recent plays, most recent first
+ *
+ * Idle keep-alive connections are parked on the server's selector thread and cost no handler thread, and requests
+ * run on virtual threads when the JDK has them (21+), otherwise on a cached pool, so many thousands of concurrent
+ * clients can be served. The JDK closes idle connections beyond the JVM-wide sun.net.httpserver.maxIdleConnections
+ * property (200 by default), which only takes effect when set at startup, such as
+ * -Dsun.net.httpserver.maxIdleConnections=65536; the server leaves it alone, since it applies to every server in the JVM.
+ * The service is thread-safe, so handlers call it directly: changes queue behind each other inside the service while
+ * listings, plays and queries run in parallel without waiting for them.
+ */
+public class MusicHttpServer implements AutoCloseable {
+
+    private static final int BACKLOG = 4096; // Pending connections the socket queues before refusing
+    private static final String MAX_IDLE_PROPERTY = "sun.net.httpserver.maxIdleConnections"; // JDK idle limit
+    private static final int DEFAULT_MAX_IDLE_CONNECTIONS = 200; // JDK idle limit when the property is not set
+    private static final int MAX_BODY_BYTES = 16 * 1024; // Largest request body accepted; one song is well under 1 KB
+    private static final int DEFAULT_PAGE_SIZE = 50; // Songs per page when a listing does not say
+    private static final int DEFAULT_TRENDING_LIMIT = 10; // Trending songs listed when a request does not say
+    private static final int MAX_PAGE_SIZE = 1000; // Largest page a listing may ask for
+
+    private final MusicStreamingService service; // Service the API fronts
+    private final HttpServer server; // Underlying JDK server
+    private final ExecutorService executor; // Runs request handlers
+
+    /**
+     * Binds a server to an address. Call start to begin serving.
+     * parameter 'service' is the service to expose
+     * parameter 'address' is the address to listen on; port 0 picks a free port
+     * throws IOException if the address cannot be bound
+     */
+    public MusicHttpServer(MusicStreamingService service, InetSocketAddress address) throws IOException {
+        this.service = service;
+        this.executor = newRequestExecutor();
+        this.server = HttpServer.create(address, BACKLOG);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts serving requests on a background thread.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the address the server listens on, including the chosen port.
+     * returns the bound address
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Returns how many idle keep-alive connections the JDK keeps open, as set by sun.net.httpserver.maxIdleConnections.
+     * returns the idle connection limit
+     */
+    public static int getMaxIdleConnections() {
+        return Integer.getInteger(MAX_IDLE_PROPERTY, DEFAULT_MAX_IDLE_CONNECTIONS);
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for running ones and shuts down the handler threads.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates a virtual thread per task executor when the JDK provides one, otherwise a cached pool of daemon threads.
+     * returns the executor for request handlers
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "music-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Routes a request and writes its response; failures become JSON error responses, 400 for a bad request and 500
+     * for anything else, and the exchange is always closed.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            switch (path) {
+                case "/songs":
+                    if (method.equals("GET")) {
+                        listSongs(exchange, query);
+                    } else if (method.equals("POST")) {
+                        addSong(exchange);
+                    } else if (method.equals("DELETE")) {
+                        removeSong(exchange, query);
+                    } else {
+                        error(exchange, 405, "Use GET, POST or DELETE");
+                    }
+                    break;
+                case "/songs/popular": expect(exchange, "GET", () -> filter(exchange, query)); break;
+                case "/songs/trending": expect(exchange, "GET", () -> trending(exchange, query)); break;
+                case "/play": expect(exchange, "POST", () -> play(exchange, query)); break;
+                case "/shuffle": expect(exchange, "POST", () -> shuffle(exchange)); break;
+                case "/history": expect(exchange, "GET", () -> history(exchange, query)); break;
+                default: error(exchange, 404, "No such endpoint " + path);
+            }
+        } catch (IllegalArgumentException e) {
+            error(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Failed " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + ": " + e);
+            if (exchange.getResponseCode() == -1) { // Nothing sent yet
+                error(exchange, 500, "Internal error");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /** Lists one page of the library: GET /songs?page=&size= */
+    private void listSongs(HttpExchange exchange, Map<String, String> query) throws IOException {
+        int size = intParameter(query, "size", DEFAULT_PAGE_SIZE);
+        int page = intParameter(query, "page", 1);
+        if (size <= 0 || size > MAX_PAGE_SIZE || page <= 0) {
+            throw new IllegalArgumentException("page must be positive and size between 1 and " + MAX_PAGE_SIZE);
+        }
+        StringBuilder json = new StringBuilder();
+        List<Song> songs = service.getLibrary().getSongs();
+        long from = Math.min((long) (page - 1) * size, songs.size());
+        int to = (int) Math.min(from + size, songs.size());
+        json.append("{\"total\":").append(songs.size()).append(",\"page\":").append(page)
+                .append(",\"size\":").append(size).append(",\"songs\":");
+        Json.appendSongs(json, songs.subList((int) from, to)).append('}');
+        send(exchange, 200, json);
+    }
+
+    /** Adds a song from a JSON body: POST /songs */
+    private void addSong(HttpExchange exchange) throws IOException {
+        String text = readBody(exchange);
+        if (text == null) {
+            error(exchange, 413, "Request body over " + MAX_BODY_BYTES + " bytes");
+            return;
+        }
+        Map<String, Object> body = Json.parseObject(text);
+        Song song = new Song(stringMember(body, "title"), stringMember(body, "artist"), longMember(body, "plays", 0),
+                intMember(body, "year", Year.now().getValue()), optionalStringMember(body, "genre"));
+        if (service.addSong(song)) {
+            send(exchange, 201, Json.appendSong(new StringBuilder(), song));
+        } else {
+            error(exchange, 409, "Song already in library");
+        }
+    }
+
+    /** Removes a song: DELETE /songs?id= or ?title=&artist=&year= */
+    private void removeSong(HttpExchange exchange, Map<String, String> query) throws IOException {
+        Song song = find(query);
+        // By id, so an equal song re-added since the lookup is left alone; null if removed meanwhile
+        sendSong(exchange, song == null ? null : service.removeSongById(song.getId()));
+    }
+
+    /** Plays a song: POST /play?id= or ?title=&artist=&year= */
+    private void play(HttpExchange exchange, Map<String, String> query) throws IOException {
+        Song song = find(query);
+        if (song != null && !service.playSongById(song.getId())) {
+            song = null; // Removed by another request meanwhile; an equal song re-added since is not played
+        }
+        sendSong(exchange, song);
+    }
+
+    /** Lists songs over a play count a page at a time: GET /songs/popular?minPlays=&offset=&limit= */
+    private void filter(HttpExchange exchange, Map<String, String> query) throws IOException {
+        long minPlays = longParameter(query, "minPlays");
+        int offset = intParameter(query, "offset", 0);
+        int limit = intParameter(query, "limit", DEFAULT_PAGE_SIZE);
+        if (offset < 0 || limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("offset must not be negative and limit between 1 and " + MAX_PAGE_SIZE);
+        }
+        List<Song> songs = service.filterSongsByPlays(minPlays, offset, limit);
+        send(exchange, 200, Json.appendSongs(new StringBuilder(), songs));
+    }
+
+    /** Lists the songs played most recently: GET /songs/trending?window=&limit= */
+    private void trending(HttpExchange exchange, Map<String, String> query) throws IOException {
+        TrendingTracker.Window window = TrendingTracker.Window.parse(query.getOrDefault("window", "24h"));
+        int limit = intParameter(query, "limit", DEFAULT_TRENDING_LIMIT);
+        List<Song> songs = service.trendingSongs(window, limit);
+        send(exchange, 200, Json.appendSongs(new StringBuilder(), songs));
+    }
+
+    /** Toggles shuffle mode: POST /shuffle */
+    private void shuffle(HttpExchange exchange) throws IOException {
+        boolean shuffled = service.toggleShuffle();
+        send(exchange, 200, new StringBuilder("{\"shuffled\":").append(shuffled).append('}'));
+    }
+
+    /** Lists recent plays: GET /history?limit= */
+    private void history(HttpExchange exchange, Map<String, String> query) throws IOException {
+        int limit = intParameter(query, "limit", service.getHistoryDepth());
+        List<Song> songs = service.getPlaybackHistory(limit);
+        send(exchange, 200, Json.appendSongs(new StringBuilder(), songs));
+    }
+
+    /**
+     * returns the library song named by the id parameter, or else by the title, artist and year parameters, or null.
+     */
+    private Song find(Map<String, String> query) {
+        if (query.containsKey("id")) {
+            return service.getSongById(longParameter(query, "id"));
+        }
+        String title = query.get("title");
+        String artist = query.get("artist");
+        if (title == null || artist == null) {
+            throw new IllegalArgumentException("id, or title, artist and year, are required");
+        }
+        return service.getLibrary().findSong(title, artist, intParameter(query, "year"));
+    }
+
+    /** Runs a route if the request used the expected method, otherwise answers 405. */
+    private static void expect(HttpExchange exchange, String method, Route route) throws IOException {
+        if (exchange.getRequestMethod().equals(method)) {
+            route.run();
+        } else {
+            error(exchange, 405, "Use " + method);
+        }
+    }
+
+    /** Sends a song, or 404 when it is null. */
+    private static void sendSong(HttpExchange exchange, Song song) throws IOException {
+        if (song == null) {
+            error(exchange, 404, "No such song in library");
+        } else {
+            send(exchange, 200, Json.appendSong(new StringBuilder(), song));
+        }
+    }
+
+    /** Sends a JSON error body. */
+    private static void error(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, Json.appendString(new StringBuilder("{\"error\":"), message).append('}'));
+    }
+
+    /** Sends a JSON response with a known length, so the connection can be kept alive. */
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads at most one byte past MAX_BODY_BYTES; closing the exchange skips a short remainder or drops the connection.
+     * returns the request body as UTF-8 text, or null if it is over MAX_BODY_BYTES
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            return bytes.length > MAX_BODY_BYTES ? null : new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /** returns the decoded query parameters; later repeats of a name win */
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /** returns a required whole number parameter, or throws IllegalArgumentException */
+    private static long longParameter(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException(name + " is required");
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " '" + value + "'");
+        }
+    }
+
+    /** returns an optional int parameter, or the default when it is missing */
+    private static int intParameter(Map<String, String> query, String name, int defaultValue) {
+        return query.containsKey(name) ? intParameter(query, name) : defaultValue;
+    }
+
+    /** returns a required int parameter, or throws IllegalArgumentException */
+    private static int intParameter(Map<String, String> query, String name) {
+        long value = longParameter(query, name);
+        if (value != (int) value) {
+            throw new IllegalArgumentException("Invalid " + name + " '" + value + "'");
+        }
+        return (int) value;
+    }
+
+    /** returns a required string member of a JSON body */
+    private static String stringMember(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException(name + " must be a string");
+        }
+        return (String) value;
+    }
+
+    /** returns an optional string member of a JSON body, or null when it is missing */
+    private static String optionalStringMember(Map<String, Object> body, String name) {
+        return body.get(name) == null ? null : stringMember(body, name);
+    }
+
+    /** returns an optional whole number member of a JSON body, or the default when it is missing */
+    private static long longMember(Map<String, Object> body, String name, long defaultValue) {
+        Object value = body.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Long)) {
+            throw new IllegalArgumentException(name + " must be a whole number");
+        }
+        return (Long) value;
+    }
+
+    /** returns an optional int member of a JSON body, or the default when it is missing */
+    private static int intMember(Map<String, Object> body, String name, int defaultValue) {
+        long value = longMember(body, name, defaultValue);
+        if (value != (int) value) {
+            throw new IllegalArgumentException(name + " '" + value + "' is out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * A request handler body that may fail with IOException.
+     */
+    private interface Route {
+        void run() throws IOException;
+    }
+}
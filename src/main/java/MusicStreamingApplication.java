@@ -1,6 +1,21 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Year;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Console-based music streaming application emulating features of services like Spotify.
@@ -11,7 +26,17 @@ public class MusicStreamingApplication {
 
     private final Scanner scanner; // Scanner for reading user input
     private final MusicStreamingService service; // Service, handling song management
+    private final SongFormatter formatter = new SongFormatter(); // Reused row formatter for listings
     private static final String EXIT_OPTION = "8"; // Constant for the exit menu option
+    private static final int PAGE_SIZE = 20; // Songs shown per page in listings
+    private static final int SEARCH_LIMIT = 10; // Most search results shown
+    private static final String BATCH_OPTION = "--batch"; // Command line option selecting batch mode
+    private static final String HTTP_OPTION = "--http"; // Command line option selecting the HTTP server
+    private static final String IMPORT_OPTION = "--import"; // Command line option selecting a bulk catalog import
+    private static final long PROGRESS_ROWS = 1_000_000; // Rows between import progress lines
+    private static final int HTTP_PORT = 8080; // Port served when none is given
+    private static final int BATCH_BUFFER = 1 << 16; // Batch input and output buffer size in characters
+    private static final String DATA_DIR = "data"; // Directory holding the saved library and play journal
 
     /**
      * Constructs the application with a scanner and music streaming service.
@@ -25,19 +50,111 @@ public class MusicStreamingApplication {
 
     /**
      * Entry point of the application. Initialises and runs the music streaming app.
+     * The library and play counts are kept in the data directory, so they survive restarts.
+     * Started with '--batch [script]' it runs the commands in the script, or in standard input when no script is
+     * given, instead of showing the menu; see BatchCommandRunner for the command format.
+     * Started with '--http [port]' it serves the library over HTTP instead, see MusicHttpServer, until the process
+     * is stopped.
+     * Started with '--import file' it bulk imports a CSV or TSV catalog file, see SongImporter, and exits.
      */
-    public static void main(String[] args) {
-        MusicStreamingApplication app = new MusicStreamingApplication(
-                new Scanner(System.in), new MusicStreamingService()
-        );
-        app.run();
+    public static void main(String[] args) throws IOException {
+        int failed = 0;
+        try (MusicStreamingService service = MusicStreamingService.open(Paths.get(DATA_DIR), PlayJournal.SyncPolicy.INTERVAL)) {
+            if (args.length > 0 && args[0].equals(BATCH_OPTION)) {
+                failed = runBatch(service, args.length > 1 ? Paths.get(args[1]) : null);
+            } else if (args.length > 1 && args[0].equals(IMPORT_OPTION)) {
+                System.out.println(importCatalog(service, Paths.get(args[1])));
+            } else if (args.length > 0 && args[0].equals(HTTP_OPTION)) {
+                serveHttp(service, args.length > 1 ? Integer.parseInt(args[1]) : HTTP_PORT);
+            } else {
+                MusicStreamingApplication app = new MusicStreamingApplication(new Scanner(System.in), service);
+                app.run();
+            }
+        }
+        if (failed > 0) {
+            System.exit(1); // Only after the journal is closed, so a failed script still keeps its good commands
+        }
+    }
+
+    /**
+     * Serves the service over HTTP until the JVM is asked to shut down, then stops the server so the caller can
+     * close the service and its journal before the JVM exits.
+     * parameter 'port' is the local port to listen on
+     * throws IOException if the port cannot be bound
+     */
+    static void serveHttp(MusicStreamingService service, int port) throws IOException {
+        CountDownLatch stopped = new CountDownLatch(1);
+        Thread main = Thread.currentThread();
+        try (MusicHttpServer server = new MusicHttpServer(service, new InetSocketAddress(port))) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                stopped.countDown();
+                try {
+                    main.join(); // Keep the JVM alive until the journal is closed
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            server.start();
+            System.out.println("Serving the music library on http://localhost:" + server.getAddress().getPort());
+            System.out.println("Keeping up to " + MusicHttpServer.getMaxIdleConnections() + " idle connections open"
+                    + " (set -Dsun.net.httpserver.maxIdleConnections at startup to change)");
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Bulk imports a catalog file, printing rejected rows as they are found and a progress line every million rows.
+     * parameter 'catalog' is the CSV or TSV file to import
+     * returns the import totals
+     * throws IOException if the file cannot be read
+     */
+    static SongImporter.Result importCatalog(MusicStreamingService service, Path catalog) throws IOException {
+        ImportListener listener = new ImportListener() {
+            private long reported; // Rows covered by the last progress line
+
+            @Override
+            public void rowRejected(long line, String reason) {
+                System.out.println("Line " + line + ": " + reason);
+            }
+
+            @Override
+            public void progress(long rows, long accepted, long rejected) {
+                if (rows - reported >= PROGRESS_ROWS) {
+                    reported = rows;
+                    System.out.println("Checked " + rows + " rows, " + accepted + " to import, " + rejected + " rejected");
+                }
+            }
+        };
+        return new SongImporter(service, ForkJoinPool.commonPool(), listener).importFile(catalog);
+    }
+
+    /**
+     * Runs a batch script against the service, writing output to standard output in large buffered chunks.
+     * parameter 'script' is the command file, or null to read commands from standard input
+     * returns the number of commands that failed
+     * throws IOException if the script cannot be read
+     */
+    static int runBatch(MusicStreamingService service, Path script) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)), BATCH_BUFFER);
+        try (BufferedReader in = script == null
+                ? new BufferedReader(new InputStreamReader(System.in), BATCH_BUFFER)
+                : Files.newBufferedReader(script)) {
+            return new BatchCommandRunner(service, out).run(in);
+        } finally {
+            out.flush();
+        }
     }
 
     /**
      * Runs the main application loop, displaying the menu and processing user choices until the user decides to exit.
+     * The default songs are only added when the library starts out empty.
      */
     public void run() {
-        service.initialiseDefaultSongs();
+        if (service.getSongCount() == 0) {
+            service.initialiseDefaultSongs();
+        }
         while (true) {
             displayMenu();
             String choice = scanner.nextLine().trim();
@@ -60,8 +177,10 @@ public class MusicStreamingApplication {
         System.out.println("3. List all songs");
         System.out.println("4. List songs over specific play count");
         System.out.println("5. Play a song");
-        System.out.println("6. Toggle shuffle (" + (service.getLibrary().isShuffled() ? "ON" : "OFF") + ")");
+        System.out.println("6. Toggle shuffle (" + (service.isShuffled() ? "ON" : "OFF") + ")");
         System.out.println("7. Show playback history");
+        System.out.println("9. Search songs");
+        System.out.println("10. Show service metrics");
         System.out.println("8. Exit");
         System.out.print("Choice: ");
     }
@@ -79,18 +198,95 @@ public class MusicStreamingApplication {
             case "5": playSong(); break;
             case "6": toggleShuffle(); break;
             case "7": showPlaybackHistory(); break;
+            case "9": searchSongs(); break;
+            case "10": showMetrics(); break;
             default: System.out.println("Invalid choice. Try again.");
         }
     }
 
     /**
-     * Lists all songs in the library with numbered indices for the users selection.
+     * Lists the songs in the library with numbered indices, a page at a time.
      */
     private void listSongs() {
         System.out.println("\n" + service.getLibrary());
-        int index = 1;
-        for (Song song : service.getLibrary().getSongs()) {
-            System.out.println(index++ + ". " + song);
+        browse(SongPager.of(service.getLibrary(), PAGE_SIZE));
+    }
+
+    /**
+     * Shows the first page of a listing, then lets the user move between pages until they press Enter.
+     * The paging prompt only appears when the listing has more than one page.
+     * parameter 'pager' is the listing to show
+     */
+    private void browse(SongPager pager) {
+        printPage(pager);
+        while (pager.getPageCount() > 1) {
+            System.out.print("n = next page, p = previous page, page number to jump, Enter to go back: ");
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                break;
+            }
+            if (!turnPage(pager, input)) {
+                try {
+                    pager.jumpTo(Integer.parseInt(input) - 1);
+                } catch (IllegalArgumentException e) { // Also covers NumberFormatException
+                    System.out.println("Invalid page: " + input);
+                    continue;
+                }
+            }
+            printPage(pager);
+        }
+    }
+
+    /**
+     * Shows the library a page at a time and asks for a song number, paging while the user enters n or p.
+     * parameter 'action' describes what the chosen song is for, such as "remove"
+     * parameter 'shown' is the library snapshot to list, so song numbers keep pointing at the songs shown
+     * returns the first input that is not a paging command
+     */
+    private String chooseFromLibrary(String action, List<Song> shown) {
+        System.out.println("\n" + service.getLibrary());
+        SongPager pager = new SongPager(() -> shown, PAGE_SIZE);
+        printPage(pager);
+        while (true) {
+            boolean paged = pager.getPageCount() > 1;
+            System.out.print("Enter song number to " + action + (paged ? " (n = next page, p = previous page)" : "") + ": ");
+            String input = scanner.nextLine().trim();
+            if (!paged || !(input.equalsIgnoreCase("n") || input.equalsIgnoreCase("p"))) {
+                return input;
+            }
+            if (turnPage(pager, input)) {
+                printPage(pager);
+            }
+        }
+    }
+
+    /**
+     * Moves a pager for an n or p command.
+     * returns true if the input was a paging command
+     */
+    private static boolean turnPage(SongPager pager, String input) {
+        if (input.equalsIgnoreCase("n")) {
+            pager.next();
+            return true;
+        }
+        if (input.equalsIgnoreCase("p")) {
+            pager.previous();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Prints the current page, numbering songs by their position in the whole listing.
+     * parameter 'pager' is the listing to print from
+     */
+    private void printPage(SongPager pager) {
+        int number = pager.getFirstIndex() + 1;
+        for (Song song : pager.getPageSongs()) {
+            System.out.println(formatter.format(number++, song));
+        }
+        if (pager.getPageCount() > 1) {
+            System.out.println("Page " + (pager.getPage() + 1) + " of " + pager.getPageCount());
         }
     }
 
@@ -141,8 +337,11 @@ public class MusicStreamingApplication {
 
         try {
             Song song = new Song(title, artist, playCount, year, genre);
-            service.addSong(song);
-            System.out.println("Added: " + song);
+            if (service.addSong(song)) {
+                System.out.println("Added: " + song);
+            } else {
+                System.out.println("Song already in library: " + song);
+            }
         } catch (IllegalArgumentException e) {
             System.out.println("Failed to add song: " + e.getMessage());
         }
@@ -152,15 +351,17 @@ public class MusicStreamingApplication {
      * Removes a song from the library based on user-selected index.
      */
     void removeSong() {
-        listSongs();
-        System.out.print("Enter song number to remove: ");
+        List<Song> shown = service.getLibrary().getSongs();
+        String choice = chooseFromLibrary("remove", shown);
         try {
-            int index = Integer.parseInt(scanner.nextLine().trim()) - 1;
-            List<Song> songs = service.getLibrary().getSongs();
-            if (index >= 0 && index < songs.size()) {
-                Song song = songs.get(index);
-                service.removeSong(song);
-                System.out.println("Removed: " + song);
+            int index = Integer.parseInt(choice) - 1;
+            if (index >= 0 && index < shown.size()) {
+                Song song = shown.get(index);
+                if (service.removeSongById(song.getId()) != null) {
+                    System.out.println("Removed: " + song);
+                } else {
+                    System.out.println("No longer in the library: " + song);
+                }
             } else {
                 System.out.println("Invalid song number.");
             }
@@ -176,13 +377,12 @@ public class MusicStreamingApplication {
         System.out.print("Enter minimum play count: ");
         try {
             long minPlays = Long.parseLong(scanner.nextLine().trim());
+            List<Song> matches = service.filterSongsByPlays(minPlays);
             System.out.println("\nSongs with " + minPlays + " or more plays:");
-            int index = 1;
-            for (Song song : service.filterSongsByPlays(minPlays)) {
-                System.out.println(index++ + ". " + song);
-            }
-            if (index == 1) {
+            if (matches.isEmpty()) {
                 System.out.println("No songs found with " + minPlays + " or more plays.");
+            } else {
+                browse(new SongPager(() -> matches, PAGE_SIZE));
             }
         } catch (NumberFormatException e) {
             System.out.println("Invalid play count: " + e.getMessage());
@@ -193,30 +393,65 @@ public class MusicStreamingApplication {
      * Plays a song selected by the user, incrementing its play count by 1.
      */
     void playSong() {
-        listSongs();
-        System.out.print("Enter song number to play: ");
+        List<Song> shown = service.getLibrary().getSongs();
+        String choice = chooseFromLibrary("play", shown);
         try {
-            int index = Integer.parseInt(scanner.nextLine().trim()) - 1;
-            service.playSong(index);
-            System.out.println("Playing: " + service.getLibrary().getSongs().get(index));
+            Song song = shown.get(Integer.parseInt(choice) - 1);
+            if (service.playSongById(song.getId())) {
+                System.out.println("Playing: " + song);
+            } else {
+                System.out.println("No longer in the library: " + song);
+            }
         } catch (NumberFormatException | IndexOutOfBoundsException e) {
             System.out.println("Invalid selection: " + e.getMessage());
         }
     }
 
+    /**
+     * Searches song titles and artists for user-entered text, treating the last word as possibly incomplete.
+     */
+    void searchSongs() {
+        System.out.print("Enter search text: ");
+        String text = scanner.nextLine().trim();
+        List<Song> matches = service.autocomplete(text, SEARCH_LIMIT);
+        System.out.println("\nSongs matching '" + text + "':");
+        if (matches.isEmpty()) {
+            System.out.println("No songs found.");
+        } else {
+            int index = 1;
+            for (Song song : matches) {
+                System.out.println(index++ + ". " + song);
+            }
+        }
+    }
+
+    /**
+     * Displays how often each service operation ran and its latency percentiles in microseconds.
+     */
+    void showMetrics() {
+        System.out.println("\nService Metrics (latency in microseconds):");
+        System.out.println(String.format("%-8s %10s %10s %10s %10s %10s %10s", "Op", "Count", "Mean", "p50", "p99", "p99.9", "Max"));
+        for (Map.Entry<ServiceMetrics.Operation, LatencyHistogram.Snapshot> entry : service.getMetrics().snapshot().entrySet()) {
+            LatencyHistogram.Snapshot latency = entry.getValue();
+            System.out.println(String.format("%-8s %10d %10.1f %10.1f %10.1f %10.1f %10.1f", entry.getKey(), latency.getCount(),
+                    latency.getMean() / 1000, latency.getP50() / 1000.0, latency.getP99() / 1000.0,
+                    latency.getP999() / 1000.0, latency.getMax() / 1000.0));
+        }
+    }
+
     /**
      * Toggles shuffle mode for the song library.
      */
     void toggleShuffle() {
-        service.toggleShuffle();
-        System.out.println("Shuffle mode is now " + (service.getLibrary().isShuffled() ? "ON" : "OFF"));
+        boolean shuffled = service.toggleShuffle();
+        System.out.println("Shuffle mode is now " + (shuffled ? "ON" : "OFF"));
     }
 
     /**
-     * Displays the last 5 played songs from playback history.
+     * Displays the most recently played songs from playback history.
      */
     void showPlaybackHistory() {
-        System.out.println("\nPlayback History (last 5 songs):");
+        System.out.println("\nPlayback History (last " + service.getHistoryDepth() + " songs):");
         List<Song> history = service.getPlaybackHistory();
         if (history.isEmpty()) {
             System.out.println("No songs played yet.");
@@ -1,88 +1,527 @@
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Manages the music library and playback functionality, including song storage,
  * playback history, and shuffle mode.
+ * A service opened with open(Path, SyncPolicy) also journals every change and play so it survives restarts.
+ * Listeners can be registered as users, each with their own playlists, shuffle orders and history over the shared
+ * library songs.
+ * The service is safe to share between threads. Changes to the library take one writer lock, so the library and its
+ * indexes move together; listings, filters, searches and history reads never take it, and plays only bump striped
+ * counters and the lock-free history ring, so neither blocks on a change in progress. The one wait is the first
+ * listing after a change, which waits while the library rebuilds its shared snapshot.
  */
-public class MusicStreamingService {
+public class MusicStreamingService implements AutoCloseable {
 
     private final Playlist library; // Main song library
-    private final List<Song> playbackHistory; // Tracks recent plays
-    private static final int HISTORY_LIMIT = 5; // Maximum number of songs in playback history
+    private final PlayCountIndex playCounts; // Library songs ordered by play count
+    private final Map<Integer, PlayCountIndex> genrePlayCounts; // Per genre code, that genre's songs ordered by play count
+    private final SongSearchIndex searchIndex; // Title and artist words of library songs
+    private final SongAttributeIndex attributeIndex; // Genre, artist and year bitmaps of library songs
+    private final PlaybackHistory playbackHistory; // Tracks recent plays
+    private final TrendingTracker trending; // Plays per song in the last hour, day and week
+    private final int historyDepth; // Number of songs reported by getPlaybackHistory
+    private final Map<Long, User> users; // Users by id; lookups never lock and updates lock one hash bin
+    private final AtomicLong nextUserId; // Last user id handed out
+    private final ServiceMetrics metrics; // Call counts and latencies per operation
+    private final PlayJournal journal; // Write-ahead journal of changes and plays, null for an in-memory service
+    private final Object loadLock = new Object(); // Lets one caller decode the saved library while others wait
+    private final Object writeLock = new Object(); // Serialises library changes with their index updates
+    private volatile PlayJournal.SavedLibrary unloaded; // Saved library not yet decoded into the library, or null
+    private static final int HISTORY_LIMIT = 5; // Default number of songs in playback history
+    private static final int BULK_INDEX_MIN = 1024; // Smallest batch worth indexing in parallel
 
     /**
      * Initializes an empty music streaming service with a library named 'Music Library' and playback history.
      */
     public MusicStreamingService() {
+        this(HISTORY_LIMIT);
+    }
+
+    /**
+     * Initializes an empty music streaming service keeping a playback history of the given depth.
+     * parameter 'historyDepth' is the number of recent plays to keep
+     * throws IllegalArgumentException if historyDepth is not positive
+     */
+    public MusicStreamingService(int historyDepth) {
+        this(historyDepth, null);
+    }
+
+    /**
+     * Initializes an empty service that journals its changes when a journal is given.
+     */
+    private MusicStreamingService(int historyDepth, PlayJournal journal) {
         this.library = new Playlist("Music Library");
-        this.playbackHistory = new ArrayList<>();
+        this.playCounts = new PlayCountIndex();
+        this.genrePlayCounts = new ConcurrentHashMap<>();
+        this.searchIndex = new SongSearchIndex();
+        this.attributeIndex = new SongAttributeIndex();
+        this.playbackHistory = new PlaybackHistory(historyDepth);
+        this.trending = new TrendingTracker(Clock.systemUTC());
+        this.historyDepth = historyDepth;
+        this.users = new ConcurrentHashMap<>();
+        this.nextUserId = new AtomicLong();
+        this.metrics = new ServiceMetrics();
+        this.journal = journal;
+    }
+
+    /**
+     * Opens a persistent service: the library, play counts and playback history saved in the data directory are
+     * recovered from the last snapshot plus the journal, and every later change and play is journaled there.
+     * When everything saved is in one snapshot, as after compactJournal or the background compaction that follows an
+     * open, only the snapshot header and the recently played songs are read here; the rest of the library is decoded
+     * and indexed by the first call that needs it, so opening takes about the same time however large the library is.
+     * parameter 'dataDir' is the directory holding the journal and snapshots; it is created if missing
+     * parameter 'policy' decides when journal writes are forced to disk
+     * returns the recovered service, with an empty library if nothing was saved yet
+     * throws IOException if the saved state cannot be read or the journal cannot be opened
+     */
+    public static MusicStreamingService open(Path dataDir, PlayJournal.SyncPolicy policy) throws IOException {
+        PlayJournal.SavedLibrary saved = PlayJournal.load(dataDir);
+        MusicStreamingService service = new MusicStreamingService(HISTORY_LIMIT, new PlayJournal(dataDir, policy));
+        service.indexAll(service.library.addAll(saved.getSongs()));
+        List<Song> history = saved.getHistory();
+        for (int i = history.size() - 1; i >= 0; i--) {
+            service.playbackHistory.record(history.get(i));
+        }
+        if (saved.getCatalog() != null) {
+            service.unloaded = saved;
+        }
+        return service;
+    }
+
+    /**
+     * Decodes and indexes the saved library if open left it in the snapshot. Every method that reads or changes the
+     * library calls this first; after the first call it is a single volatile read.
+     */
+    private void ensureLoaded() {
+        if (unloaded != null) {
+            synchronized (loadLock) {
+                PlayJournal.SavedLibrary saved = unloaded;
+                if (saved != null) {
+                    Song[] songs = new Song[saved.size()];
+                    Arrays.parallelSetAll(songs, saved::getSong);
+                    indexAll(library.addAll(Arrays.asList(songs)));
+                    unloaded = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of songs in the library, without loading a library that is still in its snapshot.
+     * returns the library size
+     */
+    public int getSongCount() {
+        PlayJournal.SavedLibrary saved = unloaded;
+        return saved != null ? saved.size() : library.size();
+    }
+
+    /**
+     * Reports whether the saved library has been decoded into memory, which happens on the first call that needs it.
+     * returns true once the library is loaded, and always for an in-memory service
+     */
+    boolean isLoaded() {
+        return unloaded == null;
     }
 
     /**
      * Populates the library with 10 initial songs.
      */
     public void initialiseDefaultSongs() {
-        library.addSong(new Song("Midnight Rain", "Taylor Swift", 12564321, 2022, "Pop"));
-        library.addSong(new Song("Viva La Vida", "Coldplay", 892345678, 2008, "Rock"));
-        library.addSong(new Song("Blinding Lights", "The Weeknd", 1567890123, 2019, "Synth-Pop"));
-        library.addSong(new Song("Levitating", "Dua Lipa", 98765432, 2020, "Pop"));
-        library.addSong(new Song("Golden Hour", "JVKE", 45678912, 2022, "Pop"));
-        library.addSong(new Song("Unholy", "Sam Smith", 78912345, 2022, "Pop"));
-        library.addSong(new Song("Flowers", "Miley Cyrus", 234567890, 2023, "Pop"));
-        library.addSong(new Song("As It Was", "Harry Styles", 567890123, 2022, "Pop-Rock"));
-        library.addSong(new Song("Anti-Hero", "Taylor Swift", 89123456, 2022, "Pop"));
-        library.addSong(new Song("Heat Waves", "Glass Animals", 345678901, 2020, "Indie"));
+        addSong(new Song("Midnight Rain", "Taylor Swift", 12564321, 2022, "Pop"));
+        addSong(new Song("Viva La Vida", "Coldplay", 892345678, 2008, "Rock"));
+        addSong(new Song("Blinding Lights", "The Weeknd", 1567890123, 2019, "Synth-Pop"));
+        addSong(new Song("Levitating", "Dua Lipa", 98765432, 2020, "Pop"));
+        addSong(new Song("Golden Hour", "JVKE", 45678912, 2022, "Pop"));
+        addSong(new Song("Unholy", "Sam Smith", 78912345, 2022, "Pop"));
+        addSong(new Song("Flowers", "Miley Cyrus", 234567890, 2023, "Pop"));
+        addSong(new Song("As It Was", "Harry Styles", 567890123, 2022, "Pop-Rock"));
+        addSong(new Song("Anti-Hero", "Taylor Swift", 89123456, 2022, "Pop"));
+        addSong(new Song("Heat Waves", "Glass Animals", 345678901, 2020, "Indie"));
     }
 
     /**
-     * Adds a song to the library.
+     * Adds a song to the library, the play count index and the search index.
+     * Library changes should go through the service so the indexes stay in step with the library.
      * parameter 'song' specifies the song to add
+     * returns true if the song was added, false if it was null or already in the library
+     * throws IllegalArgumentException if the song is a lookup key rather than a song; the library is left unchanged
+     */
+    public boolean addSong(Song song) {
+        ensureLoaded();
+        if (song != null) {
+            checkNotKey(song);
+        }
+        long start = System.nanoTime();
+        boolean added;
+        long record = 0;
+        synchronized (writeLock) {
+            added = song != null && !library.contains(song);
+            if (added) {
+                if (journal != null) {
+                    record = journal.recordAdd(song); // Before the song can be played, so its plays follow the add
+                }
+                library.addSong(song);
+                index(song);
+            }
+        }
+        sync(record);
+        metrics.record(ServiceMetrics.Operation.ADD, start);
+        return added;
+    }
+
+    /**
+     * Adds many songs to the library in one change, then indexes and journals the ones that were new.
+     * Songs already in the library, or repeated within the batch, are skipped.
+     * parameter 'batch' specifies the songs to add, in order
+     * returns the songs that were added
+     * throws IllegalArgumentException if a song is a lookup key rather than a song; the library is left unchanged
      */
-    public void addSong(Song song) {
-        library.addSong(song);
+    public List<Song> addSongs(Collection<Song> batch) {
+        ensureLoaded();
+        for (Song song : batch) {
+            if (song != null) {
+                checkNotKey(song);
+            }
+        }
+        long start = System.nanoTime();
+        List<Song> added;
+        long record = 0;
+        synchronized (writeLock) {
+            if (journal != null) {
+                // Journal the adds before the songs can be played, so their plays follow the adds
+                HashSet<Song> seen = new HashSet<>();
+                for (Song song : batch) {
+                    if (song != null && !library.contains(song) && seen.add(song)) {
+                        record = journal.recordAdd(song);
+                    }
+                }
+            }
+            added = library.addAll(batch);
+            indexAll(added);
+        }
+        sync(record);
+        metrics.record(ServiceMetrics.Operation.ADD, start);
+        return added;
     }
 
     /**
-     * Removes a song from both the library and playback history.
+     * Removes a song from the library and its indexes.
+     * Its plays stay in the history ring but are no longer reported, since history reads only show library songs.
      * parameter 'song' specifies the song to remove
+     * returns true if the song was in the library and was removed
+     */
+    public boolean removeSong(Song song) {
+        ensureLoaded();
+        long start = System.nanoTime();
+        boolean removed;
+        long record = 0;
+        synchronized (writeLock) {
+            // Unindex the library's own instance; the caller may pass an equal copy with another id
+            Song match = song == null ? null : library.findSong(song.getTitle(), song.getArtist(), song.getYear());
+            removed = match != null && library.removeSong(match);
+            if (removed) {
+                record = unindex(match);
+            }
+        }
+        sync(record);
+        metrics.record(ServiceMetrics.Operation.REMOVE, start);
+        return removed;
+    }
+
+    /**
+     * Removes the library song with the given id, as removeSong does.
+     * The id names one track for as long as it is in the library, so a client removing a song it listed earlier
+     * cannot hit a different song after the list has shifted.
+     * parameter 'id' is the song id, see Song.getId
+     * returns the removed song, or null if no library song has that id
+     */
+    public Song removeSongById(long id) {
+        ensureLoaded();
+        long start = System.nanoTime();
+        Song song;
+        long record = 0;
+        synchronized (writeLock) {
+            song = library.removeSongById(id);
+            if (song != null) {
+                record = unindex(song);
+            }
+        }
+        sync(record);
+        metrics.record(ServiceMetrics.Operation.REMOVE, start);
+        return song;
+    }
+
+    /**
+     * Finds the library song with the given id.
+     * parameter 'id' is the song id, see Song.getId
+     * returns the song, or null if no library song has that id
+     */
+    public Song getSongById(long id) {
+        ensureLoaded();
+        return library.getSongById(id);
+    }
+
+    /**
+     * Adds a batch of library songs to the indexes, updating the independent indexes in parallel.
+     */
+    private void indexAll(List<Song> songs) {
+        if (songs.size() < BULK_INDEX_MIN) {
+            songs.forEach(this::index);
+            return;
+        }
+        ForkJoinTask.invokeAll(
+                ForkJoinTask.adapt(() -> songs.forEach(playCounts::add)),
+                ForkJoinTask.adapt(() -> {
+                    for (Song song : songs) {
+                        if (song.getGenreCode() != StringDictionary.NONE) {
+                            genrePlayCounts.computeIfAbsent(song.getGenreCode(), code -> new PlayCountIndex()).add(song);
+                        }
+                    }
+                }),
+                ForkJoinTask.adapt(() -> searchIndex.addAll(songs)),
+                ForkJoinTask.adapt(() -> songs.forEach(attributeIndex::add)));
+    }
+
+    /**
+     * Drops a song just removed from the library from the indexes and queues the removal in the journal.
+     * returns the journal sequence number of the removal, or 0 for an in-memory service
+     */
+    private long unindex(Song song) {
+        playCounts.remove(song);
+        PlayCountIndex genre = genrePlayCounts.get(song.getGenreCode());
+        if (genre != null) {
+            genre.remove(song);
+        }
+        searchIndex.remove(song);
+        attributeIndex.remove(song);
+        trending.remove(song);
+        return journal != null ? journal.recordRemove(song) : 0;
+    }
+
+    /**
+     * Waits for a queued journal record to reach the disk as the sync policy requires. Called after releasing
+     * writeLock, so other changes can join the same forced batch.
+     * parameter 'record' is the record's sequence number, or 0 if nothing was journaled
+     */
+    private void sync(long record) {
+        if (record != 0) {
+            journal.sync(record);
+        }
+    }
+
+    /**
+     * Adds a library song to the play count, search and attribute indexes.
      */
-    public void removeSong(Song song) {
-        library.removeSong(song);
-        playbackHistory.remove(song); // Ensure consistency with history
+    private void index(Song song) {
+        playCounts.add(song);
+        if (song.getGenreCode() != StringDictionary.NONE) {
+            genrePlayCounts.computeIfAbsent(song.getGenreCode(), code -> new PlayCountIndex()).add(song);
+        }
+        searchIndex.add(song);
+        attributeIndex.add(song);
     }
 
     /**
      * Plays a song at the specified index, incrementing its play count by 1 and updating the playbackHistory.
+     * Safe to call from many threads at once, alongside playSong(Song).
      * @param index The index of the song to play
      */
     public void playSong(int index) {
-        List<Song> songs = library.getSongs();
+        ensureLoaded();
+        long start = System.nanoTime();
+        List<Song> songs = library.getSongs(); // One snapshot, so a concurrent removal cannot move the bound
         if (index >= 0 && index < songs.size()) {
-            Song song = songs.get(index);
-            song.incrementPlayCount();
-            playbackHistory.add(0, song); // Add as most recent
-            if (playbackHistory.size() > HISTORY_LIMIT) {
-                playbackHistory.remove(HISTORY_LIMIT); // Trim to limit
-            }
+            play(songs.get(index));
+        }
+        metrics.record(ServiceMetrics.Operation.PLAY, start);
+    }
+
+    /**
+     * Plays a library song, incrementing its play count by 1 and updating the playbackHistory.
+     * Safe to call from many threads at once; play counts are striped so hot tracks do not serialise callers.
+     * parameter 'song' specifies the song to play, matched by identity against the library
+     * returns true if the song is in the library and was played
+     */
+    public boolean playSong(Song song) {
+        ensureLoaded();
+        long start = System.nanoTime();
+        Song match = song == null ? null : library.findSong(song.getTitle(), song.getArtist(), song.getYear());
+        if (match != null) {
+            play(match);
+        }
+        metrics.record(ServiceMetrics.Operation.PLAY, start);
+        return match != null;
+    }
+
+    /**
+     * Plays the library song with the given id, as playSong(Song) does, with one primitive map lookup.
+     * Safe to call from many threads at once, alongside the other play methods.
+     * parameter 'id' is the song id, see Song.getId
+     * returns true if a library song has that id and was played
+     */
+    public boolean playSongById(long id) {
+        ensureLoaded();
+        long start = System.nanoTime();
+        Song song = library.getSongById(id);
+        if (song != null) {
+            play(song);
+        }
+        metrics.record(ServiceMetrics.Operation.PLAY, start);
+        return song != null;
+    }
+
+    /**
+     * Starts a play queue over the library, in its current order, shuffled or not.
+     * returns a queue positioned before the first library song
+     */
+    public PlayQueue newPlayQueue() {
+        ensureLoaded();
+        return new PlayQueue(library);
+    }
+
+    /**
+     * Starts a play queue over the library that hands each upcoming track to a loader before it is reached.
+     * parameter 'prefetch' is the number of upcoming tracks to keep prefetched
+     * parameter 'loader' is called once for each track as it enters the prefetch window
+     * returns a queue positioned before the first library song
+     */
+    public PlayQueue newPlayQueue(int prefetch, Consumer<Song> loader) {
+        ensureLoaded();
+        return new PlayQueue(library, prefetch, loader);
+    }
+
+    /**
+     * Moves a play queue to its next track and plays it, as playSong(Song) does.
+     * Queued songs removed from the library since they were queued are skipped.
+     * parameter 'queue' is a queue from newPlayQueue
+     * returns the song played, or null if the queue has reached the end
+     */
+    public Song playNext(PlayQueue queue) {
+        ensureLoaded();
+        long start = System.nanoTime();
+        Song song = queue.next();
+        while (song != null && !inLibrary(song)) {
+            song = queue.next();
+        }
+        if (song != null) {
+            play(song);
+        }
+        metrics.record(ServiceMetrics.Operation.PLAY, start);
+        return song;
+    }
+
+    /**
+     * Moves a play queue back to its previous track and plays it, as playSong(Song) does.
+     * parameter 'queue' is a queue from newPlayQueue
+     * returns the song played, or null if there is no earlier track
+     */
+    public Song playPrevious(PlayQueue queue) {
+        ensureLoaded();
+        long start = System.nanoTime();
+        Song song = queue.previous();
+        if (song != null) {
+            play(song);
         }
+        metrics.record(ServiceMetrics.Operation.PLAY, start);
+        return song;
     }
 
     /**
-     * Returns a copy of the playback history.
-     * returns a List of recently played songs
+     * Records one play of a library song.
+     */
+    private void play(Song song) {
+        song.incrementPlayCount();
+        playbackHistory.record(song); // Add as most recent, overwriting the oldest entry
+        trending.record(song);
+        if (journal != null) {
+            journal.sync(journal.recordPlay(song));
+        }
+    }
+
+    /**
+     * Refuses a lookup key from Song.key, which has no id of its own, before anything is changed.
+     * throws IllegalArgumentException if the song is a lookup key
+     */
+    private static void checkNotKey(Song song) {
+        if (song.getId() <= 0) {
+            throw new IllegalArgumentException("Lookup key " + song + " cannot be added to the library");
+        }
+    }
+
+    /**
+     * Checks that a song is the library's own instance, not one removed since, even if an equal song was re-added.
+     * returns true if the song's id still resolves to the song
+     */
+    private boolean inLibrary(Song song) {
+        return library.getSongById(song.getId()) == song;
+    }
+
+    /**
+     * Returns the playback history, most recent first.
+     * returns a List of recently played songs, up to the configured history depth
      */
     public List<Song> getPlaybackHistory() {
-        return new ArrayList<>(playbackHistory);
+        return getPlaybackHistory(historyDepth);
+    }
+
+    /**
+     * Returns the most recent plays, skipping songs that have since been removed from the library.
+     * parameter 'limit' is the maximum number of songs to return
+     * returns a List of recently played songs, most recent first
+     */
+    public List<Song> getPlaybackHistory(int limit) {
+        if (unloaded != null) {
+            return playbackHistory.recent(limit); // Nothing can have been removed before the library is loaded
+        }
+        return playbackHistory.recent(limit, this::inLibrary);
+    }
+
+    /**
+     * Returns how many recent plays the service keeps.
+     * returns the history depth
+     */
+    public int getHistoryDepth() {
+        return historyDepth;
     }
 
     /**
      * Toggles shuffle mode from 'ON' or 'OFF' for the library's song order.
+     * returns true if the library is now shuffled
      */
-    public void toggleShuffle() {
-        library.setShuffle(!library.isShuffled());
+    public boolean toggleShuffle() {
+        ensureLoaded();
+        long start = System.nanoTime();
+        boolean shuffled;
+        synchronized (writeLock) {
+            shuffled = !library.isShuffled();
+            library.setShuffle(shuffled);
+        }
+        metrics.record(ServiceMetrics.Operation.SHUFFLE, start);
+        return shuffled;
+    }
+
+    /**
+     * Checks if the library is shuffled, without loading a library that is still in its snapshot.
+     * Shuffle is not saved, so a library restored from a snapshot starts in its original order and stays in it until
+     * toggleShuffle, which loads the library first.
+     * returns true if shuffled, false otherwise
+     */
+    public boolean isShuffled() {
+        return library.isShuffled();
     }
 
     /**
@@ -90,17 +529,351 @@ public class MusicStreamingService {
      * returns The library playlist
      */
     public Playlist getLibrary() {
+        ensureLoaded();
         return library;
     }
 
     /**
      * Filters songs by minimum play count.
      * the intention is to enable a user to search for popular songs, utilising the required playCount attribute
-     * returns a Collection of songs with play counts at or above the threshold
+     * The play count index is range scanned, so only matching songs are visited.
+     * returns a List of songs with play counts at or above the threshold, most played first
+     */
+    public List<Song> filterSongsByPlays(long minPlays) {
+        ensureLoaded();
+        long start = System.nanoTime();
+        List<Song> songs = playCounts.atLeast(minPlays);
+        metrics.record(ServiceMetrics.Operation.FILTER, start);
+        return songs;
+    }
+
+    /**
+     * Lists one page of the songs with a minimum play count, so a long listing need not be built in full.
+     * parameter 'minPlays' is the inclusive lower bound
+     * parameter 'offset' is the number of matching songs to skip
+     * parameter 'limit' is the maximum number of songs to return
+     * returns up to limit songs with play counts at or above the threshold, most played first
+     */
+    public List<Song> filterSongsByPlays(long minPlays, int offset, int limit) {
+        ensureLoaded();
+        long start = System.nanoTime();
+        List<Song> songs = playCounts.atLeast(minPlays, offset, limit);
+        metrics.record(ServiceMetrics.Operation.FILTER, start);
+        return songs;
+    }
+
+    /**
+     * Counts songs by minimum play count without building the list of songs.
+     * returns the number of songs with play counts at or above the threshold
+     */
+    public int countSongsByPlays(long minPlays) {
+        ensureLoaded();
+        long start = System.nanoTime();
+        int count = playCounts.countAtLeast(minPlays);
+        metrics.record(ServiceMetrics.Operation.FILTER, start);
+        return count;
+    }
+
+    /**
+     * Registers a new user with no playlists or plays.
+     * parameter 'name' is the user's display name
+     * returns the user, with a newly assigned id
+     * throws IllegalArgumentException if the name is empty
+     */
+    public User createUser(String name) {
+        User user = new User(nextUserId.incrementAndGet(), name, historyDepth, this::getSongById);
+        users.put(user.getId(), user);
+        return user;
+    }
+
+    /**
+     * Looks up a user.
+     * returns the user with the id, or null if there is none
+     */
+    public User getUser(long userId) {
+        return users.get(userId);
+    }
+
+    /**
+     * Deletes a user with their playlists and history. Their plays still count towards the songs' play counts.
+     * returns true if the user existed
+     */
+    public boolean removeUser(long userId) {
+        return users.remove(userId) != null;
+    }
+
+    /**
+     * Returns the number of registered users.
+     * returns the user count
+     */
+    public int getUserCount() {
+        return users.size();
+    }
+
+    /**
+     * Creates an empty playlist for a user.
+     * throws IllegalArgumentException if there is no such user, the name is empty or the user already has it
+     */
+    public void createPlaylist(long userId, String playlistName) {
+        user(userId).createPlaylist(playlistName);
+    }
+
+    /**
+     * Deletes one of a user's playlists.
+     * returns true if the user had the playlist
+     * throws IllegalArgumentException if there is no such user
+     */
+    public boolean removePlaylist(long userId, String playlistName) {
+        return user(userId).removePlaylist(playlistName);
+    }
+
+    /**
+     * Returns the names of a user's playlists.
+     * returns the names in creation order
+     * throws IllegalArgumentException if there is no such user
+     */
+    public List<String> getPlaylistNames(long userId) {
+        return user(userId).getPlaylistNames();
+    }
+
+    /**
+     * Adds a library song to one of a user's playlists. The playlist keeps only the song's id.
+     * parameter 'song' identifies the song by title, artist and year
+     * returns true if the song was added, false if it is not in the library or already in the playlist
+     * throws IllegalArgumentException if there is no such user or playlist
      */
-    public Collection<Song> filterSongsByPlays(long minPlays) {
-        return library.getSongs().stream()
-                .filter(s -> s.getPlayCount() >= minPlays)
-                .collect(Collectors.toList());
+    public boolean addToPlaylist(long userId, String playlistName, Song song) {
+        ensureLoaded();
+        User user = user(userId);
+        Song match = song == null ? null : library.findSong(song.getTitle(), song.getArtist(), song.getYear());
+        return match != null && user.addToPlaylist(playlistName, match);
+    }
+
+    /**
+     * Removes a song from one of a user's playlists.
+     * parameter 'song' identifies the song by title, artist and year
+     * returns true if the playlist had the song
+     * throws IllegalArgumentException if there is no such user or playlist
+     */
+    public boolean removeFromPlaylist(long userId, String playlistName, Song song) {
+        ensureLoaded();
+        User user = user(userId);
+        Song match = song == null ? null : library.findSong(song.getTitle(), song.getArtist(), song.getYear());
+        return match != null && user.removeFromPlaylist(playlistName, match);
+    }
+
+    /**
+     * Turns shuffle on or off for one of a user's playlists.
+     * throws IllegalArgumentException if there is no such user or playlist
+     */
+    public void setPlaylistShuffle(long userId, String playlistName, boolean shuffle) {
+        user(userId).setShuffle(playlistName, shuffle);
+    }
+
+    /**
+     * Checks whether one of a user's playlists is shuffled.
+     * throws IllegalArgumentException if there is no such user or playlist
+     */
+    public boolean isPlaylistShuffled(long userId, String playlistName) {
+        return user(userId).isShuffled(playlistName);
+    }
+
+    /**
+     * Returns the songs of one of a user's playlists in play order. Songs since removed from the library are
+     * left out, and dropped from the playlist.
+     * returns a List of library songs
+     * throws IllegalArgumentException if there is no such user or playlist
+     */
+    public List<Song> getPlaylistSongs(long userId, String playlistName) {
+        ensureLoaded();
+        return user(userId).getPlaylistSongs(playlistName);
+    }
+
+    /**
+     * Plays a library song for a user: the song's play count and the service history are updated as for
+     * playSong(Song), and the play is also added to the user's own history.
+     * returns true if the song is in the library and was played
+     * throws IllegalArgumentException if there is no such user
+     */
+    public boolean playSong(long userId, Song song) {
+        ensureLoaded();
+        User user = user(userId);
+        long start = System.nanoTime();
+        Song match = song == null ? null : library.findSong(song.getTitle(), song.getArtist(), song.getYear());
+        if (match != null) {
+            play(match);
+            user.recordPlay(match);
+        }
+        metrics.record(ServiceMetrics.Operation.PLAY, start);
+        return match != null;
+    }
+
+    /**
+     * Returns a user's most recent plays, skipping songs since removed from the library.
+     * returns a List of recently played songs, most recent first
+     * throws IllegalArgumentException if there is no such user
+     */
+    public List<Song> getPlaybackHistory(long userId, int limit) {
+        return user(userId).getPlaybackHistory(limit, this::inLibrary);
+    }
+
+    /** returns the user with the id, or throws IllegalArgumentException */
+    private User user(long userId) {
+        User user = users.get(userId);
+        if (user == null) {
+            throw new IllegalArgumentException("No user #" + userId);
+        }
+        return user;
+    }
+
+    /**
+     * Finds library songs matching several conditions at once, such as genre, year range, artist and play count.
+     * The genre, artist and year conditions are answered from bitmap indexes, so only matching songs are visited.
+     * parameter 'query' is the filter to apply
+     * returns the matching songs in the order they were created
+     */
+    public List<Song> findSongs(SongQuery query) {
+        ensureLoaded();
+        long start = System.nanoTime();
+        List<Song> songs = attributeIndex.find(query, playCounts);
+        metrics.record(ServiceMetrics.Operation.FILTER, start);
+        return songs;
+    }
+
+    /**
+     * Counts library songs matching several conditions at once.
+     * returns the number of matching songs
+     */
+    public int countSongs(SongQuery query) {
+        ensureLoaded();
+        long start = System.nanoTime();
+        int count = attributeIndex.count(query, playCounts);
+        metrics.record(ServiceMetrics.Operation.FILTER, start);
+        return count;
+    }
+
+    /**
+     * Returns the call counts and latencies recorded for the service operations.
+     * Adds, removes, plays, play count filters and shuffle toggles are timed on every call.
+     * returns the service metrics
+     */
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the songs played most within a recent window, such as the last hour, rather than over their lifetime.
+     * Recent plays are counted from when the service started; they are not kept across restarts.
+     * Songs removed from the library are left out, even if played while they were being removed.
+     * parameter 'window' is the window to rank over
+     * parameter 'limit' is the maximum number of songs to return
+     * returns the trending songs, most played in the window first
+     */
+    public List<Song> trendingSongs(TrendingTracker.Window window, int limit) {
+        long start = System.nanoTime();
+        List<Song> songs = trending.trending(window, limit, this::inLibrary);
+        metrics.record(ServiceMetrics.Operation.TRENDING, start);
+        return songs;
+    }
+
+    /**
+     * Returns how often a song was played within a recent window.
+     * parameter 'song' specifies the library song
+     * parameter 'window' is the window to count over
+     * returns the plays in the window
+     */
+    public long getRecentPlays(Song song, TrendingTracker.Window window) {
+        return trending.plays(song, window);
+    }
+
+    /**
+     * Returns the most played library songs. The play count index is kept sorted as songs are played,
+     * so this reads the top of the index instead of sorting the library.
+     * parameter 'limit' is the maximum number of songs to return
+     * returns up to limit songs, most played first
+     */
+    public List<Song> topSongs(int limit) {
+        ensureLoaded();
+        return playCounts.top(limit);
+    }
+
+    /**
+     * Returns the most played library songs of one genre.
+     * parameter 'genre' is the genre, matched exactly as stored on the songs
+     * parameter 'limit' is the maximum number of songs to return
+     * returns up to limit songs of the genre, most played first; empty if no song has the genre
+     */
+    public List<Song> topSongs(String genre, int limit) {
+        ensureLoaded();
+        PlayCountIndex index = genrePlayCounts.get(Song.GENRES.lookup(genre));
+        return index == null ? Collections.emptyList() : index.top(limit);
+    }
+
+    /**
+     * Searches song titles and artists for every word of a query, so "swift rain" finds Midnight Rain by Taylor Swift.
+     * Matching ignores case and punctuation.
+     * parameter 'query' is the words to look for
+     * parameter 'limit' is the maximum number of songs to return
+     * returns matching library songs, most played first
+     */
+    public List<Song> search(String query, int limit) {
+        ensureLoaded();
+        long start = System.nanoTime();
+        List<Song> songs = searchIndex.search(query, limit);
+        metrics.record(ServiceMetrics.Operation.SEARCH, start);
+        return songs;
+    }
+
+    /**
+     * Type-ahead search for partly typed text: the last word only has to start a title or artist word.
+     * parameter 'text' is the text typed so far
+     * parameter 'limit' is the maximum number of songs to return
+     * returns matching library songs, most played first
+     */
+    public List<Song> autocomplete(String text, int limit) {
+        ensureLoaded();
+        long start = System.nanoTime();
+        List<Song> songs = searchIndex.autocomplete(text, limit);
+        metrics.record(ServiceMetrics.Operation.SEARCH, start);
+        return songs;
+    }
+
+    /**
+     * Suggests title and artist words completing a partly typed word.
+     * parameter 'prefix' is the start of the word
+     * parameter 'limit' is the maximum number of words to return
+     * returns completed words, those found in the most songs first
+     */
+    public List<String> suggestWords(String prefix, int limit) {
+        ensureLoaded();
+        long start = System.nanoTime();
+        List<String> words = searchIndex.suggest(prefix, limit);
+        metrics.record(ServiceMetrics.Operation.SEARCH, start);
+        return words;
+    }
+
+    /**
+     * Folds the journal written so far into a new snapshot, so the next startup replays less.
+     * Does nothing for an in-memory service.
+     * throws IOException if the snapshot cannot be written
+     */
+    public void compactJournal() throws IOException {
+        if (journal != null) {
+            journal.compact();
+        }
+    }
+
+    /**
+     * Writes out and closes the journal of a persistent service. Closing does not compact, so it takes as long as
+     * forcing the last records; the next open replays what was written since the last snapshot and folds it into a
+     * new snapshot in the background, and the open after that starts from the snapshot alone.
+     * Does nothing for an in-memory service.
+     * throws IOException if journal records could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
     }
-}
\ No newline at end of file
+}
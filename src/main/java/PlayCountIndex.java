@@ -0,0 +1,305 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps songs ordered by (play count, id) so play count range queries do not have to scan the whole library.
+ * The index is a treap where every node also stores the size of its subtree, which lets "how many songs have at
+ * least X plays" be answered in O(log n) and "which songs" in O(log n + k). Songs are re-positioned in O(log n)
+ * whenever their play count changes. The K most played songs are the last K in key order, so a top-K query walks
+ * down the right spine and reads them off in O(log n + K) without scanning or sorting the library.
+ * Plays may arrive from many threads: a play only queues the song (once, however often it is played) and the
+ * queued songs are re-positioned by the next query or change under the index lock, so the play path never blocks.
+ */
+public class PlayCountIndex implements PlayCountListener {
+
+    private final Map<Song, Node> nodes; // Songs in the index mapped to their tree node
+    private final Queue<Node> pending; // Nodes whose play count changed since they were last positioned
+    private final Random random; // Source of node priorities which keep the tree balanced
+    private Node root; // Root of the treap, null when empty
+    private Node splitLeft; // Left result of the last split
+    private Node splitRight; // Right result of the last split
+
+    /**
+     * Creates an empty play count index.
+     */
+    public PlayCountIndex() {
+        this.nodes = new ConcurrentHashMap<>();
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.random = new Random();
+    }
+
+    /**
+     * Adds a song to the index and starts following its play count.
+     * parameter 'song' specifies the song to add
+     * returns true if the song was added, false if it was null or already indexed
+     */
+    public synchronized boolean add(Song song) {
+        if (song == null || nodes.containsKey(song)) {
+            return false;
+        }
+        Node node = new Node(song, song.getPlayCount(), random.nextInt());
+        nodes.put(song, node);
+        insert(node);
+        song.addPlayCountListener(this);
+        return true;
+    }
+
+    /**
+     * Removes a song from the index and stops following its play count.
+     * parameter 'song' specifies the song to remove
+     * returns true if the song was indexed
+     */
+    public synchronized boolean remove(Song song) {
+        Node node = song == null ? null : nodes.remove(song);
+        if (node == null) {
+            return false;
+        }
+        node.song.removePlayCountListener(this);
+        delete(node);
+        return true;
+    }
+
+    /**
+     * Queues a song to be moved to its new position after its play count changed.
+     * parameter 'song' is the song whose count changed
+     */
+    @Override
+    public void playCountChanged(Song song) {
+        Node node = nodes.get(song);
+        if (node != null && node.song == song && !node.queued.get() && node.queued.compareAndSet(false, true)) {
+            pending.add(node);
+        }
+    }
+
+    /**
+     * Returns the number of indexed songs.
+     * returns the index size
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Counts songs with at least the given number of plays without visiting them.
+     * parameter 'minPlays' is the inclusive lower bound
+     * returns the number of matching songs
+     */
+    public synchronized int countAtLeast(long minPlays) {
+        applyPending();
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.plays >= minPlays) {
+                count += 1 + size(node.right);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Lists songs with at least the given number of plays, most played first.
+     * parameter 'minPlays' is the inclusive lower bound
+     * returns the matching songs in descending play count order
+     */
+    public synchronized List<Song> atLeast(long minPlays) {
+        List<Song> result = new ArrayList<>(countAtLeast(minPlays));
+        collectDescending(root, minPlays, result);
+        return result;
+    }
+
+    /**
+     * Lists one page of the songs with at least the given number of plays, most played first. Subtrees before the page
+     * are skipped by their sizes, so only the songs on the page and the path to them are visited.
+     * parameter 'minPlays' is the inclusive lower bound
+     * parameter 'offset' is the number of matching songs to skip
+     * parameter 'limit' is the maximum number of songs to return
+     * returns up to limit matching songs in descending play count order
+     */
+    public synchronized List<Song> atLeast(long minPlays, int offset, int limit) {
+        applyPending();
+        List<Song> result = new ArrayList<>(Math.max(0, Math.min(limit, nodes.size())));
+        collectPage(root, minPlays, Math.max(0, offset), limit, result);
+        return result;
+    }
+
+    /**
+     * Lists the most played songs, ties broken by the order songs were created.
+     * parameter 'limit' is the maximum number of songs to return
+     * returns up to limit songs in descending play count order
+     */
+    public synchronized List<Song> top(int limit) {
+        applyPending();
+        List<Song> result = new ArrayList<>(Math.max(0, Math.min(limit, nodes.size())));
+        collectTop(root, limit, result);
+        return result;
+    }
+
+    /**
+     * Re-positions every queued song by its current play count.
+     * The queued flag is cleared before the count is read, so a play racing with this re-queues the song.
+     */
+    private void applyPending() {
+        Node node;
+        while ((node = pending.poll()) != null) {
+            node.queued.set(false);
+            long plays = node.song.getPlayCount();
+            if (plays != node.plays && nodes.get(node.song) == node) {
+                delete(node);
+                node.plays = plays;
+                node.left = null;
+                node.right = null;
+                node.size = 1;
+                insert(node);
+            }
+        }
+    }
+
+    /**
+     * Appends the songs of a subtree with at least minPlays plays in descending order, skipping subtrees below the bound.
+     */
+    private void collectDescending(Node node, long minPlays, List<Song> result) {
+        if (node == null) {
+            return;
+        }
+        collectDescending(node.right, minPlays, result);
+        if (node.plays >= minPlays) {
+            result.add(node.song);
+            collectDescending(node.left, minPlays, result);
+        }
+    }
+
+    /**
+     * Appends the songs of a subtree with at least minPlays plays in descending order, skipping the first 'skip' of
+     * them, until the result holds limit songs.
+     * returns how many songs are still to be skipped after this subtree
+     */
+    private int collectPage(Node node, long minPlays, int skip, int limit, List<Song> result) {
+        if (node == null || result.size() >= limit) {
+            return skip;
+        }
+        if (node.plays < minPlays) {
+            return collectPage(node.right, minPlays, skip, limit, result); // The left subtree is below the bound too
+        }
+        int right = size(node.right); // All at or above the bound, as they rank above this node
+        skip = skip >= right ? skip - right : collectPage(node.right, minPlays, skip, limit, result);
+        if (skip > 0) {
+            skip--;
+        } else if (result.size() < limit) {
+            result.add(node.song);
+        }
+        return collectPage(node.left, minPlays, skip, limit, result);
+    }
+
+    /**
+     * Appends the songs of a subtree in descending order until the result holds limit songs.
+     */
+    private void collectTop(Node node, int limit, List<Song> result) {
+        if (node == null || result.size() >= limit) {
+            return;
+        }
+        collectTop(node.right, limit, result);
+        if (result.size() < limit) {
+            result.add(node.song);
+            collectTop(node.left, limit, result);
+        }
+    }
+
+    /**
+     * Inserts a detached node by splitting the tree around its key.
+     */
+    private void insert(Node node) {
+        split(root, node.plays, node.song.getId());
+        Node right = splitRight;
+        root = merge(merge(splitLeft, node), right);
+    }
+
+    /**
+     * Deletes a node by splitting out the single key it holds and merging the rest back together.
+     */
+    private void delete(Node node) {
+        long id = node.song.getId();
+        split(root, node.plays, id);
+        Node left = splitLeft;
+        split(splitRight, node.plays, id + 1);
+        root = merge(left, splitRight);
+    }
+
+    /**
+     * Splits a subtree into keys below (plays, id), stored in splitLeft, and the rest, stored in splitRight.
+     */
+    private void split(Node node, long plays, long id) {
+        if (node == null) {
+            splitLeft = null;
+            splitRight = null;
+        } else if (node.plays < plays || (node.plays == plays && node.song.getId() < id)) {
+            split(node.right, plays, id);
+            node.right = splitLeft;
+            update(node);
+            splitLeft = node;
+        } else {
+            split(node.left, plays, id);
+            node.left = splitRight;
+            update(node);
+            splitRight = node;
+        }
+    }
+
+    /**
+     * Merges two subtrees where every key in the left one is below every key in the right one.
+     * returns the root of the merged subtree
+     */
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    /** Recomputes the subtree size of a node from its children. */
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    /** returns the subtree size of a node, 0 for null */
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * A tree node holding one song and the play count it is currently ordered by.
+     */
+    private static final class Node {
+        private final Song song; // Indexed song
+        private final int priority; // Random heap priority
+        private final AtomicBoolean queued = new AtomicBoolean(); // Whether the node is waiting in the pending queue
+        private long plays; // Play count the node is positioned by
+        private int size = 1; // Number of nodes in this subtree
+        private Node left; // Subtree with smaller keys
+        private Node right; // Subtree with larger keys
+
+        private Node(Song song, long plays, int priority) {
+            this.song = song;
+            this.plays = plays;
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * Receives a callback whenever a song's play count changes, so structures ordered by plays can stay current.
+ */
+public interface PlayCountListener {
+
+    /**
+     * Called after the play count of a song has changed.
+     * parameter 'song' is the song whose count changed; read the new value with getPlayCount
+     */
+    void playCountChanged(Song song);
+}
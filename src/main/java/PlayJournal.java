@@ -0,0 +1,814 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of library changes and plays, kept as numbered segment files next to snapshots.
+ *
+ * Callers only queue records and get back a sequence number; a single writer thread drains the queue and writes whole
+ * batches at once (group commit), forcing them to disk according to the SyncPolicy. The queue is bounded, so callers
+ * producing records faster than the disk takes them wait for room rather than growing the heap. Waiting for a record
+ * to be forced is a separate call, sync, so a caller can queue a record while holding its own lock, keeping records in
+ * the order of its changes, and wait for the disk after releasing it. Each record carries its length and a CRC32, so
+ * a record torn by a crash is detected and everything before it is kept.
+ *
+ * Compaction seals the current segment and folds it, together with the previous snapshot, into a new SongCatalog
+ * snapshot named after the last segment it covers. Compaction reads only files, never live songs, so it needs no
+ * coordination with plays in progress. It runs in the background when a segment fills up, and when a journal is opened
+ * over segments a previous run left behind; closing never compacts. Recovery loads the newest snapshot and replays the
+ * segments written after it. Snapshots also keep the most recent plays, so playback history survives restarts along
+ * with the library.
+ */
+public class PlayJournal implements AutoCloseable {
+
+    /**
+     * When journal writes are forced to disk.
+     */
+    public enum SyncPolicy {
+        /** Force every batch before sync returns for its records; a crash loses nothing that was acknowledged. */
+        EVERY_BATCH,
+        /** Force at most once per sync interval; a crash can lose the last interval of records. */
+        INTERVAL,
+        /** Never force; the operating system decides when records reach the disk. */
+        NEVER
+    }
+
+    static final byte ADD = 1; // Record of a song added to the library
+    static final byte REMOVE = 2; // Record of a song removed from the library
+    static final byte PLAY = 3; // Record of one play of a library song
+    private static final byte FLUSH = 0; // Queued marker asking the writer to force, never written
+    private static final String SEGMENT_PREFIX = "journal-"; // Segment file name prefix
+    private static final String SEGMENT_SUFFIX = ".log"; // Segment file name suffix
+    private static final String SNAPSHOT_PREFIX = "snapshot-"; // Snapshot file name prefix
+    private static final String SNAPSHOT_SUFFIX = ".cat"; // Snapshot file name suffix
+    private static final int RECORD_HEADER = 8; // Record length and CRC32
+    private static final int MAX_BATCH = 4096; // Most records written by one group commit
+    private static final int MAX_QUEUED = 16 * MAX_BATCH; // Records queued before callers wait for the writer
+    private static final long POLL_MILLIS = 10; // How long the writer waits for records before checking for idle work
+    private static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000; // Default interval for SyncPolicy.INTERVAL
+    private static final long DEFAULT_SEGMENT_LIMIT = 64L << 20; // Segment size that triggers compaction
+    static final int HISTORY_SIZE = 100; // Most recent plays kept in snapshots
+
+    private final Path dir; // Directory holding segments and snapshots
+    private final SyncPolicy policy; // When writes are forced
+    private final long syncIntervalNanos; // Interval between forces for SyncPolicy.INTERVAL
+    private final long segmentLimit; // Segment size after which the writer rotates and compacts
+    private final BlockingQueue<Entry> queue; // Records waiting for the writer, in sequence order
+    private final Object appendLock; // Numbers records and queues them in the same order, and is taken by close
+    private final ByteBuffer buffer; // Writer's encode buffer
+    private final CRC32 crc; // Writer's checksum
+    private final Object segmentLock; // Guards the open segment
+    private final Object progressLock; // Guards durableSequence and failure, and is waited on by callers
+    private final Thread writer; // Drains the queue
+    private final ExecutorService compactor; // Runs compactions triggered by segment size
+    private FileChannel channel; // Open segment
+    private long segment; // Number of the open segment
+    private long segmentBytes; // Bytes written to the open segment
+    private long lastSequence; // Sequence number of the newest queued record, guarded by appendLock
+    private long writtenSequence; // Sequence number of the newest written record, guarded by segmentLock
+    private long durableSequence; // Sequence number up to which records are on disk, guarded by progressLock
+    private boolean unforced; // Whether records were written since the last force
+    private long lastForce; // Time of the last force, from System.nanoTime
+    private IOException failure; // First write failure; once set, the journal rejects new records
+    private volatile boolean closed; // Set once close has been called
+
+    /**
+     * Opens a journal in a directory with the default sync interval and segment size.
+     * parameter 'dir' is the directory holding the journal and its snapshots; it is created if missing
+     * parameter 'policy' decides when writes are forced to disk
+     * throws IOException if the directory or a new segment cannot be created
+     */
+    public PlayJournal(Path dir, SyncPolicy policy) throws IOException {
+        this(dir, policy, DEFAULT_SYNC_INTERVAL_MILLIS, DEFAULT_SEGMENT_LIMIT);
+    }
+
+    /**
+     * Opens a journal in a directory. Records are appended to a new segment after any existing ones.
+     * parameter 'dir' is the directory holding the journal and its snapshots; it is created if missing
+     * parameter 'policy' decides when writes are forced to disk
+     * parameter 'syncIntervalMillis' is the longest time between forces under SyncPolicy.INTERVAL
+     * parameter 'segmentLimit' is the segment size in bytes after which the segment is compacted into a snapshot
+     * throws IOException if the directory or a new segment cannot be created
+     */
+    public PlayJournal(Path dir, SyncPolicy policy, long syncIntervalMillis, long segmentLimit) throws IOException {
+        if (policy == null || syncIntervalMillis < 0 || segmentLimit <= 0) {
+            throw new IllegalArgumentException("Invalid journal settings");
+        }
+        Files.createDirectories(dir);
+        this.dir = dir;
+        this.policy = policy;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        this.segmentLimit = segmentLimit;
+        this.queue = new ArrayBlockingQueue<>(MAX_QUEUED);
+        this.appendLock = new Object();
+        this.buffer = ByteBuffer.allocateDirect(1 << 16);
+        this.crc = new CRC32();
+        this.segmentLock = new Object();
+        this.progressLock = new Object();
+        long lastSegment = lastNumber(dir, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        long lastSnapshot = lastNumber(dir, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        openSegment(Math.max(lastSegment, lastSnapshot) + 1);
+        this.lastForce = System.nanoTime();
+        this.compactor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "play-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (lastSegment > lastSnapshot) {
+            compactor.execute(() -> compactQuietly(lastSegment)); // Fold what the last run left, for a faster next start
+        }
+        this.writer = new Thread(this::writeLoop, "play-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Rebuilds the library saved in a journal directory: the newest snapshot with every later segment replayed on top.
+     * A torn record at the end of a segment, left by a crash, ends the replay of that segment.
+     * parameter 'dir' is the journal directory
+     * returns the songs in library order with their play counts, empty if the directory holds no journal
+     * throws IOException if a snapshot or segment cannot be read
+     */
+    public static List<Song> recover(Path dir) throws IOException {
+        return new ArrayList<>(fold(dir, Long.MAX_VALUE).songs.values());
+    }
+
+    /**
+     * Starts a journal directory from an existing library, such as one migrated from an older format, by writing the
+     * songs as its first snapshot, so the next open or load of the directory starts from them.
+     * parameter 'dir' is the journal directory, created if missing
+     * parameter 'songs' specifies the songs in library order; a song equal to an earlier one is left out
+     * returns the number of songs written
+     * throws IOException if the directory already holds a journal or the snapshot cannot be written
+     */
+    public static int seed(Path dir, Collection<Song> songs) throws IOException {
+        Files.createDirectories(dir);
+        if (lastNumber(dir, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) > 0 || lastNumber(dir, SEGMENT_PREFIX, SEGMENT_SUFFIX) > 0) {
+            throw new IOException("Journal directory " + dir + " already holds a library");
+        }
+        Set<Song> distinct = new LinkedHashSet<>(songs);
+        SongCatalog.write(snapshotPath(dir, 1), distinct);
+        return distinct.size();
+    }
+
+    /**
+     * Loads the state saved in a journal directory for a fast start.
+     * When the newest snapshot has no segments after it, as after a clean close, only the snapshot header and the
+     * songs in its history are read; the rest of the songs are left in the mapped snapshot to be decoded when first
+     * needed, so the cost does not grow with the library. Otherwise the snapshot and segments are folded as recover
+     * does.
+     * parameter 'dir' is the journal directory
+     * returns the saved songs and recent plays
+     * throws IOException if a snapshot or segment cannot be read
+     */
+    public static SavedLibrary load(Path dir) throws IOException {
+        if (Files.isDirectory(dir)) {
+            TreeMap<Long, Path> snapshots = files(dir, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            TreeMap<Long, Path> segments = files(dir, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+            if (!snapshots.isEmpty() && segments.tailMap(snapshots.lastKey(), false).isEmpty()) {
+                SongCatalog catalog = SongCatalog.open(snapshots.lastEntry().getValue());
+                Map<Integer, Song> played = new HashMap<>();
+                List<Song> history = new ArrayList<>();
+                for (int row : catalog.getHistoryRows()) {
+                    history.add(played.computeIfAbsent(row, catalog::getSong));
+                }
+                return new SavedLibrary(Collections.emptyList(), catalog, played, history);
+            }
+        }
+        Fold fold = fold(dir, Long.MAX_VALUE);
+        return new SavedLibrary(new ArrayList<>(fold.songs.values()), null, Collections.emptyMap(), fold.history());
+    }
+
+    /**
+     * Queues a record of a song added to the library, with its play count as it is now.
+     * returns the record's sequence number, for sync
+     */
+    public long recordAdd(Song song) {
+        return append(ADD, song);
+    }
+
+    /**
+     * Queues a record of a song removed from the library.
+     * returns the record's sequence number, for sync
+     */
+    public long recordRemove(Song song) {
+        return append(REMOVE, song);
+    }
+
+    /**
+     * Queues a record of one play of a library song.
+     * returns the record's sequence number, for sync
+     */
+    public long recordPlay(Song song) {
+        return append(PLAY, song);
+    }
+
+    /**
+     * Under SyncPolicy.EVERY_BATCH, waits until a queued record, and every record before it, has been forced to disk.
+     * Under the other policies it returns at once. Call it after releasing any lock held while queueing, so other
+     * callers can queue records that join the same batch.
+     * parameter 'sequence' is the number returned when the record was queued
+     * throws UncheckedIOException if the journal failed to write
+     */
+    public void sync(long sequence) {
+        if (policy == SyncPolicy.EVERY_BATCH) {
+            awaitDurable(sequence);
+            IOException error = failure();
+            if (error != null) {
+                throw new UncheckedIOException("Journal write failed", error);
+            }
+        }
+    }
+
+    /**
+     * Waits until every record queued so far has been written and forced to disk, whatever the sync policy.
+     * throws IOException if the journal failed to write
+     */
+    public void flush() throws IOException {
+        awaitDurable(append(FLUSH, null));
+        IOException error = failure();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Seals the current segment and folds it into a new snapshot, then deletes the segments and snapshot it replaces.
+     * Records queued before the call are written first; records queued meanwhile go to the next segment. Does nothing
+     * if no records were written since the last snapshot.
+     * throws IOException if the snapshot cannot be written
+     */
+    public void compact() throws IOException {
+        flush();
+        long sealed;
+        synchronized (segmentLock) {
+            if (segmentBytes == 0 && files(dir, SEGMENT_PREFIX, SEGMENT_SUFFIX).headMap(segment).isEmpty()) {
+                return; // Nothing was written since the last snapshot
+            }
+            sealed = segment;
+            rotate();
+        }
+        compactThrough(sealed);
+    }
+
+    /**
+     * Writes out everything queued, forces it to disk and closes the journal. A compaction in progress is abandoned
+     * rather than waited for; its segments stay and are folded when the journal is next opened.
+     * throws IOException if the journal failed to write
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compactor.shutdownNow();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (segmentLock) {
+            try {
+                writeBatch(drainRemaining());
+                force();
+            } catch (IOException e) {
+                fail(e);
+            } finally {
+                channel.close();
+            }
+            if (segmentBytes == 0) {
+                Files.deleteIfExists(segmentPath(dir, segment));
+            }
+        }
+        IOException error = failure();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Numbers a record and queues it, waiting for room while the queue is full.
+     * returns the record's sequence number
+     * throws IllegalStateException if the journal is closed, UncheckedIOException if it failed to write
+     */
+    private long append(byte type, Song song) {
+        Entry entry = new Entry(type, song, type == ADD ? song.getPlayCount() : 0);
+        boolean interrupted = false;
+        try {
+            synchronized (appendLock) {
+                checkOpen();
+                entry.sequence = lastSequence + 1;
+                while (true) {
+                    try {
+                        if (queue.offer(entry, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                            break;
+                        }
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                    checkOpen(); // The writer stops draining once it fails
+                }
+                lastSequence = entry.sequence;
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return entry.sequence;
+    }
+
+    /**
+     * Rejects new records once the journal is closed or has failed.
+     * throws IllegalStateException if the journal is closed, UncheckedIOException if it failed to write
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        IOException error = failure();
+        if (error != null) {
+            throw new UncheckedIOException("Journal write failed", error);
+        }
+    }
+
+    /**
+     * Writer thread: takes whatever is queued, writes it as one batch and forces it as the policy requires.
+     */
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            Entry first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                first = null;
+            }
+            try {
+                if (first == null) {
+                    if (closed) {
+                        return;
+                    }
+                    synchronized (segmentLock) {
+                        forceIfDue();
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                synchronized (segmentLock) {
+                    writeBatch(batch);
+                    if (segmentBytes >= segmentLimit) {
+                        long sealed = segment;
+                        rotate();
+                        compactor.execute(() -> compactQuietly(sealed));
+                    }
+                }
+                batch.clear();
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Encodes and writes a batch to the open segment, then forces it if the policy or a flush marker asks for it.
+     */
+    private void writeBatch(List<Entry> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        boolean flushRequested = false;
+        for (Entry entry : batch) {
+            writtenSequence = entry.sequence;
+            if (entry.type == FLUSH) {
+                flushRequested = true;
+                continue;
+            }
+            byte[] title = entry.song.getTitle().getBytes(StandardCharsets.UTF_8);
+            byte[] artist = entry.song.getArtist().getBytes(StandardCharsets.UTF_8);
+            byte[] genre = entry.type == ADD && entry.song.getGenre() != null
+                    ? entry.song.getGenre().getBytes(StandardCharsets.UTF_8) : null;
+            int payload = 1 + 4 + title.length + 4 + artist.length + 4
+                    + (entry.type == ADD ? 8 + 4 + (genre == null ? 0 : genre.length) : 0);
+            ByteBuffer out = buffer;
+            if (RECORD_HEADER + payload > buffer.capacity()) {
+                writeBuffer(buffer);
+                out = ByteBuffer.allocate(RECORD_HEADER + payload);
+            } else if (buffer.remaining() < RECORD_HEADER + payload) {
+                writeBuffer(buffer);
+            }
+            int start = out.position();
+            out.position(start + RECORD_HEADER);
+            out.put(entry.type);
+            putBytes(out, title);
+            putBytes(out, artist);
+            out.putInt(entry.song.getYear());
+            if (entry.type == ADD) {
+                out.putLong(entry.plays);
+                putBytes(out, genre);
+            }
+            ByteBuffer body = out.duplicate();
+            body.position(start + RECORD_HEADER).limit(out.position());
+            crc.reset();
+            crc.update(body);
+            out.putInt(start, payload);
+            out.putInt(start + 4, (int) crc.getValue());
+            if (out != buffer) {
+                writeBuffer(out);
+            }
+        }
+        writeBuffer(buffer);
+        unforced = true;
+        if (policy == SyncPolicy.EVERY_BATCH || flushRequested) {
+            force();
+        } else {
+            forceIfDue();
+        }
+    }
+
+    /** Forces unforced writes when the sync interval has passed under SyncPolicy.INTERVAL. */
+    private void forceIfDue() throws IOException {
+        if (unforced && policy == SyncPolicy.INTERVAL && System.nanoTime() - lastForce >= syncIntervalNanos) {
+            force();
+        }
+    }
+
+    /** Forces the open segment to disk, making every record written so far durable. */
+    private void force() throws IOException {
+        channel.force(false);
+        unforced = false;
+        lastForce = System.nanoTime();
+        markDurable(writtenSequence);
+    }
+
+    /** Writes the contents of a buffer to the open segment and clears it. */
+    private void writeBuffer(ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            segmentBytes += channel.write(out);
+        }
+        out.clear();
+    }
+
+    /** Forces and closes the open segment and opens the next one. Called with segmentLock held. */
+    private void rotate() throws IOException {
+        writeBuffer(buffer);
+        force();
+        channel.close();
+        openSegment(segment + 1);
+    }
+
+    /** Opens a new, empty segment. */
+    private void openSegment(long number) throws IOException {
+        channel = FileChannel.open(segmentPath(dir, number), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segment = number;
+        segmentBytes = 0;
+    }
+
+    /**
+     * Compaction run by the background compactor; failures are kept for the next caller to see, except those of a
+     * compaction interrupted by close, which leaves its segments in place.
+     */
+    private void compactQuietly(long sealed) {
+        try {
+            compactThrough(sealed);
+        } catch (IOException e) {
+            if (!closed) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Folds the newest snapshot and all segments up to and including a sealed one into a new snapshot,
+     * then deletes the files it replaces. Compactions run one at a time.
+     */
+    private synchronized void compactThrough(long sealed) throws IOException {
+        Fold fold = fold(dir, sealed);
+        SongCatalog.write(snapshotPath(dir, sealed), fold.songs.values(), fold.history());
+        for (Map.Entry<Long, Path> old : files(dir, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).entrySet()) {
+            if (old.getKey() < sealed) {
+                Files.deleteIfExists(old.getValue());
+            }
+        }
+        for (Map.Entry<Long, Path> old : files(dir, SEGMENT_PREFIX, SEGMENT_SUFFIX).entrySet()) {
+            if (old.getKey() <= sealed) {
+                Files.deleteIfExists(old.getValue());
+            }
+        }
+    }
+
+    /** Waits until the record with a sequence number has been forced to disk or the journal has failed. */
+    private void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        synchronized (progressLock) {
+            while (durableSequence < sequence && failure == null) {
+                try {
+                    progressLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Marks the records up to a sequence number as durable and wakes waiting callers. */
+    private void markDurable(long sequence) {
+        synchronized (progressLock) {
+            if (sequence > durableSequence) {
+                durableSequence = sequence;
+                progressLock.notifyAll();
+            }
+        }
+    }
+
+    /** Records a write failure and wakes waiting callers. */
+    private void fail(IOException e) {
+        synchronized (progressLock) {
+            if (failure == null) {
+                failure = e;
+            }
+            progressLock.notifyAll();
+        }
+    }
+
+    /** returns the first write failure, or null */
+    private IOException failure() {
+        synchronized (progressLock) {
+            return failure;
+        }
+    }
+
+    /** returns records queued after the writer stopped */
+    private List<Entry> drainRemaining() {
+        List<Entry> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        return remaining;
+    }
+
+    /**
+     * Loads the newest snapshot covering no segment past upTo and replays the later segments up to upTo.
+     * returns the songs keyed by identity, in library order, and the recent plays
+     */
+    private static Fold fold(Path dir, long upTo) throws IOException {
+        Fold fold = new Fold();
+        if (!Files.isDirectory(dir)) {
+            return fold;
+        }
+        long base = 0;
+        for (Map.Entry<Long, Path> snapshot : files(dir, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).entrySet()) {
+            if (snapshot.getKey() <= upTo) {
+                base = snapshot.getKey();
+            }
+        }
+        if (base > 0) {
+            SongCatalog catalog = SongCatalog.open(snapshotPath(dir, base));
+            List<Song> stored = catalog.getSongs();
+            for (Song song : stored) {
+                fold.songs.putIfAbsent(song, song);
+            }
+            for (int row : catalog.getHistoryRows()) {
+                fold.recent.addLast(stored.get(row));
+            }
+        }
+        for (Map.Entry<Long, Path> segment : files(dir, SEGMENT_PREFIX, SEGMENT_SUFFIX).entrySet()) {
+            if (segment.getKey() > base && segment.getKey() <= upTo) {
+                replay(segment.getValue(), fold);
+            }
+        }
+        return fold;
+    }
+
+    /**
+     * Applies the records of one segment, stopping at the first incomplete or corrupt record.
+     */
+    private static void replay(Path segment, Fold fold) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        CRC32 check = new CRC32();
+        while (in.remaining() >= RECORD_HEADER) {
+            int start = in.position();
+            int payload = in.getInt();
+            int expected = in.getInt();
+            if (payload <= 0 || payload > in.remaining()) {
+                return;
+            }
+            ByteBuffer body = in.slice(start + RECORD_HEADER, payload);
+            check.reset();
+            check.update(body.duplicate());
+            if ((int) check.getValue() != expected) {
+                return;
+            }
+            in.position(start + RECORD_HEADER + payload);
+            try {
+                apply(body, fold);
+            } catch (RuntimeException e) {
+                return;
+            }
+        }
+    }
+
+    /** Applies one decoded record to the replayed library. */
+    private static void apply(ByteBuffer body, Fold fold) {
+        Map<Song, Song> songs = fold.songs;
+        byte type = body.get();
+        String title = getString(body);
+        String artist = getString(body);
+        int year = body.getInt();
+        if (type == ADD) {
+            long plays = body.getLong();
+            Song song = new Song(title, artist, plays, year, getString(body));
+            songs.putIfAbsent(song, song);
+        } else if (type == REMOVE) {
+            songs.remove(Song.key(title, artist, year));
+        } else if (type == PLAY) {
+            Song song = songs.get(Song.key(title, artist, year));
+            if (song != null) {
+                song.incrementPlayCount();
+                fold.recent.addFirst(song);
+                if (fold.recent.size() > HISTORY_SIZE) {
+                    fold.recent.removeLast();
+                }
+            }
+        } else {
+            throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    /** Writes a length prefixed byte string, with length -1 for null. */
+    private static void putBytes(ByteBuffer out, byte[] bytes) {
+        if (bytes == null) {
+            out.putInt(-1);
+        } else {
+            out.putInt(bytes.length);
+            out.put(bytes);
+        }
+    }
+
+    /** returns a length prefixed UTF-8 string, or null for length -1 */
+    private static String getString(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** returns the files in a directory named prefix + number + suffix, ordered by number */
+    private static TreeMap<Long, Path> files(Path dir, String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> found = new TreeMap<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir, prefix + "*" + suffix)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                try {
+                    found.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), entry);
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        return found;
+    }
+
+    /** returns the highest number used by files with the given prefix and suffix, or 0 */
+    private static long lastNumber(Path dir, String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> found = files(dir, prefix, suffix);
+        return found.isEmpty() ? 0 : found.lastKey();
+    }
+
+    private static Path segmentPath(Path dir, long number) {
+        return dir.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+    }
+
+    private static Path snapshotPath(Path dir, long number) {
+        return dir.resolve(SNAPSHOT_PREFIX + number + SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Library rebuilt from a snapshot and segments, with the plays seen along the way.
+     */
+    private static final class Fold {
+        private final Map<Song, Song> songs = new LinkedHashMap<>(); // Songs keyed by identity, in library order
+        private final Deque<Song> recent = new ArrayDeque<>(); // Recently played songs, most recent first
+
+        /** returns the recent plays of songs still in the library, most recent first */
+        private List<Song> history() {
+            List<Song> history = new ArrayList<>(recent.size());
+            for (Song song : recent) {
+                if (songs.get(song) == song) {
+                    history.add(song);
+                }
+            }
+            return history;
+        }
+    }
+
+    /**
+     * Songs and recent plays saved in a journal directory, see load.
+     * The songs are either fully decoded, or left in a mapped snapshot to be decoded when first needed.
+     */
+    public static final class SavedLibrary {
+        private final List<Song> songs; // Decoded songs in library order, empty when they are left in the catalog
+        private final SongCatalog catalog; // Snapshot holding the songs still to decode, or null
+        private final Map<Integer, Song> decoded; // Catalog rows already decoded for the history
+        private final List<Song> history; // Recently played songs, most recent first
+
+        private SavedLibrary(List<Song> songs, SongCatalog catalog, Map<Integer, Song> decoded, List<Song> history) {
+            this.songs = songs;
+            this.catalog = catalog;
+            this.decoded = decoded;
+            this.history = history;
+        }
+
+        /** return The songs already decoded, in library order; empty when getCatalog holds them instead */
+        public List<Song> getSongs() {
+            return songs;
+        }
+
+        /** return The snapshot whose songs are still to decode, or null if getSongs holds every song */
+        public SongCatalog getCatalog() {
+            return catalog;
+        }
+
+        /**
+         * Returns the song for a catalog row, reusing the history songs already decoded so they stay the same objects.
+         * parameter 'row' is a row of getCatalog
+         * returns the song
+         */
+        public Song getSong(int row) {
+            Song song = decoded.get(row);
+            return song != null ? song : catalog.getSong(row);
+        }
+
+        /** return The recently played songs, most recent first */
+        public List<Song> getHistory() {
+            return history;
+        }
+
+        /**
+         * Returns the number of saved songs without decoding them.
+         * returns the song count
+         */
+        public int size() {
+            return catalog != null ? catalog.size() : songs.size();
+        }
+    }
+
+    /**
+     * A queued record: what happened, to which song, and the play count to store for an added song.
+     */
+    private static final class Entry {
+        private final byte type; // ADD, REMOVE, PLAY or FLUSH
+        private final Song song; // Song the record is about, null for FLUSH
+        private final long plays; // Play count at the time an ADD was queued
+        private long sequence; // Position in the journal, set when queued
+
+        private Entry(byte type, Song song, long plays) {
+            this.type = type;
+            this.song = song;
+            this.plays = plays;
+        }
+    }
+}
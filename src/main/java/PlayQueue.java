@@ -0,0 +1,331 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Continuous playback over a playlist: next and previous track, songs queued to play next, and repeat modes.
+ * The queue walks the playlist's shared snapshot of its current order, shuffled or not, by position, so moving to the
+ * next or previous track is O(1) and never copies the list. Songs queued with enqueue or playNext are played before
+ * the playlist continues. When the playlist changes, the queue finds its current song again in the new order on the
+ * next move through the playlist's position map, so playback carries on after the song that was playing.
+ * The queue keeps the next few tracks prefetched: after every move or queue change it recomputes that window and
+ * hands each track entering it to a loader once, so a client can start fetching audio before the track is reached.
+ * A queue belongs to one listener and is not thread-safe.
+ */
+public class PlayQueue {
+
+    /**
+     * What happens when playback reaches the end of the playlist.
+     */
+    public enum RepeatMode {
+        /** Stop after the last track. */
+        OFF,
+        /** Start again from the first track. */
+        ALL,
+        /** Keep playing the current track. */
+        ONE
+    }
+
+    private static final int DEFAULT_PREFETCH = 3; // Tracks kept prefetched when the caller does not say
+
+    private final Playlist playlist; // Playlist being played
+    private final int prefetch; // Number of upcoming tracks kept prefetched
+    private final Consumer<Song> loader; // Called once for each track as it enters the prefetch window
+    private List<Song> prefetched; // Upcoming tracks as of the last move or queue change, next first
+    private long prefetchedVersion; // Playlist version the prefetched tracks were computed against
+    private final Deque<Song> queued; // Songs to play before the playlist continues, next first
+    private RepeatMode repeat; // Behaviour at the end of the playlist
+    private List<Song> order; // Playlist snapshot the position refers to
+    private long version; // Playlist version of the snapshot
+    private int position; // Position in order of the last playlist track played, -1 before the first
+    private Song current; // Song playing now, from the playlist or the queued songs, null when stopped
+
+    /**
+     * Creates a queue positioned before the first track of a playlist, keeping the next few tracks prefetched.
+     * parameter 'playlist' is the playlist to play
+     */
+    public PlayQueue(Playlist playlist) {
+        this(playlist, DEFAULT_PREFETCH, song -> { });
+    }
+
+    /**
+     * Creates a queue positioned before the first track of a playlist.
+     * parameter 'playlist' is the playlist to play
+     * parameter 'prefetch' is the number of upcoming tracks to keep prefetched
+     * parameter 'loader' is called once for each track as it enters the prefetch window
+     * throws IllegalArgumentException if the playlist or loader is null or prefetch is negative
+     */
+    public PlayQueue(Playlist playlist, int prefetch, Consumer<Song> loader) {
+        if (playlist == null) {
+            throw new IllegalArgumentException("Playlist cannot be null");
+        }
+        if (prefetch < 0 || loader == null) {
+            throw new IllegalArgumentException("Prefetch must be zero or more, with a loader");
+        }
+        this.playlist = playlist;
+        this.prefetch = prefetch;
+        this.loader = loader;
+        this.queued = new ArrayDeque<>();
+        this.repeat = RepeatMode.OFF;
+        this.version = playlist.getVersion();
+        this.order = playlist.getSongs();
+        this.position = -1;
+        this.prefetched = Collections.emptyList();
+        refill();
+    }
+
+    /**
+     * Moves to the next track: the first queued song if there is one, otherwise the next playlist track.
+     * returns the new current song, or null if playback has reached the end with repeat off
+     */
+    public Song next() {
+        current = queued.isEmpty() ? advance() : queued.poll();
+        refill();
+        return current;
+    }
+
+    /**
+     * Moves back to the previous playlist track. Queued songs already played are not revisited.
+     * returns the new current song, or null if there is no earlier track with repeat off
+     */
+    public Song previous() {
+        current = retreat();
+        refill();
+        return current;
+    }
+
+    /**
+     * Moves to a playlist position, so the next track follows on from there.
+     * parameter 'index' is the zero based position in the playlist's current order
+     * returns the song at that position
+     * throws IllegalArgumentException if the position is outside the playlist
+     */
+    public Song skipTo(int index) {
+        sync();
+        if (index < 0 || index >= order.size()) {
+            throw new IllegalArgumentException("No track " + (index + 1) + " in a playlist of " + order.size());
+        }
+        position = index;
+        current = order.get(position);
+        refill();
+        return current;
+    }
+
+    /**
+     * Queues a song to play after the songs already queued.
+     * parameter 'song' specifies the song to queue
+     */
+    public void enqueue(Song song) {
+        queued.addLast(checkSong(song));
+        refill();
+    }
+
+    /**
+     * Queues a song to play straight after the current one, ahead of the songs already queued.
+     * parameter 'song' specifies the song to queue
+     */
+    public void playNext(Song song) {
+        queued.addFirst(checkSong(song));
+        refill();
+    }
+
+    /**
+     * Drops every queued song; playback continues with the playlist.
+     */
+    public void clearQueued() {
+        queued.clear();
+        refill();
+    }
+
+    /**
+     * Returns the number of songs queued ahead of the playlist.
+     * returns the queued song count
+     */
+    public int getQueuedCount() {
+        return queued.size();
+    }
+
+    /**
+     * Lists the tracks that next would return, without moving, so a client can prefetch them.
+     * Reads at most 'count' songs from the queued songs and the playlist snapshot, following the repeat mode.
+     * parameter 'count' is the number of tracks wanted
+     * returns up to count upcoming songs, in play order
+     */
+    public List<Song> upcoming(int count) {
+        if (count <= 0) {
+            return Collections.emptyList();
+        }
+        sync();
+        List<Song> songs = new ArrayList<>(Math.min(count, queued.size() + order.size()));
+        for (Song song : queued) {
+            if (songs.size() == count) {
+                return songs;
+            }
+            songs.add(song);
+        }
+        if (order.isEmpty()) {
+            return songs;
+        }
+        if (repeat == RepeatMode.ONE && position >= 0 && position < order.size()) {
+            while (songs.size() < count) {
+                songs.add(order.get(position));
+            }
+            return songs;
+        }
+        int next = position + 1;
+        while (songs.size() < count) {
+            if (next >= order.size()) {
+                if (repeat == RepeatMode.OFF) {
+                    break;
+                }
+                next = 0;
+            }
+            songs.add(order.get(next++));
+        }
+        return songs;
+    }
+
+    /** return The song playing now, or null before the first track or after the last */
+    public Song getCurrent() {
+        return current;
+    }
+
+    /** return The repeat mode */
+    public RepeatMode getRepeatMode() {
+        return repeat;
+    }
+
+    /**
+     * Sets what happens at the end of the playlist.
+     * parameter 'repeat' is the new repeat mode
+     */
+    public void setRepeatMode(RepeatMode repeat) {
+        if (repeat == null) {
+            throw new IllegalArgumentException("Repeat mode cannot be null");
+        }
+        this.repeat = repeat;
+        refill();
+    }
+
+    /**
+     * Returns the prefetched tracks: those next would return, as of the last move, queue change or playlist change.
+     * returns up to the prefetch count of upcoming songs, in play order
+     */
+    public List<Song> getPrefetched() {
+        if (playlist.getVersion() != prefetchedVersion) {
+            refill();
+        }
+        return Collections.unmodifiableList(prefetched);
+    }
+
+    /** return The playlist being played */
+    public Playlist getPlaylist() {
+        return playlist;
+    }
+
+    /**
+     * Moves the position to the next playlist track, following the repeat mode.
+     * returns the track, or null at the end with repeat off
+     */
+    private Song advance() {
+        sync();
+        if (repeat == RepeatMode.ONE && position >= 0 && position < order.size()) {
+            return order.get(position);
+        }
+        int next = position + 1;
+        if (next >= order.size()) {
+            if (repeat == RepeatMode.OFF || order.isEmpty()) {
+                position = order.size();
+                return null;
+            }
+            next = 0;
+        }
+        position = next;
+        return order.get(position);
+    }
+
+    /**
+     * Moves the position to the previous playlist track, following the repeat mode.
+     * returns the track, or null at the start with repeat off
+     */
+    private Song retreat() {
+        sync();
+        if (repeat == RepeatMode.ONE && position >= 0 && position < order.size()) {
+            return order.get(position);
+        }
+        int previous = Math.min(position, order.size()) - 1;
+        if (previous < 0) {
+            if (repeat == RepeatMode.OFF || order.isEmpty()) {
+                position = -1;
+                return null;
+            }
+            previous = order.size() - 1;
+        }
+        position = previous;
+        return order.get(position);
+    }
+
+    /**
+     * Recomputes the prefetch window and hands the loader each track that was not already in it.
+     * The window holds a handful of tracks, so comparing against it directly is cheaper than hashing.
+     */
+    private void refill() {
+        List<Song> window = upcoming(prefetch);
+        for (int i = 0; i < window.size(); i++) {
+            Song song = window.get(i);
+            if (!containsSame(prefetched, prefetched.size(), song) && !containsSame(window, i, song)) {
+                loader.accept(song);
+            }
+        }
+        prefetched = window;
+        prefetchedVersion = version;
+    }
+
+    /** returns true if the first count songs of a list include this very song */
+    private static boolean containsSame(List<Song> songs, int count, Song song) {
+        for (int i = 0; i < count; i++) {
+            if (songs.get(i) == song) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Picks up the playlist's current order after a change, re-finding the last playlist track played by id through
+     * the playlist's position map rather than scanning the new order.
+     * If that song was removed, the position stays where it was, so the song that took its place plays next.
+     */
+    private void sync() {
+        long latest = playlist.getVersion();
+        if (latest == version) {
+            return;
+        }
+        Song last = position >= 0 && position < order.size() ? order.get(position) : null;
+        List<Song> songs;
+        int found;
+        do { // Read the order and the position again if another change slipped in between them
+            latest = playlist.getVersion();
+            songs = playlist.getSongs();
+            found = playlist.indexOf(last);
+        } while (found >= songs.size() || (found >= 0 && songs.get(found) != last));
+        if (found >= 0) {
+            position = found;
+        } else if (position >= 0) {
+            position = Math.min(position, songs.size()) - 1;
+        }
+        order = songs;
+        version = latest;
+    }
+
+    /** returns the song if it can be queued */
+    private static Song checkSong(Song song) {
+        if (song == null) {
+            throw new IllegalArgumentException("Song cannot be null");
+        }
+        return song;
+    }
+}
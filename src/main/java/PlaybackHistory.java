@@ -0,0 +1,102 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Fixed-capacity ring buffer of recently played songs.
+ * Appending claims the next sequence number and overwrites the oldest slot in place, so it never shifts and many
+ * threads can record plays at once. Each slot holds the song together with its sequence number as one immutable entry,
+ * so a reader never pairs a song with another play's number. Readers walk backwards from the newest entry and copy
+ * only what they ask for.
+ */
+public class PlaybackHistory {
+
+    private final AtomicReferenceArray<Entry> entries; // Ring of played songs, null where nothing was recorded yet
+    private final AtomicLong sequence; // Total number of plays recorded, also the sequence number of the next play
+
+    /**
+     * Creates an empty history.
+     * parameter 'capacity' is the number of plays kept before the oldest is overwritten
+     * throws IllegalArgumentException if capacity is not positive
+     */
+    public PlaybackHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive");
+        }
+        this.entries = new AtomicReferenceArray<>(capacity);
+        this.sequence = new AtomicLong();
+    }
+
+    /**
+     * Records a play as the most recent entry.
+     * parameter 'song' specifies the song that was played
+     */
+    public void record(Song song) {
+        long next = sequence.getAndIncrement();
+        int slot = (int) (next % entries.length());
+        Entry entry = new Entry(next, song);
+        Entry current = entries.get(slot);
+        // A writer that wrapped around onto the same slot with a newer play wins, whichever stores first
+        while ((current == null || current.sequence < next) && !entries.compareAndSet(slot, current, entry)) {
+            current = entries.get(slot);
+        }
+    }
+
+    /**
+     * Returns the most recent plays, newest first.
+     * parameter 'limit' is the maximum number of entries to return
+     * returns up to limit recently played songs
+     */
+    public List<Song> recent(int limit) {
+        return recent(limit, song -> true);
+    }
+
+    /**
+     * Returns the most recent plays that pass a filter, newest first.
+     * Entries being overwritten while the history is read are skipped rather than reported out of order.
+     * parameter 'limit' is the maximum number of entries to return
+     * parameter 'include' decides which songs are reported, for example only songs still in the library
+     * returns up to limit recently played songs
+     */
+    public List<Song> recent(int limit, Predicate<Song> include) {
+        long newest = sequence.get() - 1;
+        long oldest = Math.max(0, newest - entries.length() + 1);
+        List<Song> result = new ArrayList<>(Math.max(0, Math.min(limit, entries.length())));
+        for (long next = newest; next >= oldest && result.size() < limit; next--) {
+            Entry entry = entries.get((int) (next % entries.length()));
+            if (entry != null && entry.sequence == next && include.test(entry.song)) {
+                result.add(entry.song);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of plays the history can hold.
+     * returns the ring capacity
+     */
+    public int capacity() {
+        return entries.length();
+    }
+
+    /**
+     * Returns the total number of plays recorded, including those already overwritten.
+     * returns the play total
+     */
+    public long totalPlays() {
+        return sequence.get();
+    }
+
+    /** One recorded play: the song and the sequence number it was recorded under. */
+    private static final class Entry {
+        private final long sequence; // Sequence number of the play
+        private final Song song; // Song that was played
+
+        private Entry(long sequence, Song song) {
+            this.sequence = sequence;
+            this.song = song;
+        }
+    }
+}
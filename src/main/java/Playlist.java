@@ -1,16 +1,39 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * Represents a playlist or of songs, supporting addition, removal, and shuffle functionality. This is intended to store the songs and manipulate the list of them
+ * Changes take a write lock, one at a time, and publish a new version when done. contains, findSong and size read a
+ * concurrent identity index and never lock, and listings read the immutable published snapshot without locking once
+ * it exists. A change only drops the snapshot, so that bulk loads stay linear; the first listing after a change
+ * rebuilds it under the write lock, and so does the first indexOf for its position map. Lookups by id share a read
+ * lock. Reads see the playlist either before or after a change, never part way through.
  */
-public class Playlist {
+public class Playlist implements Iterable<Song> {
 
     private final String name; // Playlist name
-    private final List<Song> songs; // Original song list
-    private boolean shuffle; // Shuffle mode status
-    private List<Song> currentSongs; // Current display order (shuffled or original)
+    private ArrayList<Song> songs; // Song slots in insertion order, null marks a removed song
+    private final Map<Song, Slot> index; // Song identity mapped to its slot in songs, readable without the lock
+    private final LongIntHashMap slotsById; // Song id mapped to its slot in songs
+    private int removedSlots; // Number of null slots waiting to be compacted
+    private volatile boolean shuffle; // Shuffle mode status
+    private int[] shuffleOrder; // Slots of songs in shuffled order, null when shuffle is off; cleared slots are skipped when read
+    private int shuffleLength; // Number of entries in use in shuffleOrder
+    private final Random random; // Source of randomness for the shuffle order
+    private volatile List<Song> currentSongs; // Immutable snapshot of the display order (shuffled or original), null until rebuilt after a change
+    private volatile LongIntHashMap currentPositions; // Song id to position in currentSongs, null until first needed
+    private volatile long version; // Incremented on every change to the songs or their order
+    private final StampedLock lock; // Held to write by changes and snapshot rebuilds, shared by lookups by id
 
     /**
      * Creates a new playlist with the given name.
@@ -23,48 +46,250 @@ public class Playlist {
         }
         this.name = name;
         this.songs = new ArrayList<>();
+        this.index = new ConcurrentHashMap<>();
+        this.slotsById = new LongIntHashMap();
         this.shuffle = false;
-        this.currentSongs = new ArrayList<>(songs);
+        this.currentSongs = null;
+        this.random = new Random();
+        this.lock = new StampedLock();
     }
 
     /**
      * Adds a song to the playlist if it’s not already present.
+     * The duplicate check is a hash lookup on the song identity, so bulk loads stay linear.
+     * When shuffled, the song is dropped into a random position with one inside-out Fisher-Yates step.
      * parameter 'song' specifies The song to add
+     * returns true if the song was added, false if it was null or already present
      */
-    public void addSong(Song song) {
-        if (song != null && !songs.contains(song)) {
-            songs.add(song);
-            updateCurrentSongs();
+    public boolean addSong(Song song) {
+        if (song == null) {
+            return false;
         }
+        long stamp = lock.writeLock();
+        try {
+            if (!insert(song)) {
+                return false;
+            }
+            changed();
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds many songs as one change: duplicates of songs already present, or earlier in the batch, are skipped,
+     * and the snapshot and version move once for the whole batch rather than once per song.
+     * parameter 'batch' specifies the songs to add, in order
+     * returns the songs that were added, in order
+     */
+    public List<Song> addAll(Collection<Song> batch) {
+        List<Song> added = new ArrayList<>(batch.size());
+        long stamp = lock.writeLock();
+        try {
+            songs.ensureCapacity(songs.size() + batch.size());
+            for (Song song : batch) {
+                if (song != null && insert(song)) {
+                    added.add(song);
+                }
+            }
+            if (!added.isEmpty()) {
+                changed();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return added;
     }
 
     /**
      * Removes a song from the playlist and updates the current order.
+     * The slot is cleared rather than shifted, which also leaves the shuffle order untouched;
+     * cleared slots are compacted when the next snapshot is built, or at once if they make up half the list.
      * parameter 'song' specifies The song to remove
+     * returns true if the song was in the playlist
+     */
+    public boolean removeSong(Song song) {
+        if (song == null) {
+            return false;
+        }
+        long stamp = lock.writeLock();
+        try {
+            Slot slot = index.remove(song);
+            if (slot != null) {
+                clearSlot(slot.position);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the song with the given id, as removeSong does, with one primitive map lookup.
+     * parameter 'id' is the song id, see Song.getId
+     * returns the removed song, or null if no song in the playlist has that id
+     */
+    public Song removeSongById(long id) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotsById.get(id);
+            if (slot == LongIntHashMap.MISSING) {
+                return null;
+            }
+            Song song = songs.get(slot);
+            index.remove(song);
+            clearSlot(slot);
+            return song;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Checks whether a song with the same identity is in the playlist.
+     * returns true if present
+     */
+    public boolean contains(Song song) {
+        return song != null && index.containsKey(song);
+    }
+
+    /**
+     * Finds the song with the given identity.
+     * returns the matching song, or null if the playlist does not contain it
+     */
+    public Song findSong(String title, String artist, int year) {
+        if (title == null || artist == null) {
+            return null;
+        }
+        Slot slot = index.get(Song.key(title, artist, year));
+        return slot == null ? null : slot.song;
+    }
+
+    /**
+     * Finds the song with the given id. The id stays with the song while it is in the playlist, whatever the
+     * shuffle state or other removals, so it names the same track even when positions shift.
+     * The primitive id map is not safe to read during a change, so this waits for one in progress; lookups by id
+     * share the lock with each other.
+     * parameter 'id' is the song id, see Song.getId
+     * returns the song, or null if no song in the playlist has that id
      */
-    public void removeSong(Song song) {
-        if (songs.remove(song)) {
-            updateCurrentSongs();
+    public Song getSongById(long id) {
+        long stamp = lock.readLock();
+        try {
+            int slot = slotsById.get(id);
+            return slot == LongIntHashMap.MISSING ? null : songs.get(slot);
+        } finally {
+            lock.unlockRead(stamp);
         }
     }
 
     /**
-     * Returns a copy of the current song list, reflecting shuffle state.
+     * Returns the current song list, reflecting shuffle state.
+     * The list is an immutable snapshot shared by all callers until the playlist next changes, so reading it never copies.
+     * Once published it is read without locking; only the first reader after a change rebuilds it, under the write
+     * lock, and readers arriving meanwhile wait for that one rebuild.
      * returns a List of songs in current order
      */
     public List<Song> getSongs() {
-        return new ArrayList<>(currentSongs);
+        List<Song> snapshot = currentSongs;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        long stamp = lock.writeLock();
+        try {
+            snapshot = currentSongs;
+            return snapshot != null ? snapshot : updateCurrentSongs();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Finds where a song is in the current order, as given by getSongs. The song is matched by id, so only that
+     * instance is found, not an equal copy.
+     * Positions are mapped by id once per snapshot, on first use, so later lookups are a single map read until the
+     * playlist changes again.
+     * parameter 'song' specifies the song to find
+     * returns the position of the song in getSongs, or -1 if it is not in the playlist
+     */
+    public int indexOf(Song song) {
+        if (song == null) {
+            return -1;
+        }
+        LongIntHashMap positions = currentPositions;
+        if (positions == null || currentSongs == null) {
+            long stamp = lock.writeLock();
+            try {
+                if (currentSongs == null) {
+                    updateCurrentSongs();
+                }
+                positions = currentPositions;
+                if (positions == null) {
+                    positions = new LongIntHashMap();
+                    List<Song> snapshot = currentSongs;
+                    for (int i = 0; i < snapshot.size(); i++) {
+                        positions.put(snapshot.get(i).getId(), i);
+                    }
+                    currentPositions = positions;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        return positions.get(song.getId());
+    }
+
+    /**
+     * Returns the song at a position in the current order without copying the list.
+     * parameter 'index' is the zero based position
+     * throws IndexOutOfBoundsException if the index is outside the playlist
+     */
+    public Song getSong(int index) {
+        return getSongs().get(index);
+    }
+
+    /**
+     * Returns the version of the playlist contents; it changes whenever songs are added, removed or reordered.
+     * Callers can compare versions to tell whether a snapshot from getSongs is still current.
+     * returns the current version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns an iterator over the songs in current order, reflecting shuffle state.
+     * The iterator walks the shared snapshot from getSongs, so it is safe to use while the playlist changes and
+     * does not see those changes.
+     */
+    @Override
+    public Iterator<Song> iterator() {
+        return getSongs().iterator();
     }
 
     /**
      * Sets shuffle to ON(true) or OFF(false).
      * parameter 'shuffle' is a boolean set to true to enable shuffle, false to revert to original order
      * the intention is to randomise the order of the playlist to imitate a real world shuffle feature
+     * Turning shuffle on draws one random order; later additions and removals only patch it.
      */
     public void setShuffle(boolean shuffle) {
-        if (this.shuffle != shuffle) {
-            this.shuffle = shuffle;
-            updateCurrentSongs();
+        long stamp = lock.writeLock();
+        try {
+            if (this.shuffle != shuffle) {
+                if (shuffle) {
+                    buildShuffleOrder();
+                } else {
+                    shuffleOrder = null;
+                    shuffleLength = 0;
+                }
+                this.shuffle = shuffle;
+                changed();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
         }
     }
 
@@ -89,16 +314,184 @@ public class Playlist {
      * returns size of the song list
      */
     public int size() {
-        return songs.size();
+        return index.size();
     }
 
     /**
-     * Updates the current song list based on shuffle state.
+     * Appends a song to the slots, the indexes and the shuffle order. Called with the write lock held.
+     * returns true if the song was added, false if it is already present
      */
-    private void updateCurrentSongs() {
-        currentSongs = new ArrayList<>(songs);
+    private boolean insert(Song song) {
+        int position = songs.size();
+        if (index.putIfAbsent(song, new Slot(song, position)) != null) {
+            return false;
+        }
+        slotsById.put(song.getId(), position);
+        songs.add(song);
         if (shuffle) {
-            Collections.shuffle(currentSongs);
+            insertShuffled(position);
+        }
+        return true;
+    }
+
+    /**
+     * Clears a slot whose song was already dropped from the identity index, compacting if half the slots are clear.
+     * Called with the write lock held.
+     * parameter 'slot' is the slot to clear
+     */
+    private void clearSlot(int slot) {
+        slotsById.remove(songs.get(slot).getId());
+        songs.set(slot, null);
+        removedSlots++;
+        if (removedSlots > songs.size() / 2) {
+            compact();
+        }
+        changed();
+    }
+
+    /**
+     * Drops the current snapshot and moves to a new version after a change. Called with the write lock held.
+     */
+    private void changed() {
+        currentSongs = null;
+        currentPositions = null;
+        version++;
+    }
+
+    /**
+     * Rebuilds the current song snapshot based on shuffle state.
+     * The rebuild walks every slot anyway, so it also compacts any cleared slots, keeping removals themselves O(1).
+     * Called with the write lock held.
+     * returns the new snapshot
+     */
+    private List<Song> updateCurrentSongs() {
+        if (removedSlots > 0) {
+            compact();
+        }
+        Song[] order = new Song[songs.size() - removedSlots];
+        int next = 0;
+        for (Iterator<Song> walk = new OrderIterator(); walk.hasNext(); ) {
+            order[next++] = walk.next();
+        }
+        currentSongs = Collections.unmodifiableList(Arrays.asList(order));
+        return currentSongs;
+    }
+
+    /**
+     * Draws a fresh random order over the songs currently in the playlist.
+     */
+    private void buildShuffleOrder() {
+        shuffleOrder = new int[Math.max(16, songs.size())];
+        shuffleLength = 0;
+        for (int slot = 0; slot < songs.size(); slot++) {
+            if (songs.get(slot) != null) {
+                insertShuffled(slot);
+            }
+        }
+    }
+
+    /**
+     * Inside-out Fisher-Yates step: the new slot takes a random position and the song that held it moves to the end.
+     * parameter 'slot' is the slot of the song being added to the shuffle order
+     */
+    private void insertShuffled(int slot) {
+        if (shuffleLength == shuffleOrder.length) {
+            shuffleOrder = Arrays.copyOf(shuffleOrder, shuffleLength * 2);
+        }
+        int position = random.nextInt(shuffleLength + 1);
+        shuffleOrder[shuffleLength++] = shuffleOrder[position];
+        shuffleOrder[position] = slot;
+    }
+
+    /**
+     * Drops cleared slots and re-points the index and shuffle order at the new positions, keeping both orders.
+     * The live songs are copied into a new slot list and shuffle order rather than moved in place, so an iterator
+     * still walking the old ones is unaffected. Called with the write lock held.
+     */
+    private void compact() {
+        int[] moved = new int[songs.size()];
+        ArrayList<Song> live = new ArrayList<>(index.size());
+        for (int slot = 0; slot < songs.size(); slot++) {
+            Song song = songs.get(slot);
+            if (song == null) {
+                moved[slot] = -1;
+            } else {
+                moved[slot] = live.size();
+                index.get(song).position = live.size();
+                slotsById.put(song.getId(), live.size());
+                live.add(song);
+            }
+        }
+        songs = live;
+        removedSlots = 0;
+        if (shuffleOrder != null) {
+            int[] order = new int[Math.max(16, live.size())];
+            int kept = 0;
+            for (int i = 0; i < shuffleLength; i++) {
+                int slot = moved[shuffleOrder[i]];
+                if (slot >= 0) {
+                    order[kept++] = slot;
+                }
+            }
+            shuffleOrder = order;
+            shuffleLength = kept;
+        }
+    }
+
+    /**
+     * A song's position in the slots. Readers only use the song; the position is read and moved under the write lock.
+     */
+    private static final class Slot {
+        private final Song song; // Song in the slot
+        private int position; // Index of the slot in songs
+
+        private Slot(Song song, int position) {
+            this.song = song;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Walks the slots, or the shuffle order when shuffled, skipping cleared slots as it goes.
+     * Used to build snapshots, with the write lock held.
+     */
+    private class OrderIterator implements Iterator<Song> {
+        private final long expectedVersion = version; // Version the iterator was created against
+        private final List<Song> slots = songs; // Slots being walked, kept even if the playlist compacts meanwhile
+        private final int[] order = shuffle ? shuffleOrder : null; // Shuffle order being walked, null when not shuffled
+        private final int length = shuffle ? shuffleLength : songs.size(); // Number of positions to walk
+        private int position; // Next position in the slots or shuffle order to inspect
+        private Song next = advance(); // Next song to return, or null when exhausted
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Song next() {
+            if (version != expectedVersion) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Song song = next;
+            next = advance();
+            return song;
+        }
+
+        /** returns the next live song in order, or null once every position has been read */
+        private Song advance() {
+            while (position < length) {
+                int slot = order != null ? order[position] : position;
+                position++;
+                Song song = slots.get(slot);
+                if (song != null) {
+                    return song;
+                }
+            }
+            return null;
         }
     }
 
@@ -108,7 +501,7 @@ public class Playlist {
      */
     @Override
     public String toString() {
-        String base = name + " (" + songs.size() + " songs)";
+        String base = name + " (" + size() + " songs)";
         return shuffle ? base + ", shuffled" : base;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,66 @@
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Counts and times the service operations, one latency histogram per operation.
+ * The histograms are created up front and never replaced, so recording needs no locking; each histogram's count is
+ * also the operation's call counter.
+ */
+public class ServiceMetrics {
+
+    /**
+     * The timed service operations.
+     */
+    public enum Operation {
+        ADD, // Adding a song to the library
+        REMOVE, // Removing a song from the library
+        PLAY, // Playing a song
+        FILTER, // Filtering or counting songs by play count
+        SHUFFLE, // Toggling shuffle mode
+        SEARCH, // Searching, completing or suggesting by title and artist words
+        TRENDING // Ranking the songs played most in a recent window
+    }
+
+    private final Map<Operation, LatencyHistogram> histograms; // Latencies per operation
+
+    /**
+     * Creates metrics with empty histograms.
+     */
+    public ServiceMetrics() {
+        this.histograms = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Records one call of an operation that started at the given time.
+     * parameter 'operation' is the operation that ran
+     * parameter 'startNanos' is the System.nanoTime() reading taken when it started
+     */
+    void record(Operation operation, long startNanos) {
+        histograms.get(operation).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the counts and latencies recorded for one operation.
+     * parameter 'operation' is the operation to read
+     * returns a snapshot of its histogram, in nanoseconds
+     */
+    public LatencyHistogram.Snapshot snapshot(Operation operation) {
+        return histograms.get(operation).snapshot();
+    }
+
+    /**
+     * Returns the counts and latencies recorded for every operation.
+     * returns a Map from operation to a snapshot of its histogram, in nanoseconds
+     */
+    public Map<Operation, LatencyHistogram.Snapshot> snapshot() {
+        Map<Operation, LatencyHistogram.Snapshot> snapshots = new EnumMap<>(Operation.class);
+        for (Map.Entry<Operation, LatencyHistogram> entry : histograms.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return Collections.unmodifiableMap(snapshots);
+    }
+}
@@ -1,14 +1,28 @@
 import java.time.Year;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Represents a song with title, artist, play count, year, and genre.
+ * Artist and genre are stored as codes in shared dictionaries, so each distinct name is held once however many
+ * songs use it, and comparing or grouping songs by artist or genre compares ints.
  */
 public class Song {
+    static final StringDictionary ARTISTS = new StringDictionary(); // Artist names shared by all songs
+    static final StringDictionary GENRES = new StringDictionary(); // Genre names shared by all songs
+    private static final AtomicLong NEXT_ID = new AtomicLong(1); // Source of song ids, unique within this process
+    private static final PlayCountListener[] NO_LISTENERS = new PlayCountListener[0]; // Shared empty listener list
+    private static volatile long[] yearCache = {0, 0}; // Current year and the epoch millis at which it ends
+
+    private final long id; // Unique id, used to order songs that share a play count
     private final String title; // Song title
-    private final String artist; // Artist name
-    private long playCount; // Number of times played
+    private final int artistCode; // Artist name, as its code in ARTISTS
+    private final LongAdder playCount; // Number of times played, striped so concurrent plays do not contend
     private final int year; // Release year
-    private final String genre; // Music genre
+    private final int genreCode; // Music genre, as its code in GENRES or StringDictionary.NONE for no genre
+    private volatile PlayCountListener[] listeners = NO_LISTENERS; // Notified after each play count change
 
     /**
      * Constructs a song with the specified attributes.
@@ -20,20 +34,76 @@ public class Song {
      * @throws IllegalArgumentException if title or artist is null/empty, or year is in the future
      */
     public Song(String title, String artist, long playCount, int year, String genre) throws IllegalArgumentException {
+        validate(title, artist, year);
+        this.id = NEXT_ID.getAndIncrement();
+        this.title = title;
+        this.artistCode = ARTISTS.encode(artist);
+        this.playCount = new LongAdder();
+        this.playCount.add(playCount);
+        this.year = year;
+        this.genreCode = GENRES.encode(genre);
+    }
+
+    /**
+     * Checks the fields the constructor checks, without using up an id or adding names to the dictionaries, so
+     * callers such as the importer can reject a row before making a song of it.
+     * throws IllegalArgumentException if title or artist is null/empty, or year is in the future
+     */
+    static void validate(String title, String artist, int year) {
         if (title == null || title.trim().isEmpty()) {
             throw new IllegalArgumentException("Title cannot be null or empty");
         }
-        if (year > Year.now().getValue()) {
-            throw new IllegalArgumentException("Year cannot be greater than " + Year.now().getValue());
+        int latest = currentYear();
+        if (year > latest) {
+            throw new IllegalArgumentException("Year cannot be greater than " + latest);
         }
         if (artist == null || artist.trim().isEmpty()) {
             throw new IllegalArgumentException("Artist cannot be null or empty");
         }
+    }
+
+    /**
+     * Creates a lookup key carrying only the identity fields (title, artist and year).
+     * Keys skip validation and are never added to a library, they are only used to probe hash indexes.
+     * An artist no song uses gets no code, so the key matches nothing.
+     */
+    private Song(String title, String artist, int year) {
+        this.id = 0;
         this.title = title;
-        this.artist = artist;
-        this.playCount = playCount;
+        this.artistCode = ARTISTS.lookup(artist);
+        this.playCount = new LongAdder();
         this.year = year;
-        this.genre = genre;
+        this.genreCode = StringDictionary.NONE;
+    }
+
+    /**
+     * Returns the current year in the default time zone. The year is worked out once and reused until it ends,
+     * so creating millions of songs checks the clock rather than building calendar dates each time.
+     * returns the current year
+     */
+    static int currentYear() {
+        long[] cached = yearCache;
+        if (System.currentTimeMillis() < cached[1]) {
+            return (int) cached[0];
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        Year now = Year.now(zone);
+        long end = now.plusYears(1).atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        yearCache = new long[] {now.getValue(), end};
+        return now.getValue();
+    }
+
+    /**
+     * Returns a lookup key equal to any song with the given title, artist and year.
+     * returns a key suitable for hash based lookups such as Playlist.findSong
+     */
+    static Song key(String title, String artist, int year) {
+        return new Song(title, artist, year);
+    }
+
+    /** return The unique song id */
+    public long getId() {
+        return id;
     }
 
     /** return The song title */
@@ -43,12 +113,17 @@ public class Song {
 
     /** return The artist name */
     public String getArtist() {
-        return artist;
+        return ARTISTS.decode(artistCode);
+    }
+
+    /** return The artist name as a code in the shared artist dictionary */
+    public int getArtistCode() {
+        return artistCode;
     }
 
-    /** return The current play count */
+    /** return The current play count, the sum of all plays recorded so far */
     public long getPlayCount() {
-        return playCount;
+        return playCount.sum();
     }
 
     /** return The release year */
@@ -58,7 +133,12 @@ public class Song {
 
     /** return The music genre */
     public String getGenre() {
-        return genre;
+        return GENRES.decode(genreCode);
+    }
+
+    /** return The music genre as a code in the shared genre dictionary, StringDictionary.NONE if there is none */
+    public int getGenreCode() {
+        return genreCode;
     }
 
     /**
@@ -67,12 +147,79 @@ public class Song {
      */
     @Override
     public String toString() {
-        return String.format("%-28s %-14s %d (%d)    %s",
-                title, "by " + artist, playCount, year, genre);
+        return SongFormatter.appendSong(new StringBuilder(80), this).toString();
     }
 
-    /** Increments the play count by 1. */
+    /**
+     * Two songs are the same track when title, artist and year match; play count and genre are not part of the identity.
+     * returns true if the other object is a song with the same identity
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Song)) {
+            return false;
+        }
+        Song other = (Song) o;
+        return year == other.year && artistCode == other.artistCode && title.equals(other.title);
+    }
+
+    /** returns a hash code consistent with equals, built from title, artist and year */
+    @Override
+    public int hashCode() {
+        return 31 * (31 * title.hashCode() + artistCode) + year;
+    }
+
+    /**
+     * Increments the play count by 1 and notifies any listeners.
+     * Safe to call from many threads at once; no increment is lost.
+     */
     public void incrementPlayCount() {
-        playCount++;
+        playCount.increment();
+        for (PlayCountListener listener : listeners) {
+            listener.playCountChanged(this);
+        }
+    }
+
+    /**
+     * Registers a listener to be told whenever the play count changes, such as an index ordered by plays.
+     * parameter 'listener' specifies the listener to add
+     */
+    synchronized void addPlayCountListener(PlayCountListener listener) {
+        PlayCountListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * Checks whether a listener is registered.
+     * parameter 'listener' specifies the listener to look for
+     * returns true if the listener was added and not removed since
+     */
+    synchronized boolean hasPlayCountListener(PlayCountListener listener) {
+        for (PlayCountListener registered : listeners) {
+            if (registered == listener) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Unregisters a listener added with addPlayCountListener.
+     * parameter 'listener' specifies the listener to remove
+     */
+    synchronized void removePlayCountListener(PlayCountListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                PlayCountListener[] updated = new PlayCountListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, updated, 0, i);
+                System.arraycopy(listeners, i + 1, updated, i, updated.length - i);
+                listeners = updated.length == 0 ? NO_LISTENERS : updated;
+                return;
+            }
+        }
     }
 }
\ No newline at end of file
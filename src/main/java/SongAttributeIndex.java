@@ -0,0 +1,229 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bitmap indexes over song genre, artist and release year for compound filters.
+ * Each indexed song gets a dense row number, and each genre, artist and year maps to a CompressedBitmap of the rows of
+ * its songs. Rows freed by removed songs are handed to the next songs added, so bitmaps stay as small as the library
+ * however many song ids the process has used. A query unites the bitmaps of the values it accepts for each attribute,
+ * intersects the attributes and only then looks at songs, so its cost follows the size of the bitmaps involved and
+ * the result rather than the size of the library.
+ * Play counts change with every play, so a minimum play count is checked on the matching songs, or answered by the
+ * play count index when it is the only condition.
+ * Songs are added and removed one at a time; queries run concurrently with each other.
+ */
+public class SongAttributeIndex {
+
+    private static final Comparator<Song> BY_ID = Comparator.comparingLong(Song::getId); // Order songs were created
+
+    private final Map<Integer, CompressedBitmap> genres; // Genre code to rows of its songs
+    private final Map<Integer, CompressedBitmap> artists; // Artist code to rows of their songs
+    private final NavigableMap<Integer, CompressedBitmap> years; // Release year to rows of its songs
+    private final LongIntHashMap rows; // Song id to the row of the indexed song
+    private final List<Song> songs; // Indexed songs by row, null for free rows
+    private int[] freeRows; // Rows of removed songs, to be reused
+    private int freeCount; // Number of entries of freeRows in use
+    private final ReadWriteLock lock; // Lets queries share the index while updates take it alone
+
+    /**
+     * Creates an empty index.
+     */
+    public SongAttributeIndex() {
+        this.genres = new HashMap<>();
+        this.artists = new HashMap<>();
+        this.years = new TreeMap<>();
+        this.rows = new LongIntHashMap();
+        this.songs = new ArrayList<>();
+        this.freeRows = new int[16];
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Indexes a song's genre, artist and year.
+     * parameter 'song' specifies the song to add
+     * throws IllegalArgumentException if the song is a lookup key from Song.key rather than a song of its own
+     */
+    public void add(Song song) {
+        if (song.getId() <= 0) {
+            throw new IllegalArgumentException("Lookup key " + song + " cannot be indexed");
+        }
+        lock.writeLock().lock();
+        try {
+            if (rows.get(song.getId()) == LongIntHashMap.MISSING) {
+                int row;
+                if (freeCount > 0) {
+                    row = freeRows[--freeCount];
+                    songs.set(row, song);
+                } else {
+                    row = songs.size();
+                    songs.add(song);
+                }
+                rows.put(song.getId(), row);
+                if (song.getGenreCode() != StringDictionary.NONE) {
+                    genres.computeIfAbsent(song.getGenreCode(), code -> new CompressedBitmap()).add(row);
+                }
+                artists.computeIfAbsent(song.getArtistCode(), code -> new CompressedBitmap()).add(row);
+                years.computeIfAbsent(song.getYear(), year -> new CompressedBitmap()).add(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a song from the index.
+     * parameter 'song' specifies the song to remove
+     */
+    public void remove(Song song) {
+        lock.writeLock().lock();
+        try {
+            int row = rows.get(song.getId());
+            if (row != LongIntHashMap.MISSING && songs.get(row) == song) {
+                rows.remove(song.getId());
+                songs.set(row, null);
+                if (freeCount == freeRows.length) {
+                    freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+                }
+                freeRows[freeCount++] = row;
+                removeRow(genres, song.getGenreCode(), row);
+                removeRow(artists, song.getArtistCode(), row);
+                removeRow(years, song.getYear(), row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the songs matching a query's genre, artist and year conditions and its minimum play count.
+     * parameter 'query' is the filter to apply
+     * parameter 'playCounts' answers queries that only set a minimum play count
+     * returns the matching songs in the order they were created
+     */
+    public List<Song> find(SongQuery query, PlayCountIndex playCounts) {
+        lock.readLock().lock();
+        try {
+            CompressedBitmap matches = candidates(query);
+            if (matches == null) {
+                List<Song> result = new ArrayList<>(playCounts.atLeast(query.getMinPlays()));
+                result.sort(BY_ID);
+                return result;
+            }
+            List<Song> result = new ArrayList<>(matches.cardinality());
+            long minPlays = query.getMinPlays();
+            matches.forEach(row -> {
+                Song song = songs.get(row);
+                if (song.getPlayCount() >= minPlays) {
+                    result.add(song);
+                }
+            });
+            result.sort(BY_ID); // Reused rows do not follow creation order
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the songs matching a query.
+     * returns the number of matching songs
+     */
+    public int count(SongQuery query, PlayCountIndex playCounts) {
+        if (query.getMinPlays() > 0) {
+            return find(query, playCounts).size();
+        }
+        lock.readLock().lock();
+        try {
+            CompressedBitmap matches = candidates(query);
+            return matches == null ? rows.size() : matches.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Intersects the bitmaps of the query's attribute conditions. Called with the read lock held.
+     * returns the rows matching every attribute condition, or null if the query sets none
+     */
+    private CompressedBitmap candidates(SongQuery query) {
+        CompressedBitmap result = null;
+        if (!query.getGenres().isEmpty()) {
+            List<CompressedBitmap> accepted = new ArrayList<>();
+            for (String genre : query.getGenres()) {
+                accepted.add(genres.get(Song.GENRES.lookup(genre)));
+            }
+            result = intersect(result, union(accepted));
+        }
+        if (!query.getArtists().isEmpty()) {
+            List<CompressedBitmap> accepted = new ArrayList<>();
+            for (String artist : query.getArtists()) {
+                accepted.add(artists.get(Song.ARTISTS.lookup(artist)));
+            }
+            result = intersect(result, union(accepted));
+        }
+        if (query.hasYearRange()) {
+            result = intersect(result, union(new ArrayList<>(
+                    years.subMap(query.getFromYear(), true, query.getToYear(), true).values())));
+        }
+        return result;
+    }
+
+    /**
+     * Unites bitmaps pairwise, so each value is copied about log(bitmaps) times rather than once per bitmap.
+     * Nulls stand for values no song has and are skipped.
+     * returns the union, empty if there were no bitmaps
+     */
+    private static CompressedBitmap union(List<CompressedBitmap> bitmaps) {
+        List<CompressedBitmap> level = new ArrayList<>(bitmaps.size());
+        for (CompressedBitmap bitmap : bitmaps) {
+            if (bitmap != null) {
+                level.add(bitmap);
+            }
+        }
+        if (level.isEmpty()) {
+            return new CompressedBitmap();
+        }
+        while (level.size() > 1) {
+            List<CompressedBitmap> next = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                next.add(i + 1 < level.size() ? level.get(i).or(level.get(i + 1)) : level.get(i));
+            }
+            level = next;
+        }
+        return level.get(0);
+    }
+
+    /** returns the intersection of the conditions so far with another, where null means no condition yet */
+    private static CompressedBitmap intersect(CompressedBitmap sofar, CompressedBitmap condition) {
+        return sofar == null ? condition : sofar.and(condition);
+    }
+
+    /**
+     * Returns the number of rows handed out, including free rows waiting to be reused.
+     * returns the row count, which is the largest the library has been rather than the number of ids used
+     */
+    int rowCount() {
+        lock.readLock().lock();
+        try {
+            return songs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Removes a row from a value's bitmap, dropping the bitmap once empty. */
+    private static void removeRow(Map<Integer, CompressedBitmap> bitmaps, int value, int row) {
+        CompressedBitmap bitmap = bitmaps.get(value);
+        if (bitmap != null && bitmap.remove(row) && bitmap.isEmpty()) {
+            bitmaps.remove(value);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only song catalog stored in a compact, versioned binary file and accessed through a memory-mapped buffer.
+ * Opening a catalog only maps the file and checks its header; rows are decoded one at a time when asked for,
+ * so even a multi-million song catalog opens in milliseconds.
+ *
+ * File layout (big-endian):
+ * header      magic "MSCT", short version, short flags, int rows, int strings, int history, long string table offset,
+ *             long file length, int padding
+ * columns     long[rows] play counts, int[rows] years, int[rows] title refs, int[rows] artist refs, int[rows] genre refs (-1 for none)
+ * history     int[history] rows of the most recently played songs, most recent first
+ * strings     int[strings + 1] offsets into the string data, followed by the UTF-8 string data
+ * Each distinct string is stored once, so repeated artists and genres cost one int per row.
+ * Version 1 files have no history; their header field was reserved and always 0, so they read as an empty history.
+ */
+public class SongCatalog {
+
+    static final int MAGIC = 0x4D534354; // "MSCT"
+    static final short VERSION = 2; // Current format version
+    private static final short FIRST_VERSION = 1; // Oldest format version that can still be read
+    static final int HEADER_SIZE = 40; // Bytes before the first column
+    private static final int NO_STRING = -1; // String ref stored for a missing genre
+    private static final int NO_ROW = -1; // Marks a history song that is not among the stored songs
+    private static final int BUFFER_SIZE = 1 << 16; // Write buffer size
+
+    private final MappedByteBuffer buffer; // Mapped catalog file
+    private final int rows; // Number of songs in the catalog
+    private final int history; // Number of history rows
+    private final int historyOffset; // Start of the history rows
+    private final int yearsOffset; // Start of the year column
+    private final int titlesOffset; // Start of the title ref column
+    private final int artistsOffset; // Start of the artist ref column
+    private final int genresOffset; // Start of the genre ref column
+    private final int stringOffsets; // Start of the string offset table
+    private final int stringData; // Start of the UTF-8 string data
+    private final int strings; // Number of distinct strings
+
+    /**
+     * Wraps a mapped catalog file after validating its header.
+     * throws IOException if the file is not a catalog or was written by an unsupported version
+     */
+    private SongCatalog(MappedByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a song catalog file");
+        }
+        short version = buffer.getShort(4);
+        if (version < FIRST_VERSION || version > VERSION) {
+            throw new IOException("Unsupported song catalog version " + version);
+        }
+        this.buffer = buffer;
+        this.rows = buffer.getInt(8);
+        this.strings = buffer.getInt(12);
+        this.history = buffer.getInt(16);
+        long stringTable = buffer.getLong(20);
+        long length = buffer.getLong(28);
+        long expectedTable = HEADER_SIZE + (long) rows * 24 + (long) history * 4;
+        if (rows < 0 || strings < 0 || history < 0 || length != buffer.capacity() || stringTable != expectedTable
+                || stringTable + 4L * (strings + 1) > length) {
+            throw new IOException("Corrupt song catalog header");
+        }
+        this.yearsOffset = HEADER_SIZE + rows * 8;
+        this.titlesOffset = yearsOffset + rows * 4;
+        this.artistsOffset = titlesOffset + rows * 4;
+        this.genresOffset = artistsOffset + rows * 4;
+        this.historyOffset = genresOffset + rows * 4;
+        this.stringOffsets = (int) stringTable;
+        this.stringData = stringOffsets + (strings + 1) * 4;
+    }
+
+    /**
+     * Maps a catalog file for reading. The file can be closed or replaced afterwards without affecting this catalog.
+     * parameter 'path' is the catalog file
+     * returns the opened catalog
+     * throws IOException if the file cannot be read, is larger than 2 GB or is not a valid catalog
+     */
+    public static SongCatalog open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Song catalog larger than 2 GB: " + path);
+            }
+            return new SongCatalog(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes songs to a catalog file. The file is written next to the target and moved into place once complete,
+     * so readers never see a half written catalog.
+     * parameter 'path' is the catalog file to create or replace
+     * parameter 'songs' specifies the songs to store, in order
+     * throws IOException if the file cannot be written
+     */
+    public static void write(Path path, Collection<Song> songs) throws IOException {
+        write(path, songs, Collections.emptyList());
+    }
+
+    /**
+     * Writes songs and their recent plays to a catalog file, as write(Path, Collection) does.
+     * parameter 'path' is the catalog file to create or replace
+     * parameter 'songs' specifies the songs to store, in order
+     * parameter 'history' specifies recently played songs, most recent first; songs not among 'songs' are left out
+     * throws IOException if the file cannot be written
+     */
+    public static void write(Path path, Collection<Song> songs, List<Song> history) throws IOException {
+        Map<String, Integer> refs = new HashMap<>();
+        List<String> table = new ArrayList<>();
+        int[] titles = new int[songs.size()];
+        int[] artists = new int[songs.size()];
+        int[] genres = new int[songs.size()];
+        Map<Song, Integer> played = new HashMap<>();
+        for (Song song : history) {
+            played.put(song, NO_ROW);
+        }
+        int row = 0;
+        for (Song song : songs) {
+            titles[row] = intern(song.getTitle(), refs, table);
+            artists[row] = intern(song.getArtist(), refs, table);
+            genres[row] = song.getGenre() == null ? NO_STRING : intern(song.getGenre(), refs, table);
+            played.replace(song, row);
+            row++;
+        }
+        int[] historyRows = new int[history.size()];
+        int kept = 0;
+        for (Song song : history) {
+            int historyRow = played.get(song);
+            if (historyRow != NO_ROW) {
+                historyRows[kept++] = historyRow;
+            }
+        }
+        byte[][] encoded = new byte[table.size()][];
+        long dataLength = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = table.get(i).getBytes(StandardCharsets.UTF_8);
+            dataLength += encoded[i].length;
+        }
+        long stringTable = HEADER_SIZE + (long) row * 24 + (long) kept * 4;
+        long length = stringTable + 4L * (encoded.length + 1) + dataLength;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Song catalog would exceed 2 GB");
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ChannelWriter out = new ChannelWriter(channel);
+            out.ensure(HEADER_SIZE);
+            out.buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+                    .putInt(row).putInt(encoded.length).putInt(kept)
+                    .putLong(stringTable).putLong(length).putInt(0);
+            for (Song song : songs) {
+                out.ensure(8);
+                out.buffer.putLong(song.getPlayCount());
+            }
+            for (Song song : songs) {
+                out.ensure(4);
+                out.buffer.putInt(song.getYear());
+            }
+            out.putInts(titles);
+            out.putInts(artists);
+            out.putInts(genres);
+            out.putInts(Arrays.copyOf(historyRows, kept));
+            int offset = 0;
+            for (byte[] bytes : encoded) {
+                out.ensure(4);
+                out.buffer.putInt(offset);
+                offset += bytes.length;
+            }
+            out.ensure(4);
+            out.buffer.putInt(offset);
+            for (byte[] bytes : encoded) {
+                out.putBytes(bytes);
+            }
+            out.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the number of songs in the catalog.
+     * returns the row count
+     */
+    public int size() {
+        return rows;
+    }
+
+    /** return The play count stored for a row */
+    public long getPlayCount(int row) {
+        return buffer.getLong(HEADER_SIZE + checkRow(row) * 8);
+    }
+
+    /** return The release year stored for a row */
+    public int getYear(int row) {
+        return buffer.getInt(yearsOffset + checkRow(row) * 4);
+    }
+
+    /** return The title stored for a row */
+    public String getTitle(int row) {
+        return string(buffer.getInt(titlesOffset + checkRow(row) * 4));
+    }
+
+    /** return The artist stored for a row */
+    public String getArtist(int row) {
+        return string(buffer.getInt(artistsOffset + checkRow(row) * 4));
+    }
+
+    /** return The genre stored for a row, or null if none was stored */
+    public String getGenre(int row) {
+        return string(buffer.getInt(genresOffset + checkRow(row) * 4));
+    }
+
+    /**
+     * Returns the rows of the most recently played songs stored with the catalog.
+     * returns the row numbers, most recent play first; empty for a catalog written without history
+     */
+    public int[] getHistoryRows() {
+        int[] played = new int[history];
+        for (int i = 0; i < history; i++) {
+            played[i] = checkRow(buffer.getInt(historyOffset + i * 4));
+        }
+        return played;
+    }
+
+    /**
+     * Decodes one row into a new song.
+     * parameter 'row' is the zero based row number
+     * returns a song carrying the stored title, artist, play count, year and genre
+     * throws IndexOutOfBoundsException if the row is outside the catalog
+     */
+    public Song getSong(int row) {
+        return new Song(getTitle(row), getArtist(row), getPlayCount(row), getYear(row), getGenre(row));
+    }
+
+    /**
+     * Decodes every row, in order.
+     * returns a List of all songs in the catalog
+     */
+    public List<Song> getSongs() {
+        List<Song> songs = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            songs.add(getSong(row));
+        }
+        return songs;
+    }
+
+    /** returns the row if it is inside the catalog */
+    private int checkRow(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " outside catalog of " + rows + " songs");
+        }
+        return row;
+    }
+
+    /** returns the string stored under a ref, or null for NO_STRING */
+    private String string(int ref) {
+        if (ref == NO_STRING) {
+            return null;
+        }
+        int start = buffer.getInt(stringOffsets + ref * 4);
+        int end = buffer.getInt(stringOffsets + (ref + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        buffer.get(stringData + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** returns the ref of a string, adding it to the string table the first time it is seen */
+    private static int intern(String value, Map<String, Integer> refs, List<String> table) {
+        Integer ref = refs.get(value);
+        if (ref == null) {
+            ref = table.size();
+            refs.put(value, ref);
+            table.add(value);
+        }
+        return ref;
+    }
+
+    /**
+     * Buffers writes to a file channel, flushing whenever the buffer runs out of room.
+     */
+    private static final class ChannelWriter {
+        private final FileChannel channel; // Destination channel
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE); // Pending bytes
+
+        private ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /** Makes room for the given number of bytes, flushing if needed. */
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        /** Writes a column of ints. */
+        private void putInts(int[] values) throws IOException {
+            for (int value : values) {
+                ensure(4);
+                buffer.putInt(value);
+            }
+        }
+
+        /** Writes raw bytes, in chunks if they do not fit the buffer. */
+        private void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        /** Writes everything buffered so far to the channel. */
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
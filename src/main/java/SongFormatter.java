@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Formats songs as listing rows without String.format.
+ * Rows are laid out exactly like Song.toString: the title padded to 28 characters, "by artist" padded to 14, then
+ * the play count, year and genre. A formatter reuses one row buffer, so writing a long listing allocates nothing
+ * per row; it is not thread-safe, so use one per thread.
+ */
+public class SongFormatter {
+
+    private static final int TITLE_WIDTH = 28; // Minimum width of the title column
+    private static final int ARTIST_WIDTH = 14; // Minimum width of the "by artist" column
+    private static final String NEW_LINE = System.lineSeparator(); // Ends every written row
+
+    private final StringBuilder row; // Reused row buffer
+    private char[] chars; // Reused characters handed to writers
+
+    /**
+     * Creates a formatter with an empty row buffer.
+     */
+    public SongFormatter() {
+        this.row = new StringBuilder(128);
+        this.chars = new char[128];
+    }
+
+    /**
+     * Appends the row for a song to a builder.
+     * parameter 'builder' is the builder to append to
+     * parameter 'song' specifies the song to format
+     * returns the builder
+     */
+    static StringBuilder appendSong(StringBuilder builder, Song song) {
+        int start = builder.length();
+        builder.append(song.getTitle());
+        pad(builder, start + TITLE_WIDTH);
+        builder.append(' ');
+        start = builder.length();
+        builder.append("by ").append(song.getArtist());
+        pad(builder, start + ARTIST_WIDTH);
+        return builder.append(' ').append(song.getPlayCount()).append(" (").append(song.getYear()).append(")    ")
+                .append(song.getGenre());
+    }
+
+    /**
+     * Formats a numbered row, such as "3. " followed by the song row.
+     * parameter 'number' is the number shown before the song
+     * parameter 'song' specifies the song to format
+     * returns the row, valid until this formatter is next used
+     */
+    public CharSequence format(int number, Song song) {
+        row.setLength(0);
+        row.append(number).append(". ");
+        return appendSong(row, song);
+    }
+
+    /**
+     * Writes a numbered row and a line separator without creating any strings.
+     * parameter 'out' is the destination
+     * parameter 'number' is the number shown before the song
+     * parameter 'song' specifies the song to write
+     * throws IOException if the row cannot be written
+     */
+    public void write(Writer out, int number, Song song) throws IOException {
+        format(number, song);
+        row.append(NEW_LINE);
+        int length = row.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        row.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+    }
+
+    /** Pads the builder with spaces up to the given length. */
+    private static void pad(StringBuilder builder, int length) {
+        while (builder.length() < length) {
+            builder.append(' ');
+        }
+    }
+}
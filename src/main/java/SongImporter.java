@@ -0,0 +1,365 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Bulk imports songs from CSV or TSV catalog files into a service.
+ * Each row holds title, artist, plays, year and an optional genre; a first row starting with "title" is taken as a
+ * header and skipped. CSV fields may be quoted with '"', doubling quotes inside; TSV fields are taken as they are.
+ *
+ * The file is read in chunks of lines, and the chunks are parsed and validated in parallel on a fork-join pool while
+ * reading carries on. Parsed chunks are merged back in file order, deduplicating against the batch so far and the
+ * library, and reporting progress and rejected rows to an ImportListener as they go. Only a bounded number of chunks
+ * is in flight, so files of tens of millions of rows are read in constant extra memory besides the rows themselves.
+ * Rows are checked and deduplicated on their raw fields, so rejected rows never use up song ids or add names to the
+ * artist and genre dictionaries. Once the whole file is checked, songs are made of the accepted rows and go into the
+ * library as one batched change.
+ */
+public class SongImporter {
+
+    static final int CHUNK_LINES = 8192; // Lines parsed by one task
+    private static final String HEADER = "title"; // First field of an optional header row
+
+    private final MusicStreamingService service; // Service receiving the songs
+    private final ForkJoinPool pool; // Pool parsing chunks
+    private final ImportListener listener; // Receives progress and rejected rows
+
+    /**
+     * Creates an importer that parses on the common fork-join pool and reports nothing.
+     * parameter 'service' is the service to import into
+     */
+    public SongImporter(MusicStreamingService service) {
+        this(service, ForkJoinPool.commonPool(), new ImportListener() { });
+    }
+
+    /**
+     * Creates an importer.
+     * parameter 'service' is the service to import into
+     * parameter 'pool' runs the parsing tasks
+     * parameter 'listener' receives progress and rejected rows while an import runs
+     */
+    public SongImporter(MusicStreamingService service, ForkJoinPool pool, ImportListener listener) {
+        this.service = service;
+        this.pool = pool;
+        this.listener = listener;
+    }
+
+    /**
+     * Imports a catalog file. Files named .tsv, or whose first line holds a tab, are read as TSV, others as CSV.
+     * parameter 'path' is the catalog file
+     * returns the import totals
+     * throws IOException if the file cannot be read
+     */
+    public Result importFile(Path path) throws IOException {
+        char delimiter = path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".tsv") ? '\t' : 0;
+        try (BufferedReader in = Files.newBufferedReader(path)) {
+            return importFrom(in, delimiter);
+        }
+    }
+
+    /**
+     * Imports catalog rows from a reader.
+     * parameter 'in' supplies the rows, one per line
+     * parameter 'delimiter' is ',' or '\t', or 0 to pick from the first line
+     * returns the import totals
+     * throws IOException if the rows cannot be read
+     */
+    public Result importFrom(BufferedReader in, char delimiter) throws IOException {
+        Merge merge = new Merge();
+        Deque<ForkJoinTask<Chunk>> pending = new ArrayDeque<>();
+        int window = Math.max(2, pool.getParallelism() * 2);
+        long line = 0;
+        try {
+            String first = in.readLine();
+            if (first == null) {
+                return merge.finish();
+            }
+            if (delimiter == 0) {
+                delimiter = first.indexOf('\t') >= 0 ? '\t' : ',';
+            }
+            String[] lines = new String[CHUNK_LINES];
+            int count = 0;
+            long chunkStart = 1;
+            String next = first;
+            if (isHeader(first, delimiter)) {
+                next = in.readLine();
+                line = 1;
+                chunkStart = 2;
+            }
+            for (; next != null; next = in.readLine()) {
+                line++;
+                lines[count++] = next;
+                if (count == CHUNK_LINES) {
+                    pending.add(submit(lines, count, chunkStart, delimiter));
+                    lines = new String[CHUNK_LINES];
+                    count = 0;
+                    chunkStart = line + 1;
+                    if (pending.size() >= window) {
+                        merge.add(pending.remove().join());
+                    }
+                }
+            }
+            if (count > 0) {
+                pending.add(submit(lines, count, chunkStart, delimiter));
+            }
+            while (!pending.isEmpty()) {
+                merge.add(pending.remove().join());
+            }
+            return merge.finish();
+        } finally {
+            for (ForkJoinTask<Chunk> task : pending) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /** returns true if a line is a header row, whose first field is "title" */
+    private static boolean isHeader(String line, char delimiter) {
+        try {
+            return split(line, delimiter).get(0).trim().equalsIgnoreCase(HEADER);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** Starts parsing a chunk of lines on the pool. */
+    private ForkJoinTask<Chunk> submit(String[] lines, int count, long firstLine, char delimiter) {
+        return pool.submit(() -> parse(lines, count, firstLine, delimiter));
+    }
+
+    /**
+     * Parses and validates a chunk of rows.
+     * returns the chunk, holding a valid row or a rejection reason per row
+     */
+    static Chunk parse(String[] lines, int count, long firstLine, char delimiter) {
+        Chunk chunk = new Chunk(firstLine, count);
+        for (int i = 0; i < count; i++) {
+            try {
+                chunk.rows[i] = parseRow(split(lines[i], delimiter));
+            } catch (IllegalArgumentException e) {
+                chunk.errors[i] = e.getMessage();
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Checks the fields of one row as the Song constructor would, without making a song.
+     * throws IllegalArgumentException if the row has the wrong number of fields or a field is invalid
+     */
+    private static Row parseRow(List<String> fields) {
+        if (fields.size() < 4 || fields.size() > 5) {
+            throw new IllegalArgumentException("Expected 4 or 5 fields but found " + fields.size());
+        }
+        long plays = parseNumber(fields.get(2), "plays");
+        long year = parseNumber(fields.get(3), "year");
+        if (plays < 0) {
+            throw new IllegalArgumentException("Invalid plays '" + fields.get(2) + "'");
+        }
+        if (year != (int) year) {
+            throw new IllegalArgumentException("Invalid year '" + fields.get(3) + "'");
+        }
+        String genre = fields.size() == 5 && !fields.get(4).trim().isEmpty() ? fields.get(4).trim() : null;
+        String title = fields.get(0).trim();
+        String artist = fields.get(1).trim();
+        Song.validate(title, artist, (int) year);
+        return new Row(title, artist, plays, (int) year, genre);
+    }
+
+    /** returns a numeric field, or throws IllegalArgumentException naming the field */
+    private static long parseNumber(String value, String name) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " '" + value + "'");
+        }
+    }
+
+    /**
+     * Splits a row into fields. With a comma delimiter, fields may be wrapped in quotes, and a doubled quote inside
+     * a quoted field stands for one quote.
+     * returns the fields, unquoted
+     */
+    static List<String> split(String line, char delimiter) {
+        List<String> fields = new ArrayList<>(5);
+        if (delimiter != ',') {
+            int start = 0;
+            for (int end = line.indexOf(delimiter); end >= 0; end = line.indexOf(delimiter, start)) {
+                fields.add(line.substring(start, end));
+                start = end + 1;
+            }
+            fields.add(line.substring(start));
+            return fields;
+        }
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Parsed rows of one chunk: for each row either its checked fields or the reason it was rejected.
+     */
+    static final class Chunk {
+        private final long firstLine; // Line number of the first row
+        private final Row[] rows; // Checked fields per row, null for rejected rows
+        private final String[] errors; // Rejection reason per row, null for parsed rows
+
+        private Chunk(long firstLine, int count) {
+            this.firstLine = firstLine;
+            this.rows = new Row[count];
+            this.errors = new String[count];
+        }
+    }
+
+    /**
+     * The checked fields of one row. Rows are equal when the songs made of them would be: same title, artist and year.
+     */
+    private static final class Row {
+        private final String title; // Trimmed title
+        private final String artist; // Trimmed artist
+        private final long plays; // Play count
+        private final int year; // Release year
+        private final String genre; // Trimmed genre, or null
+
+        private Row(String title, String artist, long plays, int year, String genre) {
+            this.title = title;
+            this.artist = artist;
+            this.plays = plays;
+            this.year = year;
+            this.genre = genre;
+        }
+
+        /** returns a new song with the row's fields */
+        private Song toSong() {
+            return new Song(title, artist, plays, year, genre);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Row)) {
+                return false;
+            }
+            Row other = (Row) o;
+            return year == other.year && title.equals(other.title) && artist.equals(other.artist);
+        }
+
+        @Override
+        public int hashCode() {
+            return (title.hashCode() * 31 + artist.hashCode()) * 31 + year;
+        }
+    }
+
+    /**
+     * Merges parsed chunks in file order, deduplicating and reporting, and finally adds the songs to the service.
+     */
+    private final class Merge {
+        private final Set<Row> accepted = new LinkedHashSet<>(); // Rows to import, by identity in file order
+        private final Playlist library = service.getLibrary(); // Library checked for songs already present
+        private long rows; // Data rows merged so far
+        private long rejected; // Rows rejected so far
+
+        /** Merges one chunk and reports progress. */
+        private void add(Chunk chunk) {
+            for (int i = 0; i < chunk.rows.length; i++) {
+                Row row = chunk.rows[i];
+                String error = chunk.errors[i];
+                if (row != null && library.findSong(row.title, row.artist, row.year) != null) {
+                    error = "Already in the library: " + row.title + " by " + row.artist;
+                } else if (row != null && !accepted.add(row)) {
+                    error = "Duplicate of an earlier row: " + row.title + " by " + row.artist;
+                }
+                if (error != null) {
+                    rejected++;
+                    listener.rowRejected(chunk.firstLine + i, error);
+                }
+            }
+            rows += chunk.rows.length;
+            listener.progress(rows, accepted.size(), rejected);
+        }
+
+        /** Makes songs of the accepted rows and adds them in one batch. returns the totals */
+        private Result finish() {
+            List<Song> songs = new ArrayList<>(accepted.size());
+            for (Row row : accepted) {
+                songs.add(row.toSong());
+            }
+            List<Song> added = service.addSongs(songs);
+            return new Result(rows, added.size(), rows - added.size());
+        }
+    }
+
+    /**
+     * Totals of one import.
+     */
+    public static final class Result {
+        private final long rows; // Data rows read
+        private final long imported; // Songs added to the library
+        private final long rejected; // Rows not imported
+
+        private Result(long rows, long imported, long rejected) {
+            this.rows = rows;
+            this.imported = imported;
+            this.rejected = rejected;
+        }
+
+        /** return The number of data rows read, excluding any header */
+        public long getRows() {
+            return rows;
+        }
+
+        /** return The number of songs added to the library */
+        public long getImported() {
+            return imported;
+        }
+
+        /** return The number of rows rejected as invalid or duplicate */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Returns a one line summary of the import.
+         */
+        @Override
+        public String toString() {
+            return "Imported " + imported + " of " + rows + " rows (" + rejected + " rejected)";
+        }
+    }
+}
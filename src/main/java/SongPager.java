@@ -0,0 +1,118 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Cursor over a song listing one page at a time, so large libraries are shown a screen at a time.
+ * Pages are cut from the listing's current song list each time they are read: for a playlist that is its shared
+ * snapshot, so a page view never copies the library, and changes to the library show up on the next read.
+ */
+public class SongPager {
+
+    private final Supplier<List<Song>> songs; // Source of the current song list
+    private final int pageSize; // Songs per page
+    private int page; // Zero based current page
+
+    /**
+     * Creates a pager on the first page.
+     * parameter 'songs' supplies the current song list whenever a page is read
+     * parameter 'pageSize' is the number of songs per page
+     * throws IllegalArgumentException if pageSize is not positive
+     */
+    public SongPager(Supplier<List<Song>> songs, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        this.songs = songs;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Creates a pager over a playlist in its current order.
+     * parameter 'playlist' is the playlist to page through
+     * parameter 'pageSize' is the number of songs per page
+     * returns the pager, on the first page
+     */
+    public static SongPager of(Playlist playlist, int pageSize) {
+        return new SongPager(playlist::getSongs, pageSize);
+    }
+
+    /**
+     * Returns the songs on the current page. If the listing shrank past the current page, the pager moves to the
+     * last page first.
+     * returns a read-only List of up to pageSize songs
+     */
+    public List<Song> getPageSongs() {
+        List<Song> current = songs.get();
+        page = Math.min(page, pageCount(current.size()) - 1);
+        int from = page * pageSize;
+        int to = Math.min(from + pageSize, current.size());
+        return Collections.unmodifiableList(current.subList(from, to));
+    }
+
+    /**
+     * Returns the position of the first song on the current page within the whole listing.
+     * returns the zero based index of the first song shown
+     */
+    public int getFirstIndex() {
+        return Math.min(page, getPageCount() - 1) * pageSize;
+    }
+
+    /** return The zero based current page */
+    public int getPage() {
+        return Math.min(page, getPageCount() - 1);
+    }
+
+    /** return The number of pages; an empty listing has one empty page */
+    public int getPageCount() {
+        return pageCount(songs.get().size());
+    }
+
+    /** return The number of songs per page */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Moves to the next page.
+     * returns true if the pager moved, false if it was already on the last page
+     */
+    public boolean next() {
+        if (page + 1 >= getPageCount()) {
+            return false;
+        }
+        page++;
+        return true;
+    }
+
+    /**
+     * Moves to the previous page.
+     * returns true if the pager moved, false if it was already on the first page
+     */
+    public boolean previous() {
+        page = getPage();
+        if (page == 0) {
+            return false;
+        }
+        page--;
+        return true;
+    }
+
+    /**
+     * Moves to the given page.
+     * parameter 'page' is the zero based page to show
+     * throws IllegalArgumentException if the page does not exist
+     */
+    public void jumpTo(int page) {
+        int count = getPageCount();
+        if (page < 0 || page >= count) {
+            throw new IllegalArgumentException("Page " + (page + 1) + " outside 1 to " + count);
+        }
+        this.page = page;
+    }
+
+    /** returns the number of pages needed for a listing size, at least 1 */
+    private int pageCount(int size) {
+        return Math.max(1, (size + pageSize - 1) / pageSize);
+    }
+}
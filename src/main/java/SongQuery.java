@@ -0,0 +1,101 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Multi-attribute song filter, such as "Pop from 2020 to 2022 by Taylor Swift with over 1M plays".
+ * Values given for the same attribute are alternatives; different attributes must all match.
+ * Attributes left unset match every song. Setters return the query so calls can be chained.
+ */
+public class SongQuery {
+
+    private final List<String> genres = new ArrayList<>(); // Accepted genres, empty for any
+    private final List<String> artists = new ArrayList<>(); // Accepted artists, empty for any
+    private int fromYear = Integer.MIN_VALUE; // Earliest accepted release year
+    private int toYear = Integer.MAX_VALUE; // Latest accepted release year
+    private long minPlays; // Fewest accepted plays
+
+    /**
+     * Accepts songs of any of the given genres, in addition to genres already accepted.
+     * returns this query
+     */
+    public SongQuery genres(String... genres) {
+        Collections.addAll(this.genres, genres);
+        return this;
+    }
+
+    /**
+     * Accepts songs by any of the given artists, in addition to artists already accepted.
+     * returns this query
+     */
+    public SongQuery artists(String... artists) {
+        Collections.addAll(this.artists, artists);
+        return this;
+    }
+
+    /**
+     * Accepts songs released in a range of years.
+     * parameter 'fromYear' is the first accepted year
+     * parameter 'toYear' is the last accepted year
+     * returns this query
+     * throws IllegalArgumentException if the range is empty
+     */
+    public SongQuery years(int fromYear, int toYear) {
+        if (fromYear > toYear) {
+            throw new IllegalArgumentException("Year range " + fromYear + " to " + toYear + " is empty");
+        }
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+        return this;
+    }
+
+    /**
+     * Accepts songs with at least the given number of plays.
+     * returns this query
+     */
+    public SongQuery minPlays(long minPlays) {
+        this.minPlays = minPlays;
+        return this;
+    }
+
+    /** return The accepted genres, empty for any */
+    public List<String> getGenres() {
+        return Collections.unmodifiableList(genres);
+    }
+
+    /** return The accepted artists, empty for any */
+    public List<String> getArtists() {
+        return Collections.unmodifiableList(artists);
+    }
+
+    /** return The first accepted year */
+    public int getFromYear() {
+        return fromYear;
+    }
+
+    /** return The last accepted year */
+    public int getToYear() {
+        return toYear;
+    }
+
+    /** return true if the query limits the release year */
+    public boolean hasYearRange() {
+        return fromYear != Integer.MIN_VALUE || toYear != Integer.MAX_VALUE;
+    }
+
+    /** return The fewest accepted plays */
+    public long getMinPlays() {
+        return minPlays;
+    }
+
+    /**
+     * Checks a song against every part of the query.
+     * returns true if the song matches
+     */
+    public boolean matches(Song song) {
+        return (genres.isEmpty() || genres.contains(song.getGenre()))
+                && (artists.isEmpty() || artists.contains(song.getArtist()))
+                && song.getYear() >= fromYear && song.getYear() <= toYear
+                && song.getPlayCount() >= minPlays;
+    }
+}
@@ -0,0 +1,424 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Full text search over song titles and artists.
+ * Titles and artists are split into lower-case word tokens, and each token maps to the songs containing it (an
+ * inverted index). Tokens are kept in a sorted term dictionary, so every term starting with a prefix is one contiguous
+ * range, which serves type-ahead completion the way a prefix trie would.
+ * Results are ranked by play count, most played first. Terms shared by many songs also keep their most played songs
+ * ranked, following plays as they happen, so a search on a common word or a short prefix walks a short ranked list and
+ * stops once it has enough matches instead of scanning every song containing the term.
+ * The index is updated one song at a time as songs are added and removed; searches run concurrently with each other.
+ */
+public class SongSearchIndex implements PlayCountListener {
+
+    /** Orders songs from most to least played, then by title so ties are stable. */
+    private static final Comparator<Song> BY_PLAYS = Comparator.comparingLong(Song::getPlayCount).reversed()
+            .thenComparing(Song::getTitle);
+    private static final int TOP = 64; // Most played songs each term keeps ranked once it has more songs than this
+
+    private final NavigableMap<String, Posting> postings; // Term to the songs containing it, sorted by term
+    private final Set<Song> played; // Songs played since the ranked lists were last brought up to date
+    private final ReadWriteLock lock; // Lets searches share the index while updates take it alone
+
+    /**
+     * Creates an empty search index.
+     */
+    public SongSearchIndex() {
+        this.postings = new TreeMap<>();
+        this.played = ConcurrentHashMap.newKeySet();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Splits text into lower-case tokens of letters and digits.
+     * parameter 'text' is the text to split
+     * returns the tokens, in order, possibly with repeats
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Indexes the title and artist of a song.
+     * parameter 'song' specifies the song to add
+     */
+    public void add(Song song) {
+        Set<String> terms = terms(song);
+        lock.writeLock().lock();
+        try {
+            for (String term : terms) {
+                postings.computeIfAbsent(term, key -> new Posting()).add(song);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        song.addPlayCountListener(this);
+    }
+
+    /**
+     * Indexes many songs at once. The batch is grouped by term before the index is locked, so the lock is taken
+     * once and each term's postings are looked up once rather than once per song.
+     * parameter 'songs' specifies the songs to add
+     */
+    public void addAll(Collection<Song> songs) {
+        Map<String, List<Song>> batch = new HashMap<>();
+        for (Song song : songs) {
+            for (String term : terms(song)) {
+                batch.computeIfAbsent(term, key -> new ArrayList<>()).add(song);
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, List<Song>> entry : batch.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), key -> new Posting()).addAll(entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (Song song : songs) {
+            song.addPlayCountListener(this);
+        }
+    }
+
+    /**
+     * Removes a song from the index.
+     * parameter 'song' specifies the song to remove
+     */
+    public void remove(Song song) {
+        Set<String> terms = terms(song);
+        song.removePlayCountListener(this);
+        lock.writeLock().lock();
+        try {
+            for (String term : terms) {
+                Posting posting = postings.get(term);
+                if (posting != null && posting.remove(song) && posting.songs.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+            played.remove(song);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Notes that a song was played, so the ranked lists of its terms are brought up to date before the next search.
+     * parameter 'song' is the played song
+     */
+    @Override
+    public void playCountChanged(Song song) {
+        if (!played.contains(song)) {
+            played.add(song);
+        }
+    }
+
+    /**
+     * Finds songs whose title or artist contains every word of the query.
+     * parameter 'query' is the search text
+     * parameter 'limit' is the maximum number of songs to return
+     * returns matching songs, most played first
+     */
+    public List<Song> search(String query, int limit) {
+        Set<String> words = new HashSet<>(tokenize(query));
+        if (words.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        lockRanked();
+        try {
+            List<Posting> matches = matches(words);
+            return matches == null ? Collections.emptyList() : top(matches, null, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Type-ahead search: every word but the last must match whole, and the last word may be the start of a word.
+     * parameter 'text' is the text typed so far
+     * parameter 'limit' is the maximum number of songs to return
+     * returns matching songs, most played first
+     */
+    public List<Song> autocomplete(String text, int limit) {
+        List<String> tokens = tokenize(text);
+        if (tokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String prefix = tokens.get(tokens.size() - 1);
+        Set<String> words = new HashSet<>(tokens.subList(0, tokens.size() - 1));
+        lockRanked();
+        try {
+            NavigableMap<String, Posting> completions = completions(prefix);
+            if (completions.isEmpty()) {
+                return Collections.emptyList();
+            }
+            if (words.isEmpty()) {
+                // The best songs overall are among the best 'limit' of each completed word
+                Set<Song> candidates = new HashSet<>();
+                for (Posting posting : completions.values()) {
+                    candidates.addAll(posting.top != null && limit <= TOP ? posting.top.subList(0, limit) : posting.songs);
+                }
+                return best(candidates, Collections.emptyList(), null, limit);
+            }
+            List<Posting> matches = matches(words);
+            return matches == null ? Collections.emptyList() : top(matches, prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Suggests whole words that start with a prefix, most common first.
+     * parameter 'prefix' is the start of the word typed so far
+     * parameter 'limit' is the maximum number of words to return
+     * returns completed words
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String start = prefix == null ? "" : prefix.trim().toLowerCase(Locale.ROOT);
+        if (start.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            List<Map.Entry<String, Posting>> terms = new ArrayList<>(completions(start).entrySet());
+            terms.sort(Comparator.comparingInt((Map.Entry<String, Posting> term) -> term.getValue().songs.size())
+                    .reversed().thenComparing(Map.Entry::getKey));
+            List<String> words = new ArrayList<>(Math.min(limit, terms.size()));
+            for (int i = 0; i < terms.size() && i < limit; i++) {
+                words.add(terms.get(i).getKey());
+            }
+            return words;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of distinct terms indexed.
+     * returns the term count
+     */
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the read lock, first re-ranking the songs played since the last search under the write lock.
+     */
+    private void lockRanked() {
+        if (!played.isEmpty()) {
+            lock.writeLock().lock();
+            try {
+                for (Iterator<Song> it = played.iterator(); it.hasNext(); ) {
+                    Song song = it.next();
+                    it.remove(); // Before re-ranking, so a play meanwhile queues the song again
+                    if (!song.hasPlayCountListener(this)) {
+                        continue; // Removed from the index after it was played
+                    }
+                    for (String term : terms(song)) {
+                        Posting posting = postings.get(term);
+                        if (posting != null) {
+                            posting.played(song);
+                        }
+                    }
+                }
+                lock.readLock().lock(); // Downgrade, so no update slips in before the search
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } else {
+            lock.readLock().lock();
+        }
+    }
+
+    /** returns the postings of every word, smallest first, or null if a word is not indexed. Called with the lock held. */
+    private List<Posting> matches(Set<String> words) {
+        List<Posting> matches = new ArrayList<>();
+        for (String word : words) {
+            Posting posting = postings.get(word);
+            if (posting == null) {
+                return null;
+            }
+            matches.add(posting);
+        }
+        matches.sort(Comparator.comparingInt(posting -> posting.songs.size()));
+        return matches;
+    }
+
+    /** returns the range of terms starting with a prefix. Called with the lock held. */
+    private NavigableMap<String, Posting> completions(String prefix) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Finds the most played songs in every posting that, if a prefix is given, have a title or artist word starting
+     * with it. A large smallest posting has its ranked list walked first, most played first, stopping at 'limit'
+     * matches; only if the list runs out are all of the posting's songs checked.
+     * returns up to limit songs, most played first
+     */
+    private static List<Song> top(List<Posting> matches, String prefix, int limit) {
+        Posting smallest = matches.get(0);
+        List<Posting> others = matches.subList(1, matches.size());
+        if (smallest.top != null) {
+            List<Song> result = new ArrayList<>(limit);
+            for (int i = 0; i < smallest.top.size() && result.size() < limit; i++) {
+                Song song = smallest.top.get(i);
+                if (matches(song, others, prefix)) {
+                    result.add(song);
+                }
+            }
+            if (result.size() == limit) {
+                return result;
+            }
+        }
+        return best(smallest.songs, others, prefix, limit);
+    }
+
+    /**
+     * Keeps the most played candidates that are also in every other posting and, if a prefix is given,
+     * have a title or artist word starting with it.
+     * returns up to limit songs, most played first
+     */
+    private static List<Song> best(Collection<Song> candidates, List<Posting> others, String prefix, int limit) {
+        PriorityQueue<Song> best = new PriorityQueue<>(limit + 1, BY_PLAYS.reversed());
+        for (Song song : candidates) {
+            if (!matches(song, others, prefix)) {
+                continue;
+            }
+            best.add(song);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Song> result = new ArrayList<>(best);
+        result.sort(BY_PLAYS);
+        return result;
+    }
+
+    /** returns true if every posting contains the song and, if a prefix is given, a word of it starts with the prefix */
+    private static boolean matches(Song song, List<Posting> others, String prefix) {
+        for (Posting posting : others) {
+            if (!posting.songs.contains(song)) {
+                return false;
+            }
+        }
+        return prefix == null || hasWordStartingWith(song, prefix);
+    }
+
+    /** returns true if a word of the song's title or artist starts with the prefix */
+    private static boolean hasWordStartingWith(Song song, String prefix) {
+        for (String term : terms(song)) {
+            if (term.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** returns the distinct tokens of a song's title and artist */
+    private static Set<String> terms(Song song) {
+        Set<String> terms = new HashSet<>(tokenize(song.getTitle()));
+        terms.addAll(tokenize(song.getArtist()));
+        return terms;
+    }
+
+    /**
+     * The songs containing one term. Once there are more than TOP of them, the TOP most played are also kept in a
+     * ranked list. Play counts only grow, so the list stays exact by re-ranking each played song: an unranked song
+     * that was not played cannot have overtaken the lowest ranked one. Changed under the write lock.
+     */
+    private static final class Posting {
+        private final Set<Song> songs = new HashSet<>(); // Songs containing the term
+        private List<Song> top; // The TOP most played songs, most played first; null while there are at most TOP songs
+
+        /** Adds a song to the posting. */
+        void add(Song song) {
+            if (songs.add(song)) {
+                if (top != null) {
+                    rank(song);
+                } else if (songs.size() > TOP) {
+                    top = best(songs, Collections.emptyList(), null, TOP);
+                }
+            }
+        }
+
+        /** Adds songs to the posting. */
+        void addAll(Collection<Song> added) {
+            for (Song song : added) {
+                add(song);
+            }
+        }
+
+        /**
+         * Removes a song from the posting; a ranked song leaving a large posting has the list rebuilt.
+         * returns true if the song was in the posting
+         */
+        boolean remove(Song song) {
+            if (!songs.remove(song)) {
+                return false;
+            }
+            if (top != null && songs.size() <= TOP) {
+                top = null;
+            } else if (top != null && top.remove(song)) {
+                top = best(songs, Collections.emptyList(), null, TOP);
+            }
+            return true;
+        }
+
+        /** Re-ranks a played song. */
+        void played(Song song) {
+            if (top != null && songs.contains(song)) {
+                rank(song);
+            }
+        }
+
+        /** Moves a song to its place in the ranked list, or leaves it out if it ranks below the lowest. */
+        private void rank(Song song) {
+            top.remove(song);
+            int at = 0;
+            while (at < top.size() && BY_PLAYS.compare(top.get(at), song) <= 0) {
+                at++;
+            }
+            if (at < TOP) {
+                top.add(at, song);
+                if (top.size() > TOP) {
+                    top.remove(TOP);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps strings to dense int codes and back, storing each distinct string once.
+ * Codes are handed out in first-seen order starting at 0, so they can index plain arrays.
+ * Lookups and decoding never lock; only adding a new string does. Codes are never reclaimed.
+ */
+public class StringDictionary {
+
+    public static final int NONE = -1; // Code for a missing (null) string
+
+    private final Map<String, Integer> codes; // String to its code
+    private volatile String[] values; // Code to its canonical string
+    private volatile int size; // Number of codes handed out
+
+    /**
+     * Creates an empty dictionary.
+     */
+    public StringDictionary() {
+        this.codes = new ConcurrentHashMap<>();
+        this.values = new String[16];
+    }
+
+    /**
+     * Returns the code of a string, adding it if it has not been seen before.
+     * parameter 'value' is the string to encode
+     * returns its code, or NONE for null
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    /**
+     * Returns the code of a string without adding it.
+     * parameter 'value' is the string to look up
+     * returns its code, or NONE if the string is null or not in the dictionary
+     */
+    public int lookup(String value) {
+        Integer code = value == null ? null : codes.get(value);
+        return code == null ? NONE : code;
+    }
+
+    /**
+     * Returns the string for a code.
+     * parameter 'code' is a code handed out by encode, or NONE
+     * returns the string, or null for NONE
+     * throws IndexOutOfBoundsException if the code was never handed out
+     */
+    public String decode(int code) {
+        if (code == NONE) {
+            return null;
+        }
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException("Unknown dictionary code " + code);
+        }
+        return values[code];
+    }
+
+    /**
+     * Returns the number of distinct strings in the dictionary.
+     * returns the dictionary size, which is also one past the highest code
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a string under the next code. The string is stored before the size is published, so a reader that sees
+     * a code can always decode it.
+     * returns the code of the string, which another thread may have added first
+     */
+    private synchronized int add(String value) {
+        Integer existing = codes.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        int code = size;
+        String[] current = values;
+        if (code == current.length) {
+            current = Arrays.copyOf(current, code * 2);
+        }
+        current[code] = value;
+        values = current;
+        size = code + 1;
+        codes.put(value, code);
+        return code;
+    }
+}
@@ -0,0 +1,458 @@
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Counts recent plays per song in sliding windows, alongside the lifetime play counts kept by Song.
+ * Each played song gets a ring of per-minute buckets covering the last hour and a ring of per-hour buckets covering
+ * the last week. Rings start sparse, holding only the minutes and hours the song was played in, so a song played a
+ * few times costs under 200 bytes; a busy song's ring turns into one int per bucket, reused in place as time moves on.
+ * Only songs played in the last week hold rings; songs that go quiet are dropped, so memory follows the number of
+ * recently played songs rather than the size of the library.
+ * Each window keeps a ranking of its top songs. It is counted from every tracked song at most once per bucket, and
+ * in between only the songs played since the last call are re-ranked.
+ * Time comes from an injectable Clock, so windows can be tested without waiting.
+ */
+public class TrendingTracker {
+
+    /**
+     * Length of time over which recent plays are counted.
+     */
+    public enum Window {
+        /** The last 60 minutes, counted in minute buckets. */
+        HOUR("1h", MINUTES, true),
+        /** The last 24 hours, counted in hour buckets including the current one. */
+        DAY("24h", 24, false),
+        /** The last 7 days, counted in hour buckets including the current one. */
+        WEEK("7d", HOURS, false);
+
+        private final String label; // Short name used in queries, such as "24h"
+        private final int buckets; // Number of buckets summed
+        private final boolean minutes; // Whether the window reads the minute ring rather than the hour ring
+
+        Window(String label, int buckets, boolean minutes) {
+            this.label = label;
+            this.buckets = buckets;
+            this.minutes = minutes;
+        }
+
+        /** return The short name of the window, such as "24h" */
+        public String getLabel() {
+            return label;
+        }
+
+        /** returns the number of the bucket holding the given time */
+        private long period(long millis) {
+            return Math.floorDiv(millis, minutes ? MINUTE_MILLIS : HOUR_MILLIS);
+        }
+
+        /**
+         * Finds a window by its short name.
+         * parameter 'label' is "1h", "24h" or "7d"
+         * returns the window
+         * throws IllegalArgumentException if no window has that name
+         */
+        public static Window parse(String label) {
+            for (Window window : values()) {
+                if (window.label.equalsIgnoreCase(label == null ? "" : label.trim())) {
+                    return window;
+                }
+            }
+            throw new IllegalArgumentException("Unknown window '" + label + "', expected 1h, 24h or 7d");
+        }
+    }
+
+    private static final int MINUTES = 60; // Minute buckets, one hour
+    private static final int HOURS = 24 * 7; // Hour buckets, one week
+    private static final long MINUTE_MILLIS = 60_000; // Length of a minute bucket
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS; // Length of an hour bucket
+    private static final int MIN_PRUNE_SIZE = 1024; // Counters held before quiet songs are first looked for
+    private static final int TOP = 100; // Songs ranked per window; longer lists are counted from every tracked song
+    private static final Comparator<Ranked> ORDER = Comparator.comparingLong((Ranked ranked) -> ranked.plays)
+            .thenComparingLong(ranked -> ranked.song.getPlayCount()); // Least trending first
+
+    private final Clock clock; // Source of the current time
+    private final Map<Song, Counter> counters; // Recently played songs and their buckets
+    private final Set<Song> played; // Songs played since the rankings were last brought up to date
+    private final Ranking[] rankings; // Top songs per window, indexed by Window ordinal, guarded by the array
+    private volatile int pruneAt = MIN_PRUNE_SIZE; // Counter count at which quiet songs are next dropped
+
+    /**
+     * Creates a tracker reading the given clock.
+     * parameter 'clock' supplies the current time
+     */
+    public TrendingTracker(Clock clock) {
+        this.clock = clock;
+        this.counters = new ConcurrentHashMap<>();
+        this.played = ConcurrentHashMap.newKeySet();
+        this.rankings = new Ranking[Window.values().length];
+        for (Window window : Window.values()) {
+            rankings[window.ordinal()] = new Ranking(window);
+        }
+    }
+
+    /**
+     * Counts one play of a song now.
+     * Safe to call from many threads at once; plays of different songs do not contend. The play is counted inside
+     * the map's compute, so a concurrent prune or remove cannot drop the counter while the play is being added.
+     * parameter 'song' specifies the played song
+     */
+    public void record(Song song) {
+        long now = clock.millis();
+        counters.compute(song, (key, counter) -> {
+            Counter counted = counter == null ? new Counter(now) : counter;
+            counted.add(now);
+            return counted;
+        });
+        if (!played.contains(song)) {
+            played.add(song); // After counting, so a ranking that takes the song back out sees this play
+        }
+        if (counters.size() >= pruneAt) {
+            prune();
+        }
+    }
+
+    /**
+     * Stops tracking a song, such as one removed from the library.
+     * parameter 'song' specifies the song to drop
+     */
+    public void remove(Song song) {
+        counters.remove(song);
+        synchronized (rankings) {
+            for (Ranking ranking : rankings) {
+                ranking.remove(song);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of plays of a song within a window ending now.
+     * parameter 'song' specifies the song
+     * parameter 'window' is the window to count over
+     * returns the recent play count, 0 if the song was not played in the window
+     */
+    public long plays(Song song, Window window) {
+        Counter counter = counters.get(song);
+        return counter == null ? 0 : counter.sum(window, clock.millis());
+    }
+
+    /**
+     * Ranks songs by their plays within a window ending now.
+     * Songs tied on recent plays are ordered by lifetime plays. Songs without plays in the window are left out.
+     * Lists of up to 100 songs are read from the window's ranking; longer ones count every tracked song.
+     * parameter 'window' is the window to count over
+     * parameter 'limit' is the maximum number of songs to return
+     * parameter 'include' selects the songs that may be listed, such as those still in the library
+     * returns the trending songs, most recently played first
+     */
+    public List<Song> trending(Window window, int limit, Predicate<Song> include) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        long now = clock.millis();
+        if (limit <= TOP) {
+            synchronized (rankings) {
+                catchUp(now);
+                Ranking ranking = rankings[window.ordinal()];
+                if (ranking.period != window.period(now)) {
+                    ranking.rebuild(count(window, now, TOP, song -> true), window.period(now));
+                }
+                List<Song> songs = ranking.top(limit, include);
+                if (songs.size() == limit || ranking.top.size() < TOP) {
+                    return songs; // A ranking with room to spare holds every song played in the window
+                }
+            }
+        }
+        List<Song> songs = new ArrayList<>();
+        for (Ranked ranked : count(window, now, limit, include)) {
+            songs.add(ranked.song);
+        }
+        return songs;
+    }
+
+    /**
+     * Returns the number of songs currently holding counters.
+     * returns the tracked song count
+     */
+    public int size() {
+        return counters.size();
+    }
+
+    /**
+     * Drops the counters of songs not played in the last week. Each counter is checked and removed inside the map's
+     * compute, so a song played meanwhile keeps its counter and the new play.
+     */
+    public void prune() {
+        long now = clock.millis();
+        for (Song song : counters.keySet()) {
+            counters.computeIfPresent(song, (key, counter) -> counter.isQuiet(now) ? null : counter);
+        }
+        pruneAt = Math.max(MIN_PRUNE_SIZE, counters.size() * 2);
+    }
+
+    /**
+     * Re-ranks the songs played since the last call in every ranking still current. Called holding the rankings.
+     */
+    private void catchUp(long now) {
+        for (Iterator<Song> it = played.iterator(); it.hasNext(); ) {
+            Song song = it.next();
+            it.remove(); // Before reading the counts, so a play counted after the read marks the song again
+            Counter counter = counters.get(song);
+            for (Ranking ranking : rankings) {
+                if (ranking.period == ranking.window.period(now)) {
+                    ranking.update(song, counter == null ? 0 : counter.sum(ranking.window, now));
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts every tracked song, keeping only the best in a bounded heap.
+     * returns up to 'limit' included songs with plays in the window, most played first
+     */
+    private List<Ranked> count(Window window, long now, int limit, Predicate<Song> include) {
+        PriorityQueue<Ranked> best = new PriorityQueue<>(limit + 1, ORDER);
+        for (Map.Entry<Song, Counter> entry : counters.entrySet()) {
+            long plays = entry.getValue().sum(window, now);
+            if (plays > 0 && include.test(entry.getKey())) {
+                best.add(new Ranked(entry.getKey(), plays));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        List<Ranked> ranked = new ArrayList<>(best);
+        ranked.sort(ORDER.reversed());
+        return ranked;
+    }
+
+    /**
+     * The top songs of one window as counted in one bucket. Plays only drop out of a window when it moves on to the
+     * next bucket, so within a bucket the ranking stays exact by re-ranking the songs played since it was counted:
+     * an unranked song that was not played cannot have overtaken the lowest ranked one.
+     */
+    private static final class Ranking {
+        private final Window window; // Window ranked
+        private final Map<Song, Ranked> top = new HashMap<>(); // Up to TOP songs with the most plays in the window
+        private Ranked lowest; // Least trending ranked song, or null if not yet found
+        private long period = Long.MIN_VALUE; // Bucket the ranking was counted in; recounted once the window moves
+
+        private Ranking(Window window) {
+            this.window = window;
+        }
+
+        /** Replaces the ranking with a fresh count made in the given bucket. */
+        private void rebuild(List<Ranked> counted, long period) {
+            top.clear();
+            for (Ranked ranked : counted) {
+                top.put(ranked.song, ranked);
+            }
+            lowest = null;
+            this.period = period;
+        }
+
+        /** Moves a song to its place for its current plays, dropping the lowest ranked song if there is no room. */
+        private void update(Song song, long plays) {
+            if (plays <= 0) {
+                remove(song); // Only a song no longer tracked has lost plays within a bucket
+                return;
+            }
+            Ranked ranked = new Ranked(song, plays);
+            if (top.put(song, ranked) != null) {
+                if (lowest != null && lowest.song.equals(song)) {
+                    lowest = null;
+                }
+            } else if (top.size() > TOP) {
+                if (lowest == null) {
+                    lowest = Collections.min(top.values(), ORDER);
+                }
+                top.remove(lowest.song);
+                lowest = null;
+            } else if (lowest != null && ORDER.compare(ranked, lowest) < 0) {
+                lowest = ranked;
+            }
+        }
+
+        /** Drops a song; a full ranking no longer knows which song comes next, so it is recounted. */
+        private void remove(Song song) {
+            boolean full = top.size() == TOP;
+            if (top.remove(song) != null) {
+                lowest = null;
+                if (full) {
+                    period = Long.MIN_VALUE;
+                }
+            }
+        }
+
+        /** returns up to 'limit' included songs, most played first */
+        private List<Song> top(int limit, Predicate<Song> include) {
+            List<Ranked> ranked = new ArrayList<>(top.values());
+            ranked.sort(ORDER.reversed());
+            List<Song> songs = new ArrayList<>(Math.min(limit, ranked.size()));
+            for (Ranked entry : ranked) {
+                if (songs.size() == limit) {
+                    break;
+                }
+                if (include.test(entry.song)) {
+                    songs.add(entry.song);
+                }
+            }
+            return songs;
+        }
+    }
+
+    /**
+     * Per-song minute and hour rings.
+     */
+    private static final class Counter {
+        private final Ring minutes; // Plays per minute over the last hour
+        private final Ring hours; // Plays per hour over the last week
+
+        /** Creates empty rings whose newest buckets are those of the given time. */
+        private Counter(long millis) {
+            this.minutes = new Ring(MINUTES, Math.floorDiv(millis, MINUTE_MILLIS));
+            this.hours = new Ring(HOURS, Math.floorDiv(millis, HOUR_MILLIS));
+        }
+
+        /** Counts one play at the given time. Plays older than a ring, from a clock set back, are not counted there. */
+        private synchronized void add(long millis) {
+            minutes.add(Math.floorDiv(millis, MINUTE_MILLIS));
+            hours.add(Math.floorDiv(millis, HOUR_MILLIS));
+        }
+
+        /** returns the plays within a window ending at the given time */
+        private synchronized long sum(Window window, long millis) {
+            long now = window.period(millis);
+            return (window.minutes ? minutes : hours).sum(now - window.buckets + 1, now);
+        }
+
+        /** returns true if the song was not played in the last week */
+        private synchronized boolean isQuiet(long millis) {
+            return hours.newest <= Math.floorDiv(millis, HOUR_MILLIS) - HOURS;
+        }
+    }
+
+    /**
+     * Plays per bucket over the last 'length' buckets. While a song has been played in few buckets the ring is a
+     * sorted array of packed bucket and count pairs; once that would take more room than one int per bucket, it
+     * becomes a dense ring whose slots are reused for new buckets by zeroing them.
+     */
+    private static final class Ring {
+        private final int length; // Number of buckets covered
+        private long[] entries = new long[2]; // Sparse pairs, bucket << 32 | count, oldest first; null once dense
+        private int size; // Sparse pairs in use
+        private int[] counts; // Dense plays, indexed by bucket number modulo length; null while sparse
+        private long newest; // Newest bucket in use
+
+        private Ring(int length, long newest) {
+            this.length = length;
+            this.newest = newest;
+        }
+
+        /** Counts one play in a bucket, unless the bucket is older than the ring. */
+        private void add(long bucket) {
+            if (bucket > newest) {
+                if (counts != null) {
+                    // Zero the slots for the buckets after 'newest', at most once round the ring
+                    for (long skipped = Math.max(newest + 1, bucket - length + 1); skipped <= bucket; skipped++) {
+                        counts[Math.floorMod(skipped, length)] = 0;
+                    }
+                }
+                newest = bucket;
+            }
+            if (bucket <= newest - length) {
+                return;
+            }
+            if (counts != null) {
+                counts[Math.floorMod(bucket, length)]++;
+                return;
+            }
+            expire();
+            int i = size - 1;
+            while (i >= 0 && (entries[i] >> 32) > bucket) {
+                i--;
+            }
+            if (i >= 0 && (entries[i] >> 32) == bucket) {
+                entries[i]++;
+                return;
+            }
+            if (size == length / 2) {
+                densify();
+                counts[Math.floorMod(bucket, length)]++;
+                return;
+            }
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, Math.min(size * 2, length / 2));
+            }
+            System.arraycopy(entries, i + 1, entries, i + 2, size - i - 1);
+            entries[i + 1] = bucket << 32 | 1;
+            size++;
+        }
+
+        /** Drops sparse pairs for buckets that have left the ring. */
+        private void expire() {
+            int from = 0;
+            while (from < size && (entries[from] >> 32) <= newest - length) {
+                from++;
+            }
+            if (from > 0) {
+                System.arraycopy(entries, from, entries, 0, size - from);
+                size -= from;
+            }
+        }
+
+        /** Moves the sparse pairs into one int per bucket. */
+        private void densify() {
+            counts = new int[length];
+            for (int i = 0; i < size; i++) {
+                counts[Math.floorMod(entries[i] >> 32, length)] = (int) entries[i];
+            }
+            entries = null;
+            size = 0;
+        }
+
+        /** returns the plays in buckets 'from' to 'to' */
+        private long sum(long from, long to) {
+            // Buckets after 'newest' have not been played in yet, and buckets before the ring have been dropped
+            long first = Math.max(from, newest - length + 1);
+            long last = Math.min(to, newest);
+            long total = 0;
+            if (counts != null) {
+                for (long bucket = first; bucket <= last; bucket++) {
+                    total += counts[Math.floorMod(bucket, length)];
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    long bucket = entries[i] >> 32;
+                    if (bucket >= first && bucket <= last) {
+                        total += (int) entries[i];
+                    }
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * A song and its plays in the window being ranked.
+     */
+    private static final class Ranked {
+        private final Song song; // Ranked song
+        private final long plays; // Plays in the window
+
+        private Ranked(Song song, long plays) {
+            this.song = song;
+            this.plays = plays;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+/**
+ * A listener with their own playlists, shuffle orders and playback history.
+ * Playlists are plain arrays of song ids with a primitive id index, resolved through the catalog when read. A song removed
+ * from the catalog no longer resolves, so it drops out of every playlist the next time that playlist is read, without
+ * the catalog having to know who kept it. Songs are matched by id, so pass the catalog's own Song objects.
+ * Playlists and history are only created when first used, so users who never make a playlist cost a few dozen bytes.
+ * Every method locks only this user, so operations on different users never contend.
+ */
+public class User {
+
+    private final long id; // Unique user id
+    private final String name; // Display name
+    private final int historyDepth; // Number of recent plays kept
+    private final LongFunction<Song> catalog; // Finds a catalog song by id, or returns null once it is removed
+    private Map<String, SongList> playlists; // Playlists by name in creation order, null until the first is created
+    private PlaybackHistory history; // Recent plays, null until the first play
+
+    /**
+     * Creates a user with no playlists or plays.
+     * parameter 'id' is the unique user id
+     * parameter 'name' is the display name
+     * parameter 'historyDepth' is the number of recent plays to keep
+     * parameter 'catalog' finds a song by id, returning null for songs no longer in the catalog
+     * throws IllegalArgumentException if the name is empty or historyDepth is not positive
+     */
+    public User(long id, String name, int historyDepth, LongFunction<Song> catalog) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("User name cannot be empty");
+        }
+        if (historyDepth <= 0) {
+            throw new IllegalArgumentException("History depth must be positive");
+        }
+        this.id = id;
+        this.name = name.trim();
+        this.historyDepth = historyDepth;
+        this.catalog = catalog;
+    }
+
+    /** return The unique user id */
+    public long getId() {
+        return id;
+    }
+
+    /** return The display name */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Creates an empty playlist.
+     * parameter 'playlistName' is the name of the new playlist
+     * throws IllegalArgumentException if the name is empty or the user already has a playlist with that name
+     */
+    public synchronized void createPlaylist(String playlistName) {
+        if (playlistName == null || playlistName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Playlist name cannot be empty");
+        }
+        if (playlists == null) {
+            playlists = new LinkedHashMap<>();
+        }
+        if (playlists.putIfAbsent(playlistName, new SongList()) != null) {
+            throw new IllegalArgumentException("Playlist '" + playlistName + "' already exists");
+        }
+    }
+
+    /**
+     * Deletes a playlist.
+     * returns true if the playlist existed
+     */
+    public synchronized boolean removePlaylist(String playlistName) {
+        return playlists != null && playlists.remove(playlistName) != null;
+    }
+
+    /**
+     * Returns the names of the user's playlists.
+     * returns a List of names in creation order
+     */
+    public synchronized List<String> getPlaylistNames() {
+        return playlists == null ? Collections.emptyList() : new ArrayList<>(playlists.keySet());
+    }
+
+    /**
+     * Adds a song to a playlist.
+     * parameter 'song' specifies the song to add, the catalog's own Song object
+     * returns true if the song was added, false if it is null, a lookup key, or the playlist already has it
+     * throws IllegalArgumentException if there is no such playlist
+     */
+    public synchronized boolean addToPlaylist(String playlistName, Song song) {
+        SongList playlist = playlist(playlistName);
+        return song != null && playlist.add(song.getId());
+    }
+
+    /**
+     * Removes a song from a playlist.
+     * returns true if the playlist had the song
+     * throws IllegalArgumentException if there is no such playlist
+     */
+    public synchronized boolean removeFromPlaylist(String playlistName, Song song) {
+        SongList playlist = playlist(playlistName);
+        return song != null && playlist.remove(song.getId());
+    }
+
+    /**
+     * Turns shuffle on or off for one playlist; each playlist keeps its own shuffle order.
+     * throws IllegalArgumentException if there is no such playlist
+     */
+    public synchronized void setShuffle(String playlistName, boolean shuffle) {
+        playlist(playlistName).setShuffle(shuffle);
+    }
+
+    /**
+     * Checks whether a playlist is shuffled.
+     * throws IllegalArgumentException if there is no such playlist
+     */
+    public synchronized boolean isShuffled(String playlistName) {
+        return playlist(playlistName).isShuffled();
+    }
+
+    /**
+     * Returns the songs of a playlist in play order, reflecting its shuffle state.
+     * Songs no longer in the catalog are left out and dropped from the playlist.
+     * returns a new List of the catalog's songs
+     * throws IllegalArgumentException if there is no such playlist
+     */
+    public synchronized List<Song> getPlaylistSongs(String playlistName) {
+        return playlist(playlistName).resolve(catalog);
+    }
+
+    /**
+     * Records a play in the user's history.
+     * parameter 'song' specifies the song played
+     */
+    public void recordPlay(Song song) {
+        PlaybackHistory plays;
+        synchronized (this) {
+            if (history == null) {
+                history = new PlaybackHistory(historyDepth);
+            }
+            plays = history;
+        }
+        plays.record(song);
+    }
+
+    /**
+     * Returns the user's most recent plays that pass a filter, newest first.
+     * parameter 'limit' is the maximum number of songs to return
+     * parameter 'filter' selects the songs to report, such as those still in the catalog
+     * returns a List of recently played songs
+     */
+    public List<Song> getPlaybackHistory(int limit, Predicate<Song> filter) {
+        PlaybackHistory plays;
+        synchronized (this) {
+            plays = history;
+        }
+        return plays == null ? Collections.emptyList() : plays.recent(limit, filter);
+    }
+
+    /** returns the named playlist, or throws IllegalArgumentException. Called with this user locked. */
+    private SongList playlist(String playlistName) {
+        SongList playlist = playlists == null ? null : playlists.get(playlistName);
+        if (playlist == null) {
+            throw new IllegalArgumentException("No playlist '" + playlistName + "'");
+        }
+        return playlist;
+    }
+
+    /**
+     * One playlist as arrays of song ids: the order songs were added and, while shuffled, the play order.
+     * Each order has an id index, so adding, finding and removing a song take constant time however long the list.
+     * A removed song leaves a gap in the added order, closed up once gaps outnumber songs; in the play order the last
+     * song takes its place, which keeps a random order random.
+     */
+    private static final class SongList {
+        private long[] ids = new long[4]; // Song ids in the order they were added, 0 where a song was removed
+        private int end; // Number of entries of ids in use, gaps included
+        private final LongIntHashMap slots = new LongIntHashMap(); // Song id to its entry in ids
+        private long[] shuffled; // Song ids in play order while shuffled, null otherwise
+        private LongIntHashMap positions; // Song id to its place in shuffled while shuffled, null otherwise
+
+        /** Appends an id, dropping it at a random place in the play order when shuffled. */
+        private boolean add(long id) {
+            if (id <= 0 || slots.get(id) != LongIntHashMap.MISSING) {
+                return false; // A lookup key rather than a catalog song, or already in the list
+            }
+            int size = slots.size();
+            if (end == ids.length) {
+                compact();
+                if (end * 2 > ids.length) {
+                    ids = Arrays.copyOf(ids, ids.length * 2);
+                }
+            }
+            ids[end] = id;
+            slots.put(id, end++);
+            if (shuffled != null) {
+                if (size == shuffled.length) {
+                    shuffled = Arrays.copyOf(shuffled, size * 2);
+                }
+                int position = ThreadLocalRandom.current().nextInt(size + 1); // Inside-out Fisher-Yates step
+                if (position < size) {
+                    shuffled[size] = shuffled[position];
+                    positions.put(shuffled[size], size);
+                }
+                shuffled[position] = id;
+                positions.put(id, position);
+            }
+            return true;
+        }
+
+        /** Removes an id from both orders. */
+        private boolean remove(long id) {
+            int slot = slots.remove(id);
+            if (slot == LongIntHashMap.MISSING) {
+                return false;
+            }
+            ids[slot] = 0;
+            if (shuffled != null) {
+                int position = positions.remove(id);
+                int last = slots.size();
+                if (position < last) {
+                    shuffled[position] = shuffled[last];
+                    positions.put(shuffled[position], position);
+                }
+            }
+            if (slots.size() * 2 < end) {
+                compact();
+            }
+            return true;
+        }
+
+        /** Closes the gaps left by removed songs, keeping the added order. */
+        private void compact() {
+            int live = 0;
+            for (int i = 0; i < end; i++) {
+                if (ids[i] != 0) {
+                    ids[live] = ids[i];
+                    slots.put(ids[i], live++);
+                }
+            }
+            Arrays.fill(ids, live, end, 0);
+            end = live;
+        }
+
+        /** Draws a new play order, or goes back to the order songs were added. */
+        private void setShuffle(boolean shuffle) {
+            if (!shuffle) {
+                shuffled = null;
+                positions = null;
+            } else if (shuffled == null) {
+                compact();
+                shuffled = Arrays.copyOf(ids, ids.length);
+                for (int i = end - 1; i > 0; i--) {
+                    int j = ThreadLocalRandom.current().nextInt(i + 1);
+                    long swap = shuffled[i];
+                    shuffled[i] = shuffled[j];
+                    shuffled[j] = swap;
+                }
+                positions = new LongIntHashMap();
+                for (int i = 0; i < end; i++) {
+                    positions.put(shuffled[i], i);
+                }
+            }
+        }
+
+        /** returns true while shuffled */
+        private boolean isShuffled() {
+            return shuffled != null;
+        }
+
+        /** returns the catalog songs in play order, removing ids the catalog no longer has */
+        private List<Song> resolve(LongFunction<Song> catalog) {
+            long[] order = shuffled != null ? shuffled : ids;
+            int count = shuffled != null ? slots.size() : end;
+            List<Song> songs = new ArrayList<>(slots.size());
+            List<Long> gone = null;
+            for (int i = 0; i < count; i++) {
+                if (order[i] == 0) {
+                    continue; // Gap left by a removed song
+                }
+                Song song = catalog.apply(order[i]);
+                if (song != null) {
+                    songs.add(song);
+                } else {
+                    if (gone == null) {
+                        gone = new ArrayList<>();
+                    }
+                    gone.add(order[i]);
+                }
+            }
+            if (gone != null) {
+                gone.forEach(this::remove);
+            }
+            return songs;
+        }
+    }
+
+    /**
+     * Returns the user's id and name.
+     */
+    @Override
+    public String toString() {
+        return name + " (#" + id + ")";
+    }
+}
@@ -0,0 +1,146 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the BatchCommandRunner class, verifying each command and error handling.
+ */
+public class BatchCommandRunnerTest {
+
+    private MusicStreamingService service;
+    private StringWriter out;
+
+    /** Sets up a service with the default songs before each test. */
+    @BeforeEach
+    void setUp() {
+        service = new MusicStreamingService();
+        service.initialiseDefaultSongs();
+        out = new StringWriter();
+    }
+
+    /**
+     * Runs a script against the service.
+     * parameter 'script' is the commands, one per line
+     * returns the number of failed lines
+     */
+    private int run(String script) throws IOException {
+        return new BatchCommandRunner(service, out).run(new BufferedReader(new StringReader(script)));
+    }
+
+    /** Tests adding, playing and removing songs. */
+    @Test
+    void testAddPlayRemove() throws IOException {
+        int failed = run("add|Test Song|Test Artist|500|2023|Pop\n"
+                + "play| Test Song | Test Artist |2023\n"
+                + "remove|Midnight Rain|Taylor Swift|2022\n");
+
+        assertEquals(0, failed);
+        assertEquals(10, service.getLibrary().size());
+        assertEquals(501, service.getLibrary().findSong("Test Song", "Test Artist", 2023).getPlayCount());
+        assertNull(service.getLibrary().findSong("Midnight Rain", "Taylor Swift", 2022));
+        String output = out.toString();
+        assertTrue(output.contains("Added: Test Song"));
+        assertTrue(output.contains("Playing: Test Song"));
+        assertTrue(output.contains("Removed: Midnight Rain"));
+        assertTrue(output.contains("Processed 3 commands (0 failed)"));
+    }
+
+    /** Tests that adding a song already in the library says so and leaves the library unchanged. */
+    @Test
+    void testAddDuplicate() throws IOException {
+        int failed = run("add|Flowers|Miley Cyrus|1|2023|Pop\n");
+
+        assertEquals(0, failed);
+        assertEquals(10, service.getLibrary().size());
+        assertEquals(234567890, service.getLibrary().findSong("Flowers", "Miley Cyrus", 2023).getPlayCount());
+        String output = out.toString();
+        assertTrue(output.contains("Song already in library: Flowers"));
+        assertFalse(output.contains("Added:"));
+    }
+
+    /** Tests filter, shuffle and history commands, skipping comments and blank lines. */
+    @Test
+    void testQueries() throws IOException {
+        int failed = run("# warm up\n\nplay|Flowers|Miley Cyrus|2023\nfilter|1000000000\nshuffle\nhistory|3\n");
+
+        assertEquals(0, failed);
+        assertTrue(service.getLibrary().isShuffled());
+        String output = out.toString();
+        assertTrue(output.contains("Songs with 1000000000 or more plays: 1"));
+        assertTrue(output.contains("1. Blinding Lights"));
+        assertTrue(output.contains("Shuffle mode is now ON"));
+        assertTrue(output.contains("Playback History (last 3 songs): 1"));
+        assertTrue(output.contains("Processed 4 commands (0 failed)"));
+    }
+
+    /** Tests playing through the library with the play queue commands. */
+    @Test
+    void testPlayQueue() throws IOException {
+        List<Song> songs = service.getLibrary().getSongs();
+        int failed = run("next\nplaynext|Flowers|Miley Cyrus|2023\nnext\nnext\nprevious\nrepeat|all\nrepeat|twice\n");
+
+        assertEquals(1, failed);
+        String output = out.toString();
+        assertTrue(output.contains("Playing: " + songs.get(0)));
+        assertTrue(output.contains("Playing: Flowers"));
+        assertTrue(output.contains("Playing: " + songs.get(1)));
+        assertTrue(output.contains("Repeat mode is now ALL"));
+        assertTrue(output.contains("Line 7: Invalid repeat mode 'twice'"));
+        assertEquals(List.of(songs.get(0), songs.get(1)), service.getPlaybackHistory(5).subList(0, 2));
+    }
+
+    /** Tests that bad lines are reported with their line number and do not stop the script. */
+    @Test
+    void testErrorsAreReported() throws IOException {
+        int failed = run("dance\nplay|Missing|Nobody|2020\nadd|Only Title\nfilter|lots\nadd|New|Artist|1|2020|Pop\n");
+
+        assertEquals(4, failed);
+        assertEquals(11, service.getLibrary().size());
+        String output = out.toString();
+        assertTrue(output.contains("Line 1: Unknown command 'dance'"));
+        assertTrue(output.contains("Line 2: No song 'Missing' by Nobody (2020)"));
+        assertTrue(output.contains("Line 3: 'add' expects 5 fields but got 1"));
+        assertTrue(output.contains("Line 4: Invalid play count 'lots'"));
+        assertTrue(output.contains("Processed 5 commands (4 failed)"));
+    }
+
+    /** Tests that a song removed by another client before it is changed, or any other failure, fails only its line. */
+    @Test
+    void testFailuresWhileRunning() throws IOException {
+        service = new MusicStreamingService() {
+            @Override
+            public boolean playSongById(long id) {
+                removeSongById(id); // Another client removes the song just before the play
+                return super.playSongById(id);
+            }
+
+            @Override
+            public boolean toggleShuffle() {
+                throw new IllegalStateException("Shuffle unavailable");
+            }
+        };
+        service.initialiseDefaultSongs();
+
+        int failed = run("play|Flowers|Miley Cyrus|2023\nremove|Flowers|Miley Cyrus|2023\nshuffle\nhistory\n");
+
+        assertEquals(3, failed);
+        String output = out.toString();
+        assertTrue(output.contains("Line 1: Song no longer in library: "), output);
+        assertFalse(output.contains("Playing:"), output);
+        assertTrue(output.contains("Line 2: No song 'Flowers' by Miley Cyrus (2023)"), output);
+        assertTrue(output.contains("Line 3: failed with java.lang.IllegalStateException: Shuffle unavailable"), output);
+        assertTrue(output.contains("Processed 4 commands (3 failed)"), output);
+    }
+
+    /** Tests splitting on the separator, keeping empty fields. */
+    @Test
+    void testSplit() {
+        assertArrayEquals(new String[] {"add", "A", "", "B"}, BatchCommandRunner.split("add| A ||B "));
+        assertArrayEquals(new String[] {"shuffle"}, BatchCommandRunner.split("shuffle"));
+    }
+}
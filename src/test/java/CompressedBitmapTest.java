@@ -0,0 +1,89 @@
+import org.junit.jupiter.api.Test;
+import java.util.Random;
+import java.util.TreeSet;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the CompressedBitmap class, checking it against a TreeSet across sparse and dense chunks.
+ */
+public class CompressedBitmapTest {
+
+    /** returns the values of a set as an ascending array */
+    private static int[] toArray(TreeSet<Integer> set) {
+        return set.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** Tests adding, removing and looking up values. */
+    @Test
+    void testAddRemoveContains() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+
+        assertTrue(bitmap.add(5));
+        assertFalse(bitmap.add(5));
+        assertTrue(bitmap.add(70000));
+        assertTrue(bitmap.add(Integer.MAX_VALUE));
+        assertTrue(bitmap.contains(70000));
+        assertFalse(bitmap.contains(6));
+        assertFalse(bitmap.contains(-1));
+        assertArrayEquals(new int[] {5, 70000, Integer.MAX_VALUE}, bitmap.toArray());
+
+        assertTrue(bitmap.remove(70000));
+        assertFalse(bitmap.remove(70000));
+        assertEquals(2, bitmap.cardinality());
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1));
+    }
+
+    /** Tests chunks switching to a bitmap above 4096 values and back when they empty out. */
+    @Test
+    void testDenseChunks() {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int i = 0; i < 10000; i++) {
+            bitmap.add(i * 3);
+        }
+        assertEquals(10000, bitmap.cardinality());
+        assertTrue(bitmap.contains(29997));
+        assertFalse(bitmap.contains(29998));
+
+        for (int i = 0; i < 9990; i++) {
+            bitmap.remove(i * 3);
+        }
+        assertEquals(10, bitmap.cardinality());
+        assertEquals(29970, bitmap.toArray()[0]);
+        for (int i = 9990; i < 10000; i++) {
+            bitmap.remove(i * 3);
+        }
+        assertTrue(bitmap.isEmpty());
+    }
+
+    /** Tests intersections and unions of random sparse and dense bitmaps against TreeSet. */
+    @Test
+    void testAndOrMatchSets() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            CompressedBitmap first = new CompressedBitmap();
+            CompressedBitmap second = new CompressedBitmap();
+            TreeSet<Integer> firstSet = new TreeSet<>();
+            TreeSet<Integer> secondSet = new TreeSet<>();
+            int range = round % 2 == 0 ? 200000 : 20000;
+            int count = random.nextInt(15000);
+            for (int i = 0; i < count; i++) {
+                int a = random.nextInt(range);
+                int b = random.nextInt(range / 2);
+                first.add(a);
+                firstSet.add(a);
+                second.add(b);
+                secondSet.add(b);
+            }
+
+            TreeSet<Integer> and = new TreeSet<>(firstSet);
+            and.retainAll(secondSet);
+            TreeSet<Integer> or = new TreeSet<>(firstSet);
+            or.addAll(secondSet);
+
+            assertArrayEquals(toArray(and), first.and(second).toArray());
+            assertArrayEquals(toArray(or), first.or(second).toArray());
+            assertEquals(or.size(), second.or(first).cardinality());
+            assertArrayEquals(toArray(firstSet), first.toArray());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+import org.junit.jupiter.api.Test;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the Json class, verifying string escaping, song output and flat object parsing.
+ */
+public class JsonTest {
+
+    /** Tests escaping of quotes, backslashes and control characters. */
+    @Test
+    void testAppendString() {
+        assertEquals("\"a\\\"b\\\\c\\n\\u0001\"", Json.appendString(new StringBuilder(), "a\"b\\c\n\u0001").toString());
+        assertEquals("null", Json.appendString(new StringBuilder(), null).toString());
+    }
+
+    /** Tests writing a song. */
+    @Test
+    void testAppendSong() {
+        Song song = new Song("Anti-Hero", "Taylor Swift", 7, 2022, null);
+
+        String json = Json.appendSong(new StringBuilder(), song).toString();
+
+        assertEquals("{\"id\":" + song.getId() + ",\"title\":\"Anti-Hero\",\"artist\":\"Taylor Swift\",\"plays\":7,"
+                + "\"year\":2022,\"genre\":null}", json);
+    }
+
+    /** Tests reading each supported value type. */
+    @Test
+    void testParseObject() {
+        Map<String, Object> members = Json.parseObject(
+                " { \"title\" : \"Caf\\u00e9 \\\"Live\\\"\", \"plays\": 12, \"score\": -1.5e2, \"live\": true, \"genre\": null } ");
+
+        assertEquals("Café \"Live\"", members.get("title"));
+        assertEquals(12L, members.get("plays"));
+        assertEquals(-150.0, members.get("score"));
+        assertEquals(Boolean.TRUE, members.get("live"));
+        assertTrue(members.containsKey("genre"));
+        assertNull(members.get("genre"));
+        assertTrue(Json.parseObject("{}").isEmpty());
+    }
+
+    /** Tests that malformed and nested input is rejected. */
+    @Test
+    void testParseObjectRejectsInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> Json.parseObject("{\"a\":1"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parseObject("{\"a\":[1]}"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parseObject("{\"a\":1} x"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parseObject("[]"));
+    }
+}
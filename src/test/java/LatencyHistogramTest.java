@@ -0,0 +1,82 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the LatencyHistogram class, verifying bucketing, counts and percentiles.
+ */
+public class LatencyHistogramTest {
+
+    /** Tests that an empty histogram reports zeros. */
+    @Test
+    void testEmpty() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getP99());
+        assertEquals(0.0, snapshot.getMean());
+    }
+
+    /** Tests that small values are exact and percentiles follow the recorded distribution. */
+    @Test
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(101, snapshot.getCount());
+        assertEquals(50, snapshot.getP50());
+        assertEquals(99, snapshot.getValueAtPercentile(98.02));
+        assertEquals(100, snapshot.getP999());
+        assertEquals(100, snapshot.getMax());
+        assertEquals(5050 / 101.0, snapshot.getMean(), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getValueAtPercentile(101));
+    }
+
+    /** Tests that values recorded from many threads into separate stripes are all counted. */
+    @Test
+    void testConcurrentRecording() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            long value = 100L * (t + 1);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(value);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(80_000, snapshot.getCount());
+        assertEquals(800, snapshot.getMax());
+        assertEquals(450, snapshot.getMean(), 1e-9);
+    }
+
+    /** Tests that large values are reported within the bucket precision. */
+    @Test
+    void testLargeValuesWithinPrecision() {
+        long[] values = {128, 1000, 123_456, 987_654_321, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucket(value);
+            long high = LatencyHistogram.highestValue(bucket);
+            assertTrue(high >= value);
+            assertTrue(high - value <= value / 64, "value " + value + " reported as " + high);
+            assertTrue(bucket == 0 || LatencyHistogram.highestValue(bucket - 1) < value);
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_000);
+        histogram.record(5_000_000);
+
+        assertEquals(5_000_000, histogram.snapshot().getP999());
+        assertTrue(Math.abs(histogram.snapshot().getP50() - 1_000_000) <= 1_000_000 / 64);
+    }
+}
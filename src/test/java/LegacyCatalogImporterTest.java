@@ -0,0 +1,74 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the LegacyCatalogImporter class, migrating the checked in songs.dat file.
+ */
+public class LegacyCatalogImporterTest {
+
+    private static final Path LEGACY_FILE = Paths.get("songs.dat"); // Legacy file at the project root
+
+    @TempDir
+    Path dir;
+
+    /** Tests that the legacy song list is read with all of its fields. */
+    @Test
+    void testReadLegacy() throws IOException {
+        List<Song> songs = LegacyCatalogImporter.readLegacy(LEGACY_FILE);
+
+        assertEquals(11, songs.size());
+        Song first = songs.get(0);
+        assertEquals("Animals", first.getTitle());
+        assertEquals("Nickleback", first.getArtist());
+        assertEquals(2008, first.getYear());
+        assertEquals("rock", first.getGenre());
+        assertEquals(2, first.getPlayCount());
+    }
+
+    /** Tests that migrating starts a data directory the service then opens with the same songs. */
+    @Test
+    void testMigrate() throws IOException {
+        Path dataDir = dir.resolve("data");
+
+        int imported = LegacyCatalogImporter.migrate(LEGACY_FILE, dataDir);
+
+        assertEquals(11, imported);
+        List<Song> legacy = LegacyCatalogImporter.readLegacy(LEGACY_FILE);
+        assertEquals(legacy, PlayJournal.recover(dataDir));
+        try (MusicStreamingService service = MusicStreamingService.open(dataDir, PlayJournal.SyncPolicy.NEVER)) {
+            assertEquals(legacy, service.getLibrary().getSongs());
+            assertEquals(legacy.get(0).getPlayCount(), service.getLibrary().getSong(0).getPlayCount());
+        }
+        assertThrows(IOException.class, () -> LegacyCatalogImporter.migrate(LEGACY_FILE, dataDir));
+    }
+
+    /** Tests that a serialized class the legacy format does not use is refused before it is loaded. */
+    @Test
+    void testRejectsOtherClasses() throws IOException {
+        Path file = dir.resolve("dates.dat");
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(file))) {
+            out.writeObject(new ArrayList<>(List.of(new Date())));
+        }
+
+        IOException e = assertThrows(IOException.class, () -> LegacyCatalogImporter.readLegacy(file));
+        assertTrue(e.getMessage().contains("java.util.Date"), e.getMessage());
+    }
+
+    /** Tests that a file that is not a serialized song list is rejected. */
+    @Test
+    void testRejectsOtherFiles() throws IOException {
+        Path file = dir.resolve("other.dat");
+        Files.write(file, new byte[] {1, 2, 3});
+
+        assertThrows(IOException.class, () -> LegacyCatalogImporter.readLegacy(file));
+    }
+}
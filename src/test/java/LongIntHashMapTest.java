@@ -0,0 +1,77 @@
+import org.junit.jupiter.api.Test;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the LongIntHashMap class, verifying lookups, replacement, removal and growth.
+ */
+public class LongIntHashMapTest {
+
+    /** Tests storing, replacing and reading values. */
+    @Test
+    void testPutAndGet() {
+        LongIntHashMap map = new LongIntHashMap();
+        map.put(7, 1);
+        map.put(42, 2);
+        map.put(7, 3);
+
+        assertEquals(3, map.get(7));
+        assertEquals(2, map.get(42));
+        assertEquals(LongIntHashMap.MISSING, map.get(8));
+        assertEquals(2, map.size());
+    }
+
+    /** Tests that keys must be positive. */
+    @Test
+    void testInvalidKeys() {
+        LongIntHashMap map = new LongIntHashMap();
+        assertThrows(IllegalArgumentException.class, () -> map.put(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> map.put(-5, 1));
+        assertEquals(LongIntHashMap.MISSING, map.get(0));
+        assertEquals(LongIntHashMap.MISSING, map.remove(-5));
+    }
+
+    /** Tests that removed keys are gone while keys that probed past them stay reachable. */
+    @Test
+    void testRemove() {
+        LongIntHashMap map = new LongIntHashMap();
+        for (int key = 1; key <= 100; key++) {
+            map.put(key, key * 10);
+        }
+        for (int key = 1; key <= 100; key += 2) {
+            assertEquals(key * 10, map.remove(key));
+        }
+
+        assertEquals(50, map.size());
+        assertEquals(LongIntHashMap.MISSING, map.remove(1));
+        for (int key = 1; key <= 100; key++) {
+            assertEquals(key % 2 == 0 ? key * 10 : LongIntHashMap.MISSING, map.get(key));
+        }
+    }
+
+    /** Tests the map against a HashMap over a long run of random changes. */
+    @Test
+    void testMatchesHashMap() {
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            long key = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                Integer removed = expected.remove(key);
+                assertEquals(removed == null ? LongIntHashMap.MISSING : removed, map.remove(key));
+            } else {
+                expected.put(key, i);
+                map.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = 1; key <= 5_000; key++) {
+            Integer value = expected.get(key);
+            assertEquals(value == null ? LongIntHashMap.MISSING : value, map.get(key));
+        }
+    }
+}
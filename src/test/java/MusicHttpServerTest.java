@@ -0,0 +1,212 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the MusicHttpServer class, exercising each endpoint over a real local connection.
+ */
+public class MusicHttpServerTest {
+
+    private MusicStreamingService service;
+    private MusicHttpServer server;
+    private HttpClient client;
+    private String base;
+
+    /** Starts a server on a free local port in front of a service with the default songs. */
+    @BeforeEach
+    void setUp() throws IOException {
+        service = new MusicStreamingService();
+        service.initialiseDefaultSongs();
+        server = new MusicHttpServer(service, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        client = HttpClient.newHttpClient();
+        base = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /** Stops the server after each test. */
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Sends a request and returns the response.
+     * parameter 'method' is the HTTP method
+     * parameter 'path' is the path and query
+     * parameter 'body' is the request body, or null for none
+     */
+    private HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+        HttpRequest.BodyPublisher publisher = body == null
+                ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + path)).method(method, publisher).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /** Tests listing the library a page at a time. */
+    @Test
+    void testListSongs() throws Exception {
+        HttpResponse<String> response = send("GET", "/songs?page=2&size=4", null);
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+        assertTrue(response.body().startsWith("{\"total\":10,\"page\":2,\"size\":4,\"songs\":[{\"id\":"));
+        assertTrue(response.body().contains("\"title\":\"Golden Hour\""));
+        assertEquals(400, send("GET", "/songs?size=0", null).statusCode());
+    }
+
+    /** Tests adding, playing and removing a song. */
+    @Test
+    void testAddPlayRemove() throws Exception {
+        HttpResponse<String> added = send("POST", "/songs",
+                "{\"title\":\"New Song\",\"artist\":\"New Artist\",\"plays\":5,\"year\":2024,\"genre\":\"Jazz\"}");
+        assertEquals(201, added.statusCode());
+        assertTrue(added.body().contains("\"plays\":5"));
+        assertEquals(409, send("POST", "/songs", "{\"title\":\"New Song\",\"artist\":\"New Artist\",\"year\":2024}")
+                .statusCode());
+
+        HttpResponse<String> played = send("POST", "/play?title=New+Song&artist=New%20Artist&year=2024", null);
+        assertEquals(200, played.statusCode());
+        assertTrue(played.body().contains("\"plays\":6"));
+        assertEquals(404, send("POST", "/play?title=Nope&artist=Nobody&year=2024", null).statusCode());
+
+        assertEquals(200, send("DELETE", "/songs?title=New+Song&artist=New+Artist&year=2024", null).statusCode());
+        assertEquals(10, service.getLibrary().size());
+        assertEquals(404, send("DELETE", "/songs?title=New+Song&artist=New+Artist&year=2024", null).statusCode());
+    }
+
+    /** Tests playing and removing a song by the id listed for it. */
+    @Test
+    void testPlayRemoveById() throws Exception {
+        Song song = service.getLibrary().findSong("Flowers", "Miley Cyrus", 2023);
+        long before = song.getPlayCount();
+
+        HttpResponse<String> played = send("POST", "/play?id=" + song.getId(), null);
+        assertEquals(200, played.statusCode());
+        assertTrue(played.body().startsWith("{\"id\":" + song.getId() + ","));
+        assertEquals(before + 1, song.getPlayCount());
+        assertEquals(200, send("DELETE", "/songs?id=" + song.getId(), null).statusCode());
+        assertEquals(404, send("POST", "/play?id=" + song.getId(), null).statusCode());
+        assertEquals(400, send("POST", "/play?id=first", null).statusCode());
+    }
+
+    /** Tests that a song removed and re-added between the lookup and the action is not acted on in its place. */
+    @Test
+    void testActionsByIdSkipReaddedSong() throws Exception {
+        server.close();
+        service = new MusicStreamingService() {
+            @Override
+            public Song getSongById(long id) {
+                Song song = super.getSongById(id);
+                if (song != null) { // Another client replaces the song with an equal copy right after the lookup
+                    removeSongById(id);
+                    addSong(new Song(song.getTitle(), song.getArtist(), 0, song.getYear(), song.getGenre()));
+                }
+                return song;
+            }
+        };
+        service.initialiseDefaultSongs();
+        server = new MusicHttpServer(service, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        base = "http://localhost:" + server.getAddress().getPort();
+        Song flowers = service.getLibrary().findSong("Flowers", "Miley Cyrus", 2023);
+
+        assertEquals(404, send("POST", "/play?id=" + flowers.getId(), null).statusCode());
+        Song copy = service.getLibrary().findSong("Flowers", "Miley Cyrus", 2023);
+        assertNotSame(flowers, copy);
+        assertEquals(0, copy.getPlayCount());
+
+        assertEquals(404, send("DELETE", "/songs?id=" + copy.getId(), null).statusCode());
+        assertNotNull(service.getLibrary().findSong("Flowers", "Miley Cyrus", 2023));
+        assertEquals(10, service.getLibrary().size());
+    }
+
+    /** Tests the filter, shuffle and history endpoints. */
+    @Test
+    void testQueries() throws Exception {
+        HttpResponse<String> popular = send("GET", "/songs/popular?minPlays=1000000000", null);
+        assertEquals(200, popular.statusCode());
+        assertTrue(popular.body().startsWith("[{") && popular.body().contains("Blinding Lights"));
+        List<Song> ranked = service.filterSongsByPlays(0);
+        String page = send("GET", "/songs/popular?minPlays=0&offset=1&limit=2", null).body();
+        assertEquals(Json.appendSongs(new StringBuilder(), ranked.subList(1, 3)).toString(), page);
+        assertEquals(400, send("GET", "/songs/popular?minPlays=0&limit=1001", null).statusCode());
+        assertEquals(400, send("GET", "/songs/popular?minPlays=0&offset=-1", null).statusCode());
+
+        assertEquals("{\"shuffled\":true}", send("POST", "/shuffle", null).body());
+        assertTrue(service.getLibrary().isShuffled());
+
+        send("POST", "/play?title=Flowers&artist=Miley+Cyrus&year=2023", null);
+        HttpResponse<String> history = send("GET", "/history?limit=3", null);
+        assertTrue(history.body().contains("\"title\":\"Flowers\""));
+        HttpResponse<String> trending = send("GET", "/songs/trending?window=1h&limit=1", null);
+        assertEquals(200, trending.statusCode());
+        assertTrue(trending.body().startsWith("[{") && trending.body().contains("\"title\":\"Flowers\""));
+        assertEquals(400, send("GET", "/songs/trending?window=1y", null).statusCode());
+    }
+
+    /** Tests error responses for bad requests, unknown paths and wrong methods. */
+    @Test
+    void testErrors() throws Exception {
+        HttpResponse<String> bad = send("POST", "/songs", "{\"title\":\"No Artist\"}");
+        assertEquals(400, bad.statusCode());
+        assertEquals("{\"error\":\"artist must be a string\"}", bad.body());
+        assertEquals(400, send("GET", "/songs/popular?minPlays=lots", null).statusCode());
+        assertEquals(404, send("GET", "/nowhere", null).statusCode());
+        assertEquals(405, send("GET", "/shuffle", null).statusCode());
+        assertEquals(400, send("POST", "/songs", "{\"title\":\"T\",\"artist\":\"A\",\"year\":4294969320}")
+                .statusCode());
+        assertEquals(400, send("POST", "/play?title=Unholy&artist=Sam+Smith&year=4294969318", null).statusCode());
+        assertEquals(413, send("POST", "/songs", "{\"title\":\"" + "x".repeat(20_000) + "\",\"artist\":\"A\"}")
+                .statusCode());
+        assertEquals(200, send("GET", "/history", null).statusCode());
+    }
+
+    /** Tests that an unexpected failure inside the service becomes a 500 response. */
+    @Test
+    void testInternalError(@TempDir Path dataDir) throws Exception {
+        MusicStreamingService closed = MusicStreamingService.open(dataDir, PlayJournal.SyncPolicy.NEVER);
+        closed.initialiseDefaultSongs();
+        closed.close();
+        try (MusicHttpServer failing = new MusicHttpServer(closed, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            failing.start();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + failing.getAddress().getPort()
+                    + "/play?title=Unholy&artist=Sam+Smith&year=2022")).POST(HttpRequest.BodyPublishers.noBody()).build();
+
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(500, response.statusCode());
+            assertEquals("{\"error\":\"Internal error\"}", response.body());
+        }
+    }
+
+    /** Tests that many plays sent at once are all counted. */
+    @Test
+    void testConcurrentPlays() throws Exception {
+        Song song = service.getLibrary().findSong("Unholy", "Sam Smith", 2022);
+        long before = song.getPlayCount();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/play?title=Unholy&artist=Sam+Smith&year=2022"))
+                .POST(HttpRequest.BodyPublishers.noBody()).build();
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.get().statusCode());
+        }
+
+        assertEquals(before + 200, song.getPlayCount());
+    }
+}
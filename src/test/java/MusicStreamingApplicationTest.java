@@ -1,8 +1,11 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Path;
 import java.util.Scanner;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -33,6 +36,23 @@ public class MusicStreamingApplicationTest {
         app = new MusicStreamingApplication(new Scanner(inContent), service);
     }
 
+    /** Tests that showing the menu for a restored library leaves the saved snapshot undecoded. */
+    @Test
+    void testMenuKeepsSnapshotUnloaded(@TempDir Path dataDir) throws IOException {
+        try (MusicStreamingService saved = MusicStreamingService.open(dataDir, PlayJournal.SyncPolicy.INTERVAL)) {
+            saved.initialiseDefaultSongs();
+            saved.compactJournal();
+        }
+        try (MusicStreamingService restored = MusicStreamingService.open(dataDir, PlayJournal.SyncPolicy.INTERVAL)) {
+            service = restored;
+            setInput(EXIT_OPTION + "\n");
+            app.run();
+
+            assertTrue(outContent.toString().contains("6. Toggle shuffle (OFF)"));
+            assertFalse(restored.isLoaded());
+        }
+    }
+
     /** Tests playing a song with valid a input, ensuring play count increases. */
     @Test
     void testPlaySongValidInput() {
@@ -89,6 +109,20 @@ public class MusicStreamingApplicationTest {
         assertTrue(output.contains("Exiting Music Streaming App..."));
     }
 
+    /** Tests that adding a song already in the library says so instead of reporting it added. */
+    @Test
+    void testAddDuplicateSong() {
+        service.initialiseDefaultSongs();
+        setInput("1\nFlowers\nMiley Cyrus\n1\n2023\nPop\n" + EXIT_OPTION + "\n");
+
+        app.run();
+
+        String output = outContent.toString();
+        assertTrue(output.contains("Song already in library: Flowers"));
+        assertFalse(output.contains("Added: "));
+        assertEquals(10, service.getLibrary().size());
+    }
+
     /** Tests removing a song from the library. */
     @Test
     void testRunProcessesRemoveSong() {
@@ -183,4 +217,54 @@ public class MusicStreamingApplicationTest {
         assertTrue(output.contains("Added: Valid Title                  by Valid Artist 500 (2023)    Pop"));
         assertTrue(output.contains("Exiting Music Streaming App..."));
     }
-}
\ No newline at end of file
+
+    /** Tests searching songs from the menu. */
+    @Test
+    void testRunProcessesSearchSongs() {
+        setInput("9\nswift mid\n9\nnothing\n" + EXIT_OPTION + "\n");
+
+        app.run();
+
+        String output = outContent.toString();
+
+        assertTrue(output.contains("Songs matching 'swift mid':"));
+        assertTrue(output.contains("1. Midnight Rain"));
+        assertTrue(output.contains("No songs found."));
+        assertTrue(output.contains("Exiting Music Streaming App..."));
+    }
+
+    /** Tests showing service metrics from the menu. */
+    @Test
+    void testRunProcessesShowMetrics() {
+        setInput("5\n1\n10\n" + EXIT_OPTION + "\n");
+
+        app.run();
+
+        String output = outContent.toString();
+
+        assertTrue(output.contains("Service Metrics (latency in microseconds):"));
+        assertTrue(output.contains("p99.9"));
+        assertTrue(output.matches("(?s).*PLAY +1 .*"));
+        assertTrue(output.matches("(?s).*ADD +10 .*"));
+    }
+
+    /** Tests paging through a library larger than one page and choosing a song from a later page. */
+    @Test
+    void testPagedListingAndSelection() {
+        service.initialiseDefaultSongs();
+        for (int i = 0; i < 30; i++) {
+            service.addSong(new Song("Extra " + i, "Artist", i, 2020, "Pop"));
+        }
+        setInput("3\nn\n1\n\n5\nn\nn\n35\n" + EXIT_OPTION + "\n");
+
+        app.run();
+
+        String output = outContent.toString();
+
+        assertTrue(output.contains("Page 1 of 2"));
+        assertTrue(output.contains("Page 2 of 2"));
+        assertTrue(output.contains("21. Extra 10"));
+        assertTrue(output.contains("Playing: Extra 24"));
+        assertTrue(output.contains("Exiting Music Streaming App..."));
+    }
+}
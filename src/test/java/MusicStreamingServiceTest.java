@@ -1,6 +1,12 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -10,6 +16,9 @@ public class MusicStreamingServiceTest {
 
     private MusicStreamingService service;
 
+    @TempDir
+    Path dataDir;
+
     /** Sets up a fresh service instance before each test. */
     @BeforeEach
     void setUp() {
@@ -34,6 +43,24 @@ public class MusicStreamingServiceTest {
         assertTrue(service.getLibrary().getSongs().contains(song));
     }
 
+    /** Tests adding a batch large enough to be indexed in parallel, skipping songs already in the library. */
+    @Test
+    void testAddSongs() {
+        service.initialiseDefaultSongs();
+        List<Song> batch = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            batch.add(new Song("Batch Song " + i, "Batch Artist", i, 2015, i % 2 == 0 ? "Jazz" : null));
+        }
+        batch.add(new Song("Flowers", "Miley Cyrus", 1, 2023, "Pop"));
+        List<Song> added = service.addSongs(batch);
+
+        assertEquals(2000, added.size());
+        assertEquals(2010, service.getLibrary().size());
+        assertEquals(1, service.search("batch song 1999", 5).size());
+        assertEquals(batch.get(1998), service.topSongs("Jazz", 1).get(0));
+        assertEquals(2000, service.countSongs(new SongQuery().artists("Batch Artist")));
+    }
+
     /** Tests removing a song from the library. */
     @Test
     void testRemoveSong() {
@@ -55,6 +82,20 @@ public class MusicStreamingServiceTest {
         filtered.forEach(s -> assertTrue(s.getPlayCount() >= 100000000));
     }
 
+    /** Tests that filtering reflects plays made after the songs were added. */
+    @Test
+    void testFilterSongsByPlaysAfterPlay() {
+        Song song = new Song("New Song", "New Artist", 9, 2023, "Jazz");
+        service.addSong(song);
+
+        assertEquals(0, service.countSongsByPlays(10));
+
+        service.playSong(0);
+
+        assertEquals(1, service.countSongsByPlays(10));
+        assertTrue(service.filterSongsByPlays(10).contains(song));
+    }
+
     /** Tests playing a song and incrementing its play count. */
     @Test
     void testPlaySong() {
@@ -67,6 +108,168 @@ public class MusicStreamingServiceTest {
         assertEquals(initialPlayCount + 1, song.getPlayCount());
     }
 
+    /** Tests playing a song by identity rather than position. */
+    @Test
+    void testPlaySongBySong() {
+        service.initialiseDefaultSongs();
+        Song song = service.getLibrary().getSong(3);
+        long initialPlayCount = song.getPlayCount();
+
+        assertTrue(service.playSong(new Song(song.getTitle(), song.getArtist(), 0, song.getYear(), song.getGenre())));
+        assertFalse(service.playSong(new Song("Missing", "Nobody", 0, 2020, "Pop")));
+
+        assertEquals(initialPlayCount + 1, song.getPlayCount());
+        assertEquals(song, service.getPlaybackHistory().get(0));
+    }
+
+    /** Tests that ids keep naming the same song while shuffling and removals move songs around. */
+    @Test
+    void testSongsById() {
+        service.initialiseDefaultSongs();
+        Song song = service.getLibrary().getSong(5);
+        long initialPlayCount = song.getPlayCount();
+        service.removeSong(service.getLibrary().getSong(0));
+        service.toggleShuffle();
+
+        assertSame(song, service.getSongById(song.getId()));
+        assertTrue(service.playSongById(song.getId()));
+        assertEquals(initialPlayCount + 1, song.getPlayCount());
+        assertSame(song, service.removeSongById(song.getId()));
+        assertFalse(service.playSongById(song.getId()));
+        assertNull(service.removeSongById(song.getId()));
+        assertFalse(service.getLibrary().contains(song));
+        assertTrue(service.topSongs(20).stream().noneMatch(top -> top == song));
+        assertEquals(8, service.getLibrary().size());
+    }
+
+    /** Tests that plays feed the trending windows and removed songs leave them. */
+    @Test
+    void testTrendingSongs() {
+        service.initialiseDefaultSongs();
+        Song first = service.getLibrary().getSong(8);
+        Song second = service.getLibrary().getSong(2);
+        service.playSong(first);
+        service.playSong(second);
+        service.playSong(first);
+
+        assertEquals(List.of(first, second), service.trendingSongs(TrendingTracker.Window.HOUR, 5));
+        assertEquals(2, service.getRecentPlays(first, TrendingTracker.Window.WEEK));
+        service.removeSong(first);
+        assertEquals(List.of(second), service.trendingSongs(TrendingTracker.Window.DAY, 5));
+    }
+
+    /** Tests that plays from many threads are all counted and the history stays within its limit. */
+    @Test
+    void testConcurrentPlaySong() throws InterruptedException {
+        service.initialiseDefaultSongs();
+        Song song = service.getLibrary().getSong(0);
+        long initialPlayCount = song.getPlayCount();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    service.playSong(0);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(initialPlayCount + 40000, song.getPlayCount());
+        assertEquals(5, service.getPlaybackHistory().size());
+        assertEquals(10, service.countSongsByPlays(0));
+    }
+
+    /** Tests that removing an equal copy of a song drops the library's own song from the attribute index. */
+    @Test
+    void testRemoveEqualCopy() {
+        service.initialiseDefaultSongs();
+        int pop = service.countSongs(new SongQuery().genres("Pop"));
+
+        assertTrue(service.removeSong(new Song("Flowers", "Miley Cyrus", 0, 2023, "Pop")));
+        assertEquals(pop - 1, service.countSongs(new SongQuery().genres("Pop")));
+        for (Song song : service.findSongs(new SongQuery().genres("Pop"))) {
+            assertNotEquals("Flowers", song.getTitle());
+        }
+        assertEquals(9, service.countSongsByPlays(0));
+    }
+
+    /** Tests that concurrent changes keep the indexes in step with the library while readers and plays carry on. */
+    @Test
+    void testConcurrentChangesAndReads() throws InterruptedException {
+        service.initialiseDefaultSongs();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[6];
+        for (int t = 0; t < threads.length; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 500; i++) {
+                        Song song = new Song("Song " + i, "Artist", i, 2020, "Pop");
+                        if (thread < 2) {
+                            service.addSong(song); // Both writers add the same songs
+                            if (i % 3 == 0) {
+                                service.removeSong(song);
+                            }
+                        } else if (thread == 2) {
+                            service.toggleShuffle();
+                            service.playSong(Song.key("Flowers", "Miley Cyrus", 2023));
+                        } else {
+                            assertTrue(service.filterSongsByPlays(0).size() >= 10);
+                            assertFalse(service.getLibrary().getSongs().contains(null));
+                            assertTrue(service.getPlaybackHistory().size() <= 5);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        int size = service.getLibrary().size();
+        assertEquals(size, service.countSongsByPlays(0));
+        assertEquals(size, service.getLibrary().getSongs().size());
+        assertEquals(service.getLibrary().contains(Song.key("Song 3", "Artist", 2020)),
+                !service.search("song 3", 10).isEmpty());
+    }
+
+    /** Tests that playing by position while songs are removed never reads past the end of the library. */
+    @Test
+    void testPlayByIndexDuringRemovals() throws InterruptedException {
+        service.initialiseDefaultSongs();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                Song song = new Song("Song " + i, "Artist", 0, 2020, "Pop");
+                service.addSong(song);
+                service.removeSong(song);
+            }
+        });
+        Thread player = new Thread(() -> {
+            try {
+                while (writer.isAlive()) {
+                    service.playSong(service.getSongCount() - 1);
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+        writer.start();
+        player.start();
+        writer.join();
+        player.join();
+
+        assertNull(failure.get());
+        assertEquals(10, service.getSongCount());
+    }
+
     /** Tests toggling shuffle mode on and off. */
     @Test
     void testToggleShuffle() {
@@ -101,4 +304,282 @@ public class MusicStreamingServiceTest {
         }
         assertEquals(5, service.getPlaybackHistory().size());
     }
-}
\ No newline at end of file
+
+    /** Tests a configurable history depth and that removed songs drop out of the history. */
+    @Test
+    void testConfigurableHistoryDepth() {
+        service = new MusicStreamingService(500);
+        service.initialiseDefaultSongs();
+        for (int i = 0; i < 600; i++) {
+            service.playSong(i % service.getLibrary().size());
+        }
+        assertEquals(500, service.getPlaybackHistory().size());
+
+        Song removed = service.getLibrary().getSong(0);
+        service.removeSong(removed);
+
+        assertFalse(service.getPlaybackHistory().contains(removed));
+        assertEquals(3, service.getPlaybackHistory(3).size());
+
+        service.addSong(new Song(removed.getTitle(), removed.getArtist(), 0, removed.getYear(), removed.getGenre()));
+        assertTrue(service.getPlaybackHistory().stream().noneMatch(song -> song == removed));
+    }
+
+    /** Tests that a persistent service keeps its library and play counts across a restart. */
+    @Test
+    void testOpenRecoversPlaysAfterRestart() throws IOException {
+        Song played;
+        try (MusicStreamingService persistent = MusicStreamingService.open(dataDir, PlayJournal.SyncPolicy.EVERY_BATCH)) {
+            persistent.initialiseDefaultSongs();
+            played = persistent.getLibrary().getSong(2);
+            persistent.playSong(2);
+            persistent.removeSong(persistent.getLibrary().getSong(0));
+            persistent.compactJournal();
+            persistent.playSong(1);
+        }
+
+        try (MusicStreamingService restarted = MusicStreamingService.open(dataDir, PlayJournal.SyncPolicy.EVERY_BATCH)) {
+            assertEquals(9, restarted.getLibrary().size());
+            Song recovered = restarted.getLibrary().findSong(played.getTitle(), played.getArtist(), played.getYear());
+            assertEquals(played.getPlayCount(), recovered.getPlayCount());
+        }
+    }
+
+    /** Tests that a service saved in one snapshot reopens with its history before the library is decoded. */
+    @Test
+    void testOpenRestoresHistory() throws IOException {
+        try (MusicStreamingService persistent = MusicStreamingService.open(dataDir, PlayJournal.SyncPolicy.INTERVAL)) {
+            persistent.initialiseDefaultSongs();
+            persistent.playSong(4);
+            persistent.playSong(7);
+            persistent.compactJournal();
+        }
+
+        try (MusicStreamingService restarted = MusicStreamingService.open(dataDir, PlayJournal.SyncPolicy.INTERVAL)) {
+            assertEquals(10, restarted.getSongCount());
+            List<Song> history = restarted.getPlaybackHistory();
+            assertEquals(List.of("As It Was", "Golden Hour"), List.of(history.get(0).getTitle(), history.get(1).getTitle()));
+            assertEquals(2, history.size());
+
+            Song golden = restarted.getLibrary().findSong("Golden Hour", "JVKE", 2022);
+            assertSame(history.get(1), golden);
+            assertEquals(45678913, golden.getPlayCount());
+            assertEquals(golden, restarted.topSongs("Pop", 10).get(4));
+            assertTrue(restarted.playSong(golden));
+            assertEquals(golden, restarted.getPlaybackHistory().get(0));
+        }
+    }
+
+    /** Tests that plays of songs made while they are being added are journaled after their adds. */
+    @Test
+    void testJournalKeepsPlaysAfterAdds() throws IOException, InterruptedException {
+        List<Song> songs = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            songs.add(new Song("Song " + i, "Artist", 0, 2020, "Pop"));
+        }
+        try (MusicStreamingService persistent = MusicStreamingService.open(dataDir, PlayJournal.SyncPolicy.NEVER)) {
+            Thread player = new Thread(() -> {
+                for (Song song : songs) {
+                    while (!persistent.playSongById(song.getId())) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            player.start();
+            songs.forEach(persistent::addSong);
+            player.join();
+        }
+
+        try (MusicStreamingService restarted = MusicStreamingService.open(dataDir, PlayJournal.SyncPolicy.NEVER)) {
+            for (Song song : restarted.getLibrary().getSongs()) {
+                assertEquals(1, song.getPlayCount(), song.getTitle());
+            }
+            assertEquals("Song 1999", restarted.getPlaybackHistory().get(0).getTitle());
+        }
+    }
+
+    /** Tests that search follows songs as they are added to and removed from the library. */
+    @Test
+    void testSearchFollowsLibraryChanges() {
+        service.initialiseDefaultSongs();
+
+        assertEquals("Anti-Hero", service.search("taylor swift", 10).get(0).getTitle());
+        assertEquals(2, service.search("taylor swift", 10).size());
+        assertEquals("Heat Waves", service.autocomplete("glass an", 10).get(0).getTitle());
+
+        service.removeSong(service.search("heat waves", 1).get(0));
+        Song added = new Song("Heat Above", "Glass Animals", 1, 2024, "Indie");
+        service.addSong(added);
+
+        assertEquals(Arrays.asList(added), service.autocomplete("glass an", 10));
+        assertEquals(Arrays.asList("heat"), service.suggestWords("hea", 10));
+    }
+
+    /** Tests overall and per genre top songs as songs are played and removed. */
+    @Test
+    void testTopSongs() {
+        service.initialiseDefaultSongs();
+
+        assertEquals("Blinding Lights", service.topSongs(1).get(0).getTitle());
+        assertEquals(3, service.topSongs(3).size());
+        List<Song> pop = service.topSongs("Pop", 10);
+        assertEquals(6, pop.size());
+        assertEquals("Flowers", pop.get(0).getTitle());
+        assertEquals("Midnight Rain", pop.get(5).getTitle());
+        assertTrue(service.topSongs("Jazz", 10).isEmpty());
+
+        Song indie = service.topSongs("Indie", 1).get(0);
+        service.removeSong(indie);
+        Song rising = new Song("Rising", "Band", 0, 2024, "Indie");
+        service.addSong(rising);
+        service.playSong(rising);
+
+        assertEquals(Arrays.asList(rising), service.topSongs("Indie", 10));
+    }
+
+    /** Tests that every timed operation is counted. */
+    @Test
+    void testMetricsCountOperations() {
+        service.initialiseDefaultSongs();
+        service.playSong(0);
+        service.playSong(new Song("Unknown", "Nobody", 0, 2020, "Pop"));
+        service.filterSongsByPlays(100);
+        service.countSongsByPlays(100);
+        service.toggleShuffle();
+        service.removeSong(service.getLibrary().getSong(0));
+        service.search("swift", 5);
+        service.autocomplete("sw", 5);
+        service.trendingSongs(TrendingTracker.Window.HOUR, 5);
+
+        ServiceMetrics metrics = service.getMetrics();
+
+        assertEquals(10, metrics.snapshot(ServiceMetrics.Operation.ADD).getCount());
+        assertEquals(2, metrics.snapshot(ServiceMetrics.Operation.PLAY).getCount());
+        assertEquals(2, metrics.snapshot(ServiceMetrics.Operation.FILTER).getCount());
+        assertEquals(1, metrics.snapshot(ServiceMetrics.Operation.SHUFFLE).getCount());
+        assertEquals(1, metrics.snapshot().get(ServiceMetrics.Operation.REMOVE).getCount());
+        assertEquals(2, metrics.snapshot(ServiceMetrics.Operation.SEARCH).getCount());
+        assertEquals(1, metrics.snapshot(ServiceMetrics.Operation.TRENDING).getCount());
+        assertTrue(metrics.snapshot(ServiceMetrics.Operation.ADD).getMax() > 0);
+    }
+
+    /** Tests playing through a play queue, skipping queued songs removed from the library. */
+    @Test
+    void testPlayQueue() {
+        service.initialiseDefaultSongs();
+        PlayQueue queue = service.newPlayQueue();
+        List<Song> songs = service.getLibrary().getSongs();
+        long plays = songs.get(0).getPlayCount();
+
+        assertSame(songs.get(0), service.playNext(queue));
+        assertEquals(plays + 1, songs.get(0).getPlayCount());
+        assertSame(songs.get(0), service.getPlaybackHistory().get(0));
+
+        Song removed = songs.get(5);
+        queue.enqueue(removed);
+        queue.enqueue(songs.get(3));
+        service.removeSong(removed);
+        service.addSong(new Song(removed.getTitle(), removed.getArtist(), 0, removed.getYear(), removed.getGenre()));
+        assertSame(songs.get(3), service.playNext(queue)); // The removed song is skipped though an equal one is back
+        assertSame(songs.get(1), service.playNext(queue));
+        assertSame(songs.get(0), service.playPrevious(queue));
+        assertEquals(plays + 2, songs.get(0).getPlayCount());
+    }
+
+    /** Tests that users keep separate playlists and histories over the shared library songs. */
+    @Test
+    void testUsersShareLibrarySongs() {
+        service.initialiseDefaultSongs();
+        User alex = service.createUser("Alex");
+        User sam = service.createUser("Sam");
+        Song flowers = service.getLibrary().findSong("Flowers", "Miley Cyrus", 2023);
+        long plays = flowers.getPlayCount();
+
+        alex.createPlaylist("Favourites");
+        assertTrue(service.addToPlaylist(alex.getId(), "Favourites", Song.key("Flowers", "Miley Cyrus", 2023)));
+        assertFalse(service.addToPlaylist(alex.getId(), "Favourites", new Song("Missing", "Nobody", 0, 2020, "Pop")));
+        assertSame(flowers, alex.getPlaylistSongs("Favourites").get(0));
+
+        assertTrue(service.playSong(alex.getId(), flowers));
+        assertTrue(service.playSong(sam.getId(), flowers));
+
+        assertEquals(plays + 2, flowers.getPlayCount());
+        assertEquals(Arrays.asList(flowers), service.getPlaybackHistory(alex.getId(), 5));
+        assertEquals(Arrays.asList(flowers, flowers), service.getPlaybackHistory(2));
+
+        service.removeSong(flowers);
+        assertTrue(service.getPlaybackHistory(sam.getId(), 5).isEmpty());
+        assertFalse(service.playSong(sam.getId(), flowers));
+        service.addSong(new Song("Flowers", "Miley Cyrus", 0, 2023, "Pop"));
+        assertTrue(service.getPlaybackHistory(alex.getId(), 5).isEmpty()); // The equal song re-added was not played
+
+        assertEquals(2, service.getUserCount());
+        assertSame(sam, service.getUser(sam.getId()));
+        assertTrue(service.removeUser(sam.getId()));
+        assertNull(service.getUser(sam.getId()));
+        assertThrows(IllegalArgumentException.class, () -> service.playSong(sam.getId(), flowers));
+    }
+
+    /** Tests that a lookup key, which has no id of its own, is refused before the library changes. */
+    @Test
+    void testLookupKeyLeavesLibraryUnchanged() {
+        service.initialiseDefaultSongs();
+        Song key = Song.key("Lookup", "Miley Cyrus", 2023); // Lookup keys carry id 0
+
+        assertThrows(IllegalArgumentException.class, () -> service.addSong(key));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.addSongs(List.of(new Song("Fine", "Artist", 0, 2020, "Pop"), key)));
+        assertEquals(10, service.getLibrary().size());
+        assertNull(service.getLibrary().findSong("Lookup", "Miley Cyrus", 2023));
+        assertNull(service.getLibrary().findSong("Fine", "Artist", 2020));
+        assertTrue(service.search("lookup", 5).isEmpty());
+    }
+
+    /** Tests user playlists through the service, and that removing a library song removes it from them. */
+    @Test
+    void testUserPlaylists() {
+        service.initialiseDefaultSongs();
+        long alex = service.createUser("Alex").getId();
+        Song flowers = service.getLibrary().findSong("Flowers", "Miley Cyrus", 2023);
+        Song levitating = service.getLibrary().findSong("Levitating", "Dua Lipa", 2020);
+
+        service.createPlaylist(alex, "Gym");
+        assertEquals(Arrays.asList("Gym"), service.getPlaylistNames(alex));
+        assertTrue(service.addToPlaylist(alex, "Gym", Song.key("Flowers", "Miley Cyrus", 2023)));
+        assertTrue(service.addToPlaylist(alex, "Gym", levitating));
+        service.setPlaylistShuffle(alex, "Gym", true);
+        assertTrue(service.isPlaylistShuffled(alex, "Gym"));
+        assertEquals(2, service.getPlaylistSongs(alex, "Gym").size());
+
+        assertTrue(service.removeSong(flowers));
+        assertEquals(Arrays.asList(levitating), service.getPlaylistSongs(alex, "Gym"));
+        assertTrue(service.addSong(new Song("Flowers", "Miley Cyrus", 1, 2023, "Pop")));
+        assertEquals(Arrays.asList(levitating), service.getPlaylistSongs(alex, "Gym"));
+
+        assertTrue(service.removeFromPlaylist(alex, "Gym", Song.key("Levitating", "Dua Lipa", 2020)));
+        assertTrue(service.getPlaylistSongs(alex, "Gym").isEmpty());
+        assertTrue(service.removePlaylist(alex, "Gym"));
+        assertThrows(IllegalArgumentException.class, () -> service.getPlaylistSongs(alex, "Gym"));
+        assertThrows(IllegalArgumentException.class, () -> service.createPlaylist(alex + 1, "Gym"));
+    }
+
+    /** Tests compound queries through the service as songs are added and removed. */
+    @Test
+    void testFindSongs() {
+        service.initialiseDefaultSongs();
+        SongQuery query = new SongQuery().genres("Pop").years(2020, 2022).artists("Taylor Swift").minPlays(1_000_000);
+
+        List<Song> found = service.findSongs(query);
+        assertEquals(2, found.size());
+        assertEquals("Midnight Rain", found.get(0).getTitle());
+
+        service.removeSong(found.get(0));
+        service.addSong(new Song("Karma", "Taylor Swift", 2_000_000, 2022, "Pop"));
+        service.addSong(new Song("Old Song", "Taylor Swift", 2_000_000, 2006, "Pop"));
+
+        assertEquals(2, service.countSongs(query));
+        assertEquals("Karma", service.findSongs(query).get(1).getTitle());
+        assertEquals(11, service.countSongs(new SongQuery()));
+        assertEquals(3, service.findSongs(new SongQuery().minPlays(500_000_000)).size());
+    }
+}
@@ -0,0 +1,104 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the PlayCountIndex class, verifying range queries and updates on play.
+ */
+public class PlayCountIndexTest {
+
+    private PlayCountIndex index;
+    private Song quiet;
+    private Song popular;
+    private Song hit;
+
+    /** Sets up an index holding three songs with different play counts. */
+    @BeforeEach
+    void setUp() {
+        index = new PlayCountIndex();
+        quiet = new Song("Quiet", "Artist", 5, 2020, "Pop");
+        popular = new Song("Popular", "Artist", 50, 2020, "Pop");
+        hit = new Song("Hit", "Artist", 500, 2020, "Pop");
+        index.add(quiet);
+        index.add(popular);
+        index.add(hit);
+    }
+
+    /** Tests that range queries return matching songs, most played first. */
+    @Test
+    void testAtLeast() {
+        assertEquals(List.of(hit, popular), index.atLeast(50));
+        assertEquals(List.of(hit, popular, quiet), index.atLeast(0));
+        assertTrue(index.atLeast(501).isEmpty());
+    }
+
+    /** Tests count only queries. */
+    @Test
+    void testCountAtLeast() {
+        assertEquals(3, index.countAtLeast(5));
+        assertEquals(2, index.countAtLeast(6));
+        assertEquals(0, index.countAtLeast(1000));
+    }
+
+    /** Tests that a play moves the song to its new position. */
+    @Test
+    void testIncrementPlayCountUpdatesIndex() {
+        assertEquals(1, index.countAtLeast(51));
+
+        popular.incrementPlayCount();
+
+        assertEquals(2, index.countAtLeast(51));
+        assertEquals(List.of(hit, popular), index.atLeast(51));
+    }
+
+    /** Tests that removed songs leave the index and no longer update it. */
+    @Test
+    void testRemove() {
+        assertTrue(index.remove(hit));
+        assertFalse(index.remove(hit));
+
+        hit.incrementPlayCount();
+
+        assertEquals(2, index.size());
+        assertEquals(List.of(popular, quiet), index.atLeast(0));
+    }
+
+    /** Tests that songs sharing a play count are all kept. */
+    @Test
+    void testEqualPlayCounts() {
+        index.add(new Song("Twin", "Artist", 50, 2020, "Pop"));
+
+        assertEquals(3, index.countAtLeast(50));
+        assertEquals(3, index.atLeast(50).size());
+    }
+
+    /** Tests paging through the songs over a play count, matching slices of the full listing. */
+    @Test
+    void testAtLeastPage() {
+        for (int i = 0; i < 200; i++) {
+            index.add(new Song("Track " + i, "Band", i % 120, 2020, "Rock"));
+        }
+        List<Song> all = index.atLeast(30);
+        for (int offset = 0; offset <= all.size() + 5; offset += 7) {
+            int to = Math.min(all.size(), offset + 10);
+            assertEquals(all.subList(Math.min(offset, to), to), index.atLeast(30, offset, 10), "offset " + offset);
+        }
+        assertEquals(List.of(hit), index.atLeast(200, 0, 5));
+        assertTrue(index.atLeast(30, 0, 0).isEmpty());
+    }
+
+    /** Tests top-K queries, including after plays reorder the songs. */
+    @Test
+    void testTop() {
+        assertEquals(List.of(hit, popular), index.top(2));
+        assertEquals(List.of(hit, popular, quiet), index.top(10));
+        assertTrue(index.top(0).isEmpty());
+
+        for (int i = 0; i < 46; i++) {
+            quiet.incrementPlayCount();
+        }
+
+        assertEquals(List.of(hit, quiet), index.top(2));
+    }
+}
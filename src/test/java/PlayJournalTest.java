@@ -0,0 +1,176 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the PlayJournal class, verifying replay, compaction and recovery from a torn record.
+ */
+public class PlayJournalTest {
+
+    @TempDir
+    Path dir;
+
+    /** Tests that added, removed and played songs are replayed in order. */
+    @Test
+    void testRecoverReplaysRecords() throws IOException {
+        Song kept = new Song("Kept", "Artist", 10, 2020, "Pop");
+        Song removed = new Song("Removed", "Artist", 0, 2020, "Rock");
+        try (PlayJournal journal = new PlayJournal(dir, PlayJournal.SyncPolicy.NEVER)) {
+            journal.recordAdd(kept);
+            journal.recordAdd(removed);
+            journal.recordPlay(kept);
+            journal.recordPlay(kept);
+            journal.recordRemove(removed);
+        }
+
+        List<Song> songs = PlayJournal.recover(dir);
+
+        assertEquals(List.of(kept), songs);
+        assertEquals(12, songs.get(0).getPlayCount());
+        assertEquals("Pop", songs.get(0).getGenre());
+    }
+
+    /** Tests that compaction folds the journal into a snapshot and later records replay on top of it. */
+    @Test
+    void testCompactThenRecover() throws IOException {
+        Song song = new Song("Song", "Artist", 0, 2020, "Pop");
+        try (PlayJournal journal = new PlayJournal(dir, PlayJournal.SyncPolicy.EVERY_BATCH)) {
+            journal.recordAdd(song);
+            journal.recordPlay(song);
+            journal.compact();
+            journal.recordPlay(song);
+        }
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.anyMatch(file -> file.getFileName().toString().startsWith("snapshot-")));
+        }
+        assertEquals(2, PlayJournal.recover(dir).get(0).getPlayCount());
+    }
+
+    /** Tests that recent plays survive compaction and replay, most recent first, leaving out removed songs. */
+    @Test
+    void testHistoryIsSaved() throws IOException {
+        Song first = new Song("First", "Artist", 0, 2020, "Pop");
+        Song second = new Song("Second", "Artist", 0, 2020, "Pop");
+        Song removed = new Song("Removed", "Artist", 0, 2020, "Pop");
+        try (PlayJournal journal = new PlayJournal(dir, PlayJournal.SyncPolicy.EVERY_BATCH)) {
+            journal.recordAdd(first);
+            journal.recordAdd(second);
+            journal.recordAdd(removed);
+            journal.recordPlay(first);
+            journal.recordPlay(removed);
+            journal.compact();
+            journal.recordPlay(second);
+            journal.recordRemove(removed);
+        }
+
+        PlayJournal.SavedLibrary replayed = PlayJournal.load(dir);
+        assertNull(replayed.getCatalog());
+        assertEquals(List.of("Second", "First"), titles(replayed.getHistory()));
+        assertEquals(2, replayed.size());
+
+        try (PlayJournal journal = new PlayJournal(dir, PlayJournal.SyncPolicy.EVERY_BATCH)) {
+            journal.compact();
+        }
+        PlayJournal.SavedLibrary snapshot = PlayJournal.load(dir);
+        assertNotNull(snapshot.getCatalog());
+        assertTrue(snapshot.getSongs().isEmpty());
+        assertEquals(2, snapshot.size());
+        assertEquals(List.of("Second", "First"), titles(snapshot.getHistory()));
+        assertSame(snapshot.getHistory().get(0), snapshot.getSong(1));
+        assertEquals(1, snapshot.getSong(0).getPlayCount());
+    }
+
+    /** returns the titles of songs, in order */
+    private static List<String> titles(List<Song> songs) {
+        return songs.stream().map(Song::getTitle).collect(Collectors.toList());
+    }
+
+    /** Tests that a record torn by a crash is ignored and earlier records are kept. */
+    @Test
+    void testRecoverIgnoresTornRecord() throws IOException {
+        Song song = new Song("Song", "Artist", 0, 2020, "Pop");
+        try (PlayJournal journal = new PlayJournal(dir, PlayJournal.SyncPolicy.INTERVAL)) {
+            journal.recordAdd(song);
+            journal.recordPlay(song);
+            journal.flush();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            Path segment = files.filter(file -> file.getFileName().toString().startsWith("journal-")).findFirst().get();
+            Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+        }
+
+        List<Song> songs = PlayJournal.recover(dir);
+
+        assertEquals(1, songs.size());
+        assertEquals(1, songs.get(0).getPlayCount());
+    }
+
+    /** Tests that a directory without a journal recovers an empty library. */
+    @Test
+    void testRecoverEmptyDirectory() throws IOException {
+        assertTrue(PlayJournal.recover(dir.resolve("missing")).isEmpty());
+    }
+
+    /** Tests that closing leaves the segments, and the next open folds them into a snapshot in the background. */
+    @Test
+    void testOpenCompactsWhatCloseLeft() throws IOException, InterruptedException {
+        Song song = new Song("Song", "Artist", 0, 2020, "Pop");
+        try (PlayJournal journal = new PlayJournal(dir, PlayJournal.SyncPolicy.INTERVAL)) {
+            journal.recordAdd(song);
+            journal.recordPlay(song);
+        }
+        assertTrue(names().stream().noneMatch(name -> name.startsWith("snapshot-")));
+
+        try (PlayJournal journal = new PlayJournal(dir, PlayJournal.SyncPolicy.INTERVAL)) {
+            for (int i = 0; i < 500 && !names().contains("snapshot-1.cat"); i++) {
+                Thread.sleep(10);
+            }
+            assertTrue(names().contains("snapshot-1.cat"));
+        }
+        assertNotNull(PlayJournal.load(dir).getCatalog());
+        assertEquals(1, PlayJournal.recover(dir).get(0).getPlayCount());
+    }
+
+    /** Tests that records queued faster than the writer drains them are all kept once the queue fills up. */
+    @Test
+    void testFullQueueKeepsRecords() throws IOException {
+        Song song = new Song("Song", "Artist", 0, 2020, "Pop");
+        long last;
+        try (PlayJournal journal = new PlayJournal(dir, PlayJournal.SyncPolicy.EVERY_BATCH)) {
+            journal.recordAdd(song);
+            last = 0;
+            for (int i = 0; i < 200_000; i++) {
+                long sequence = journal.recordPlay(song);
+                assertTrue(sequence > last);
+                last = sequence;
+            }
+            journal.sync(last);
+        }
+
+        assertEquals(200_000, PlayJournal.recover(dir).get(0).getPlayCount());
+    }
+
+    /** returns the names of the files in the journal directory */
+    private List<String> names() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString()).collect(Collectors.toList());
+        }
+    }
+
+    /** Tests that records are rejected once the journal is closed. */
+    @Test
+    void testClosedJournalRejectsRecords() throws IOException {
+        PlayJournal journal = new PlayJournal(dir, PlayJournal.SyncPolicy.NEVER);
+        journal.close();
+
+        assertThrows(IllegalStateException.class, () -> journal.recordPlay(new Song("Song", "Artist", 0, 2020, "Pop")));
+    }
+}
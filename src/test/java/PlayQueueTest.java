@@ -0,0 +1,174 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the PlayQueue class, verifying next and previous, queued songs and repeat modes.
+ */
+public class PlayQueueTest {
+
+    private Playlist playlist;
+    private Song song1;
+    private Song song2;
+    private Song song3;
+    private PlayQueue queue;
+
+    /** Sets up a playlist of three songs and a queue over it before each test. */
+    @BeforeEach
+    public void setUp() {
+        playlist = new Playlist("Test Playlist");
+        song1 = new Song("First", "Artist", 0, 2020, "Pop");
+        song2 = new Song("Second", "Artist", 0, 2021, "Pop");
+        song3 = new Song("Third", "Artist", 0, 2022, "Rock");
+        playlist.addSong(song1);
+        playlist.addSong(song2);
+        playlist.addSong(song3);
+        queue = new PlayQueue(playlist);
+    }
+
+    /** Tests walking forwards and backwards through the playlist with repeat off. */
+    @Test
+    void testNextAndPrevious() {
+        assertNull(queue.getCurrent());
+        assertSame(song1, queue.next());
+        assertSame(song2, queue.next());
+        assertSame(song3, queue.next());
+        assertNull(queue.next());
+        assertNull(queue.getCurrent());
+
+        assertSame(song3, queue.previous());
+        assertSame(song2, queue.previous());
+        assertSame(song1, queue.previous());
+        assertNull(queue.previous());
+        assertSame(song1, queue.next());
+    }
+
+    /** Tests that repeat all wraps around and repeat one stays on the current song. */
+    @Test
+    void testRepeatModes() {
+        queue.setRepeatMode(PlayQueue.RepeatMode.ALL);
+        assertSame(song3, queue.previous());
+        assertSame(song1, queue.next());
+
+        queue.setRepeatMode(PlayQueue.RepeatMode.ONE);
+        assertSame(song1, queue.next());
+        assertSame(song1, queue.previous());
+        assertEquals(List.of(song1, song1), queue.upcoming(2));
+
+        queue.setRepeatMode(PlayQueue.RepeatMode.ALL);
+        assertEquals(List.of(song2, song3, song1, song2), queue.upcoming(4));
+        assertThrows(IllegalArgumentException.class, () -> queue.setRepeatMode(null));
+    }
+
+    /** Tests that enqueued and play-next songs come before the playlist continues. */
+    @Test
+    void testQueuedSongs() {
+        Song extra = new Song("Extra", "Guest", 0, 2019, "Jazz");
+        assertSame(song1, queue.next());
+        queue.enqueue(extra);
+        queue.playNext(song3);
+        assertEquals(2, queue.getQueuedCount());
+        assertEquals(List.of(song3, extra, song2), queue.upcoming(3));
+
+        assertSame(song3, queue.next());
+        assertSame(extra, queue.next());
+        assertSame(song2, queue.next());
+        assertEquals(0, queue.getQueuedCount());
+
+        queue.enqueue(extra);
+        queue.clearQueued();
+        assertSame(song3, queue.next());
+        assertThrows(IllegalArgumentException.class, () -> queue.enqueue(null));
+    }
+
+    /** Tests that upcoming tracks are read without moving and respect the end of the playlist. */
+    @Test
+    void testUpcoming() {
+        assertEquals(List.of(song1, song2), queue.upcoming(2));
+        assertEquals(List.of(song1, song2, song3), queue.upcoming(10));
+        assertTrue(queue.upcoming(0).isEmpty());
+        assertNull(queue.getCurrent());
+        queue.skipTo(2);
+        assertTrue(queue.upcoming(3).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> queue.skipTo(3));
+    }
+
+    /** Tests that the queue follows the shuffled order and keeps its place when shuffle is toggled. */
+    @Test
+    void testFollowsShuffle() {
+        for (int i = 0; i < 20; i++) {
+            playlist.addSong(new Song("Filler " + i, "Artist", 0, 2000 + i, "Pop"));
+        }
+        playlist.setShuffle(true);
+        List<Song> order = playlist.getSongs();
+        for (Song song : order) {
+            assertSame(song, queue.next());
+        }
+
+        queue.skipTo(5);
+        Song current = queue.getCurrent();
+        playlist.setShuffle(false);
+        List<Song> original = playlist.getSongs();
+        int at = original.indexOf(current);
+        assertSame(at + 1 < original.size() ? original.get(at + 1) : null, queue.next());
+    }
+
+    /** Tests that playback carries on after the current song when the playlist changes. */
+    @Test
+    void testPlaylistChanges() {
+        assertSame(song1, queue.next());
+        playlist.removeSong(song1);
+        assertSame(song2, queue.next());
+
+        Song added = new Song("Fourth", "Artist", 0, 2023, "Pop");
+        playlist.addSong(added);
+        assertSame(song3, queue.next());
+        assertSame(added, queue.next());
+        assertNull(queue.next());
+    }
+    /** Tests that a removed song's equal copy is not mistaken for it when the queue finds its place again. */
+    @Test
+    void testEqualCopyIsNotTheSameTrack() {
+        assertSame(song1, queue.next());
+        assertSame(song2, queue.next());
+        playlist.removeSong(song2);
+        Song copy = new Song("Second", "Artist", 0, 2021, "Pop");
+        playlist.addSong(copy);
+
+        assertEquals(-1, playlist.indexOf(song2));
+        assertSame(song3, queue.next());
+        assertSame(copy, queue.next());
+    }
+
+    /** Tests that each track is handed to the loader once, as it enters the prefetch window. */
+    @Test
+    void testPrefetch() {
+        List<Song> loaded = new ArrayList<>();
+        Song extra = new Song("Extra", "Guest", 0, 2019, "Jazz");
+        PlayQueue prefetching = new PlayQueue(playlist, 2, loaded::add);
+        assertEquals(List.of(song1, song2), loaded);
+        assertEquals(List.of(song1, song2), prefetching.getPrefetched());
+
+        prefetching.next();
+        assertEquals(List.of(song1, song2, song3), loaded);
+        prefetching.playNext(extra);
+        assertEquals(List.of(extra, song2), prefetching.getPrefetched());
+        assertEquals(List.of(song1, song2, song3, extra), loaded);
+
+        prefetching.next(); // Extra plays and song3, pushed out by it, comes back into the window
+        prefetching.next();
+        prefetching.next();
+        assertTrue(prefetching.getPrefetched().isEmpty());
+        prefetching.setRepeatMode(PlayQueue.RepeatMode.ALL);
+        assertEquals(List.of(song1, song2), prefetching.getPrefetched());
+        assertEquals(List.of(song1, song2, song3, extra, song3, song1, song2), loaded);
+
+        Song added = new Song("Fourth", "Artist", 0, 2023, "Pop");
+        prefetching.previous();
+        playlist.addSong(added);
+        assertEquals(List.of(song3, added), prefetching.getPrefetched());
+        assertThrows(IllegalArgumentException.class, () -> new PlayQueue(playlist, -1, song -> { }));
+    }
+}
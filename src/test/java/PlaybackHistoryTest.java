@@ -0,0 +1,85 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the PlaybackHistory class, verifying ring buffer ordering, wrap around and filtering.
+ */
+public class PlaybackHistoryTest {
+
+    private PlaybackHistory history;
+    private Song song1;
+    private Song song2;
+    private Song song3;
+
+    /** Sets up a small history and sample songs before each test. */
+    @BeforeEach
+    void setUp() {
+        history = new PlaybackHistory(3);
+        song1 = new Song("One", "Artist", 0, 2020, "Pop");
+        song2 = new Song("Two", "Artist", 0, 2020, "Pop");
+        song3 = new Song("Three", "Artist", 0, 2020, "Pop");
+    }
+
+    /** Tests that an empty history returns no songs. */
+    @Test
+    void testEmptyHistory() {
+        assertTrue(history.recent(5).isEmpty());
+    }
+
+    /** Tests that plays are returned newest first and limited to the capacity. */
+    @Test
+    void testWrapAround() {
+        history.record(song1);
+        history.record(song2);
+        history.record(song3);
+        history.record(song1);
+
+        assertEquals(List.of(song1, song3, song2), history.recent(10));
+        assertEquals(List.of(song1, song3), history.recent(2));
+        assertEquals(4, history.totalPlays());
+    }
+
+    /** Tests that filtered entries are skipped and older entries fill in behind them. */
+    @Test
+    void testFilter() {
+        history.record(song1);
+        history.record(song2);
+        history.record(song3);
+
+        assertEquals(List.of(song3, song1), history.recent(2, song -> song != song2));
+    }
+
+    /** Tests that threads wrapping the ring onto the same slots never report a song under another play. */
+    @Test
+    void testConcurrentWrapAround() throws InterruptedException {
+        Song[] songs = {song1, song2, song3};
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            Song song = songs[t % songs.length];
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    history.record(song);
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(3, history.recent(3).size()); // Each slot holds its newest play, not an older writer's
+        history.record(song1);
+        history.record(song2);
+        history.record(song3);
+
+        assertEquals(80_003, history.totalPlays());
+        assertEquals(List.of(song3, song2, song1), history.recent(3));
+    }
+
+    /** Tests that a non-positive capacity is rejected. */
+    @Test
+    void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new PlaybackHistory(0));
+    }
+}
@@ -1,5 +1,10 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -41,6 +46,25 @@ public class PlaylistTest {
         assertTrue(playlist.getSongs().contains(song1));
     }
 
+    /** Tests adding a batch in one change, skipping songs already present or repeated in the batch. */
+    @Test
+    void testAddAll() {
+        playlist.addSong(song1);
+        playlist.setShuffle(true);
+        long version = playlist.getVersion();
+        Song song3 = new Song("Third Song", "Third Artist", 0, 2021, "Jazz");
+        List<Song> added = playlist.addAll(List.of(song2, new Song("Test Song", "Test Artist", 5, 2023, "Pop"), song3,
+                new Song("Third Song", "Third Artist", 1, 2021, "Jazz")));
+
+        assertEquals(List.of(song2, song3), added);
+        assertEquals(3, playlist.size());
+        assertEquals(version + 1, playlist.getVersion());
+        assertEquals(3, playlist.getSongs().size());
+        assertSame(song3, playlist.getSongById(song3.getId()));
+        assertTrue(playlist.addAll(List.of(song1)).isEmpty());
+        assertEquals(version + 1, playlist.getVersion());
+    }
+
     /** Tests that adding a duplicate song is ignored. */
     @Test
     void testAddDuplicateSong() {
@@ -60,6 +84,61 @@ public class PlaylistTest {
         assertFalse(playlist.getSongs().contains(song1));
     }
 
+    /** Tests that a different instance of the same track counts as a duplicate. */
+    @Test
+    void testAddEqualSongIsIgnored() {
+        playlist.addSong(song1);
+        playlist.addSong(new Song("Test Song", "Test Artist", 99, 2023, "Pop"));
+
+        assertEquals(1, playlist.size());
+        assertEquals(0, playlist.getSongs().get(0).getPlayCount());
+    }
+
+    /** Tests exact lookup of a song by its identity. */
+    @Test
+    void testFindSong() {
+        playlist.addSong(song1);
+        playlist.addSong(song2);
+
+        assertSame(song2, playlist.findSong("Another Song", "Another Artist", 2022));
+        assertNull(playlist.findSong("Another Song", "Another Artist", 2021));
+        assertTrue(playlist.contains(song1));
+    }
+
+    /** Tests that removals keep the remaining songs in insertion order. */
+    @Test
+    void testRemoveKeepsOrder() {
+        Song song3 = new Song("Third Song", "Third Artist", 0, 2021, "Jazz");
+        playlist.addSong(song1);
+        playlist.addSong(song2);
+        playlist.addSong(song3);
+        playlist.removeSong(song1);
+        playlist.removeSong(song2);
+        playlist.addSong(song1);
+
+        assertEquals(2, playlist.size());
+        assertEquals(song3, playlist.getSongs().get(0));
+        assertEquals(song1, playlist.getSongs().get(1));
+    }
+
+    /** Tests that readers share one immutable snapshot until the playlist changes. */
+    @Test
+    void testGetSongsSharesSnapshotUntilChange() {
+        playlist.addSong(song1);
+        List<Song> first = playlist.getSongs();
+        long version = playlist.getVersion();
+
+        assertSame(first, playlist.getSongs());
+        assertThrows(UnsupportedOperationException.class, () -> first.add(song2));
+
+        playlist.addSong(song2);
+
+        assertNotEquals(version, playlist.getVersion());
+        assertEquals(1, first.size());
+        assertEquals(2, playlist.getSongs().size());
+        assertSame(song2, playlist.getSong(1));
+    }
+
     /** Tests enabling and disabling shuffle mode. */
     @Test
     void testSetShuffle() {
@@ -76,6 +155,172 @@ public class PlaylistTest {
         assertEquals(song1, playlist.getSongs().get(0)); // Order preserved
     }
 
+    /** Tests that removing a song while shuffled leaves the rest of the shuffled order untouched. */
+    @Test
+    void testShuffleOrderStableOnRemove() {
+        for (int i = 0; i < 20; i++) {
+            playlist.addSong(new Song("Song " + i, "Artist", 0, 2020, "Pop"));
+        }
+        playlist.setShuffle(true);
+        List<Song> before = new ArrayList<>(playlist.getSongs());
+        Song removed = before.get(7);
+
+        playlist.removeSong(removed);
+        before.remove(removed);
+
+        assertEquals(before, playlist.getSongs());
+    }
+
+    /** Tests that adding a song while shuffled moves at most one existing song. */
+    @Test
+    void testShuffleOrderStableOnAdd() {
+        for (int i = 0; i < 20; i++) {
+            playlist.addSong(new Song("Song " + i, "Artist", 0, 2020, "Pop"));
+        }
+        playlist.setShuffle(true);
+        List<Song> before = playlist.getSongs();
+
+        playlist.addSong(song1);
+        List<Song> after = playlist.getSongs();
+
+        assertEquals(21, after.size());
+        assertTrue(after.contains(song1));
+        int moved = 0;
+        for (int i = 0; i < before.size(); i++) {
+            if (!before.get(i).equals(after.get(i))) {
+                moved++;
+            }
+        }
+        assertTrue(moved <= 1);
+    }
+
+    /** Tests that iterating the playlist yields the same order as the snapshot, shuffled or not. */
+    @Test
+    void testIteratorFollowsCurrentOrder() {
+        for (int i = 0; i < 10; i++) {
+            playlist.addSong(new Song("Song " + i, "Artist", 0, 2020, "Pop"));
+        }
+        playlist.setShuffle(true);
+        List<Song> iterated = new ArrayList<>();
+        for (Song song : playlist) {
+            iterated.add(song);
+        }
+
+        assertEquals(playlist.getSongs(), iterated);
+    }
+
+    /** Tests finding and removing songs by id, including after other songs were removed and the list compacted. */
+    @Test
+    void testSongsById() {
+        List<Song> added = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Song song = new Song("Song " + i, "Artist", 0, 2020, "Pop");
+            added.add(song);
+            playlist.addSong(song);
+        }
+        playlist.setShuffle(true);
+
+        assertSame(added.get(3), playlist.removeSongById(added.get(3).getId()));
+        assertNull(playlist.removeSongById(added.get(3).getId()));
+        assertNull(playlist.getSongById(added.get(3).getId()));
+        assertEquals(9, playlist.getSongs().size());
+        for (int i = 0; i < 8; i++) {
+            playlist.removeSongById(added.get(i).getId());
+        }
+
+        assertSame(added.get(8), playlist.getSongById(added.get(8).getId()));
+        assertSame(added.get(9), playlist.getSongById(added.get(9).getId()));
+        assertEquals(2, playlist.size());
+        assertFalse(playlist.contains(added.get(0)));
+        assertTrue(playlist.removeSong(added.get(9)));
+        assertNull(playlist.getSongById(added.get(9).getId()));
+    }
+
+    /** Tests that an iterator started after a removal is not disturbed when building a snapshot compacts the slots. */
+    @Test
+    void testIteratorSurvivesCompaction() {
+        for (int i = 0; i < 10; i++) {
+            playlist.addSong(new Song("Song " + i, "Artist", 0, 2020, "Pop"));
+        }
+        playlist.removeSong(Song.key("Song 0", "Artist", 2020));
+        List<Song> iterated = new ArrayList<>();
+        for (Song song : playlist) {
+            iterated.add(song);
+            playlist.getSongs();
+        }
+
+        assertEquals(playlist.getSongs(), iterated);
+        assertEquals(9, iterated.size());
+    }
+
+    /** Tests that readers running alongside changes always see whole snapshots and find songs that stay. */
+    @Test
+    void testReadersDuringChanges() throws InterruptedException {
+        playlist.addSong(song1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                Song song = new Song("Song " + i, "Artist", 0, 2020, "Pop");
+                playlist.addSong(song);
+                if (i % 2 == 0) {
+                    playlist.removeSong(song);
+                }
+                if (i % 100 == 0) {
+                    playlist.setShuffle(!playlist.isShuffled());
+                }
+            }
+            done.set(true);
+        });
+        Thread[] readers = new Thread[3];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        List<Song> songs = playlist.getSongs();
+                        assertEquals(songs.size(), new HashSet<>(songs).size());
+                        assertFalse(songs.contains(null));
+                        assertTrue(songs.contains(song1));
+                        assertSame(song1, playlist.findSong("Test Song", "Test Artist", 2023));
+                        assertSame(song1, playlist.getSongById(song1.getId()));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            readers[t].start();
+        }
+        writer.start();
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(1001, playlist.size());
+        assertEquals(1001, playlist.getSongs().size());
+    }
+
+    /** Tests finding positions in the current order, by instance, across shuffles and changes. */
+    @Test
+    void testIndexOf() {
+        for (int i = 0; i < 10; i++) {
+            playlist.addSong(new Song("Song " + i, "Artist", 0, 2020, "Pop"));
+        }
+        playlist.setShuffle(true);
+        List<Song> songs = playlist.getSongs();
+        for (int i = 0; i < songs.size(); i++) {
+            assertEquals(i, playlist.indexOf(songs.get(i)));
+        }
+
+        playlist.removeSong(songs.get(0));
+        assertEquals(-1, playlist.indexOf(songs.get(0)));
+        assertEquals(-1, playlist.indexOf(new Song("Song 1", "Artist", 0, 2020, "Pop")));
+        assertEquals(-1, playlist.indexOf(null));
+        Song last = songs.get(9);
+        assertSame(last, playlist.getSongs().get(playlist.indexOf(last)));
+    }
+
     /** Tests string representation with shuffle state. */
     @Test
     void testToStringWithShuffle() {
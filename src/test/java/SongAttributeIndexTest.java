@@ -0,0 +1,114 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SongAttributeIndex class, verifying compound queries against a full scan.
+ */
+public class SongAttributeIndexTest {
+
+    private static final String[] GENRES = {"Pop", "Rock", "Jazz", "Indie"};
+    private static final String[] ARTISTS = {"Taylor Swift", "Coldplay", "Adele", "Prince", "Drake"};
+
+    private SongAttributeIndex index;
+    private PlayCountIndex playCounts;
+    private List<Song> songs;
+
+    /** Sets up an index of random songs before each test. */
+    @BeforeEach
+    void setUp() {
+        index = new SongAttributeIndex();
+        playCounts = new PlayCountIndex();
+        songs = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 3000; i++) {
+            Song song = new Song("Song " + i, ARTISTS[random.nextInt(ARTISTS.length)], random.nextInt(2_000_000),
+                    2015 + random.nextInt(10), i % 50 == 0 ? null : GENRES[random.nextInt(GENRES.length)]);
+            songs.add(song);
+            index.add(song);
+            playCounts.add(song);
+        }
+    }
+
+    /** returns the songs matching a query by scanning every song */
+    private List<Song> scan(SongQuery query) {
+        List<Song> result = new ArrayList<>();
+        for (Song song : songs) {
+            if (query.matches(song)) {
+                result.add(song);
+            }
+        }
+        return result;
+    }
+
+    /** Tests compound queries, including the example from the feature request. */
+    @Test
+    void testCompoundQueriesMatchScan() {
+        List<SongQuery> queries = Arrays.asList(
+                new SongQuery().genres("Pop").years(2020, 2022).artists("Taylor Swift").minPlays(1_000_000),
+                new SongQuery().genres("Pop", "Rock"),
+                new SongQuery().artists("Adele", "Drake").years(2016, 2016),
+                new SongQuery().years(2000, 2017).minPlays(500_000),
+                new SongQuery().minPlays(1_900_000),
+                new SongQuery(),
+                new SongQuery().genres("Polka"),
+                new SongQuery().artists("Nobody").genres("Pop"));
+        for (SongQuery query : queries) {
+            List<Song> expected = scan(query);
+            assertEquals(expected, index.find(query, playCounts));
+            assertEquals(expected.size(), index.count(query, playCounts));
+        }
+    }
+
+    /** Tests that removed songs and changed play counts are reflected. */
+    @Test
+    void testRemoveAndPlays() {
+        SongQuery query = new SongQuery().artists("Prince").minPlays(1_000_000);
+        List<Song> before = index.find(query, playCounts);
+        Song removed = before.get(0);
+        index.remove(removed);
+        songs.remove(removed);
+
+        Song almost = new Song("Almost", "Prince", 999_999, 2020, "Rock");
+        index.add(almost);
+        songs.add(almost);
+        assertFalse(index.find(query, playCounts).contains(almost));
+        almost.incrementPlayCount();
+
+        assertEquals(scan(query), index.find(query, playCounts));
+        assertFalse(index.find(query, playCounts).contains(removed));
+        assertTrue(index.find(query, playCounts).contains(almost));
+        assertThrows(IllegalArgumentException.class, () -> new SongQuery().years(2022, 2020));
+    }
+
+    /** Tests that rows freed by removed songs are reused, so churn does not grow the bitmaps. */
+    @Test
+    void testRowsAreReused() {
+        Random random = new Random(11);
+        for (int round = 0; round < 5; round++) {
+            List<Song> removed = new ArrayList<>(songs.subList(0, 1000));
+            for (Song song : removed) {
+                index.remove(song);
+                playCounts.remove(song);
+            }
+            songs.removeAll(removed);
+            for (int i = 0; i < 1000; i++) {
+                Song song = new Song("Churn " + round + " " + i, ARTISTS[random.nextInt(ARTISTS.length)],
+                        random.nextInt(2_000_000), 2015 + random.nextInt(10), GENRES[random.nextInt(GENRES.length)]);
+                songs.add(song);
+                index.add(song);
+                playCounts.add(song);
+            }
+        }
+
+        assertEquals(3000, index.rowCount());
+        SongQuery query = new SongQuery().genres("Pop", "Jazz").years(2016, 2020);
+        assertEquals(scan(query), index.find(query, playCounts));
+        assertEquals(3000, index.count(new SongQuery(), playCounts));
+        assertThrows(IllegalArgumentException.class, () -> index.add(Song.key("Key", "Adele", 2020)));
+    }
+}
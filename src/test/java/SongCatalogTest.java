@@ -0,0 +1,102 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SongCatalog class, verifying the binary format round trip and header validation.
+ */
+public class SongCatalogTest {
+
+    @TempDir
+    Path dir;
+
+    /** Tests that songs written to a catalog read back with the same fields and order. */
+    @Test
+    void testWriteAndOpen() throws IOException {
+        Song first = new Song("Midnight Rain", "Taylor Swift", 12564321, 2022, "Pop");
+        Song second = new Song("Anti-Hero", "Taylor Swift", 89123456, 2022, "Pop");
+        Song third = new Song("Ünïcode", "Bjørk", 7, 1999, null);
+        Path file = dir.resolve("songs.cat");
+
+        SongCatalog.write(file, List.of(first, second, third));
+        SongCatalog catalog = SongCatalog.open(file);
+
+        assertEquals(3, catalog.size());
+        assertEquals("Anti-Hero", catalog.getTitle(1));
+        assertEquals(89123456, catalog.getPlayCount(1));
+        assertEquals(1999, catalog.getYear(2));
+        assertNull(catalog.getGenre(2));
+        Song read = catalog.getSong(2);
+        assertEquals(third, read);
+        assertEquals("Bjørk", read.getArtist());
+        assertEquals(List.of(first, second, third), catalog.getSongs());
+    }
+
+    /** Tests that an empty catalog can be written and opened. */
+    @Test
+    void testEmptyCatalog() throws IOException {
+        Path file = dir.resolve("empty.cat");
+
+        SongCatalog.write(file, List.of());
+
+        assertEquals(0, SongCatalog.open(file).size());
+    }
+
+    /** Tests that recent plays are stored as rows, skipping songs that are not in the catalog. */
+    @Test
+    void testHistory() throws IOException {
+        Path file = dir.resolve("songs.cat");
+        Song first = new Song("First", "Artist", 1, 2020, "Pop");
+        Song second = new Song("Second", "Artist", 2, 2021, null);
+        Song gone = new Song("Gone", "Artist", 3, 2022, "Rock");
+        SongCatalog.write(file, List.of(first, second), List.of(second, gone, first, second));
+        SongCatalog catalog = SongCatalog.open(file);
+
+        assertArrayEquals(new int[] {1, 0, 1}, catalog.getHistoryRows());
+        assertEquals("Second", catalog.getSong(1).getTitle());
+        assertEquals(0, SongCatalog.open(write(List.of(first))).getHistoryRows().length);
+    }
+
+    /** Tests that a version 1 catalog, written before history was stored, still opens. */
+    @Test
+    void testOpensVersionOne() throws IOException {
+        Path file = write(List.of(new Song("Song", "Artist", 7, 2020, "Pop")));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[5] = 1;
+        Files.write(file, bytes);
+        SongCatalog catalog = SongCatalog.open(file);
+
+        assertEquals(7, catalog.getPlayCount(0));
+        assertEquals(0, catalog.getHistoryRows().length);
+    }
+
+    /** returns a new catalog file holding the songs */
+    private Path write(List<Song> songs) throws IOException {
+        Path file = dir.resolve("written.cat");
+        SongCatalog.write(file, songs);
+        return file;
+    }
+
+    /** Tests that rows outside the catalog are rejected. */
+    @Test
+    void testRowOutOfRange() throws IOException {
+        Path file = dir.resolve("songs.cat");
+        SongCatalog.write(file, List.of(new Song("Song", "Artist", 0, 2020, "Pop")));
+        SongCatalog catalog = SongCatalog.open(file);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> catalog.getSong(1));
+    }
+
+    /** Tests that files which are not catalogs are rejected when opened. */
+    @Test
+    void testOpenRejectsOtherFiles() throws IOException {
+        Path file = dir.resolve("songs.dat");
+        Files.write(file, new byte[] {1, 2, 3, 4});
+
+        assertThrows(IOException.class, () -> SongCatalog.open(file));
+    }
+}
@@ -0,0 +1,49 @@
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.StringWriter;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SongFormatter class, verifying rows match the original String.format layout.
+ */
+public class SongFormatterTest {
+
+    /** returns the row the original String.format based toString produced */
+    private static String formatted(Song song) {
+        return String.format("%-28s %-14s %d (%d)    %s", song.getTitle(), "by " + song.getArtist(),
+                song.getPlayCount(), song.getYear(), song.getGenre());
+    }
+
+    /** Tests short, exact width and overlong fields and a missing genre against String.format. */
+    @Test
+    void testMatchesStringFormat() {
+        Song[] songs = {
+            new Song("Midnight Rain", "Taylor Swift", 12564321, 2022, "Pop"),
+            new Song("Exactly Twenty-Eight Chars!!", "Eleven Char", 0, 1999, "Rock"),
+            new Song("A Title Much Longer Than Twenty-Eight Characters", "An Artist With A Long Name", 5, 2001, null),
+            new Song("X", "Y", Long.MAX_VALUE, 2020, "")
+        };
+        for (Song song : songs) {
+            assertEquals(formatted(song), song.toString());
+        }
+    }
+
+    /** Tests numbered rows and that the buffer is reused between rows. */
+    @Test
+    void testFormatAndWrite() throws IOException {
+        SongFormatter formatter = new SongFormatter();
+        Song first = new Song("First", "Artist", 1, 2020, "Pop");
+        Song second = new Song("Second", "Artist", 2, 2021, "Rock");
+
+        CharSequence row = formatter.format(3, first);
+        assertEquals("3. " + formatted(first), row.toString());
+        assertSame(row, formatter.format(4, second));
+
+        StringWriter out = new StringWriter();
+        formatter.write(out, 1, first);
+        formatter.write(out, 2, second);
+
+        String separator = System.lineSeparator();
+        assertEquals("1. " + formatted(first) + separator + "2. " + formatted(second) + separator, out.toString());
+    }
+}
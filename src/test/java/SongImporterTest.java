@@ -0,0 +1,154 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SongImporter class, verifying parsing, validation, deduplication and progress reporting.
+ */
+public class SongImporterTest {
+
+    @TempDir
+    Path dir;
+
+    private MusicStreamingService service;
+    private List<String> rejected;
+    private List<Long> progress;
+    private SongImporter importer;
+
+    /** Sets up a service with the default songs and an importer that records what it reports. */
+    @BeforeEach
+    void setUp() {
+        service = new MusicStreamingService();
+        service.initialiseDefaultSongs();
+        rejected = new ArrayList<>();
+        progress = new ArrayList<>();
+        importer = new SongImporter(service, new ForkJoinPool(4), new ImportListener() {
+            @Override
+            public void rowRejected(long line, String reason) {
+                rejected.add(line + ": " + reason);
+            }
+
+            @Override
+            public void progress(long rows, long accepted, long rejected) {
+                progress.add(rows);
+            }
+        });
+    }
+
+    /** returns the totals of importing CSV text */
+    private SongImporter.Result importCsv(String text) throws IOException {
+        return importer.importFrom(new BufferedReader(new StringReader(text)), ',');
+    }
+
+    /** Tests importing CSV rows after a header, with quoted fields and a missing genre. */
+    @Test
+    void testImportCsv() throws IOException {
+        SongImporter.Result result = importCsv("title,artist,plays,year,genre\n"
+                + "Song One,Artist One,10,2001,Rock\n"
+                + "\"Hello, \"\"World\"\"\",Artist Two,20,2002,\n"
+                + "Song Three,Artist Three,30,2003\n");
+
+        assertEquals(3, result.getRows());
+        assertEquals(3, result.getImported());
+        assertEquals(0, result.getRejected());
+        assertEquals(13, service.getLibrary().size());
+        Song quoted = service.getLibrary().findSong("Hello, \"World\"", "Artist Two", 2002);
+        assertNotNull(quoted);
+        assertNull(quoted.getGenre());
+        assertEquals("Rock", service.getLibrary().findSong("Song One", "Artist One", 2001).getGenre());
+        assertEquals(1, service.search("hello world", 5).size());
+        assertEquals("Imported 3 of 3 rows (0 rejected)", result.toString());
+    }
+
+    /** Tests that invalid rows and duplicates are reported by line and skipped. */
+    @Test
+    void testRejectedRows() throws IOException {
+        SongImporter.Result result = importCsv("Good Song,Good Artist,1,2010,Pop\n"
+                + "Bad Plays,Artist,lots,2010,Pop\n"
+                + "Future Song,Artist,1,9999,Pop\n"
+                + "Too,Few\n"
+                + "Good Song,Good Artist,5,2010,Jazz\n"
+                + "Flowers,Miley Cyrus,1,2023,Pop\n"
+                + "\"Open quote,Artist,1,2010\n");
+
+        assertEquals(7, result.getRows());
+        assertEquals(1, result.getImported());
+        assertEquals(6, result.getRejected());
+        assertEquals(List.of("2: Invalid plays 'lots'",
+                "3: Year cannot be greater than " + Song.currentYear(),
+                "4: Expected 4 or 5 fields but found 2",
+                "5: Duplicate of an earlier row: Good Song by Good Artist",
+                "6: Already in the library: Flowers by Miley Cyrus",
+                "7: Unterminated quoted field"), rejected);
+        assertEquals(1, service.getLibrary().findSong("Good Song", "Good Artist", 2010).getPlayCount());
+    }
+
+    /** Tests that rejected rows use up no song ids and add no artist or genre names. */
+    @Test
+    void testRejectedRowsMakeNoSongs() throws IOException {
+        long before = new Song("Before", "Artist", 0, 2020, null).getId();
+        SongImporter.Result result = importCsv("Kept Song,Kept Artist,1,2010,Pop\n"
+                + "Future Song,Unseen Future Artist,1,9999,Unseen Future Genre\n"
+                + "Kept Song,Kept Artist,2,2010,Unseen Duplicate Genre\n"
+                + "Flowers,Miley Cyrus,1,2023,Unseen Library Genre\n");
+        long after = new Song("After", "Artist", 0, 2020, null).getId();
+
+        assertEquals(1, result.getImported());
+        assertEquals(before + 2, after);
+        assertEquals(StringDictionary.NONE, Song.ARTISTS.lookup("Unseen Future Artist"));
+        assertEquals(StringDictionary.NONE, Song.GENRES.lookup("Unseen Future Genre"));
+        assertEquals(StringDictionary.NONE, Song.GENRES.lookup("Unseen Duplicate Genre"));
+        assertEquals(StringDictionary.NONE, Song.GENRES.lookup("Unseen Library Genre"));
+    }
+
+    /** Tests a TSV file spanning several parse chunks, checking line numbers and progress across chunk borders. */
+    @Test
+    void testImportLargeTsvFile() throws IOException {
+        int rows = SongImporter.CHUNK_LINES * 3 + 17;
+        Path file = dir.resolve("catalog.tsv");
+        try (Writer out = Files.newBufferedWriter(file)) {
+            out.write("title\tartist\tplays\tyear\tgenre\n");
+            for (int i = 0; i < rows; i++) {
+                out.write(i == 20_000 ? "Broken row\n" : "Track " + i + "\tBand " + (i % 100) + "\t" + i + "\t2000\tPop, Rock\n");
+            }
+        }
+        SongImporter.Result result = importer.importFile(file);
+
+        assertEquals(rows, result.getRows());
+        assertEquals(rows - 1, result.getImported());
+        assertEquals(List.of("20002: Expected 4 or 5 fields but found 1"), rejected);
+        assertEquals(List.of((long) SongImporter.CHUNK_LINES, SongImporter.CHUNK_LINES * 2L, SongImporter.CHUNK_LINES * 3L,
+                (long) rows), progress);
+        assertEquals(10 + rows - 1, service.getLibrary().size());
+        assertEquals("Pop, Rock", service.getLibrary().findSong("Track 7", "Band 7", 2000).getGenre());
+        assertEquals(rows / 100 + (rows % 100 > 3 ? 1 : 0), service.countSongs(new SongQuery().artists("Band 3")));
+    }
+
+    /** Tests that the delimiter is picked from the first line when not given. */
+    @Test
+    void testDetectsTabs() throws IOException {
+        SongImporter.Result result = importer.importFrom(new BufferedReader(new StringReader("A, B\tC\t1\t2000\n")), (char) 0);
+
+        assertEquals(1, result.getImported());
+        assertNotNull(service.getLibrary().findSong("A, B", "C", 2000));
+    }
+
+    /** Tests that an empty input imports nothing. */
+    @Test
+    void testEmptyInput() throws IOException {
+        SongImporter.Result result = importCsv("");
+
+        assertEquals(0, result.getRows());
+        assertEquals(10, service.getLibrary().size());
+    }
+}
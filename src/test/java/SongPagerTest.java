@@ -0,0 +1,71 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SongPager class, verifying page navigation and listings that change while paging.
+ */
+public class SongPagerTest {
+
+    private Playlist playlist;
+    private SongPager pager;
+
+    /** Sets up a playlist of 25 songs paged 10 at a time. */
+    @BeforeEach
+    void setUp() {
+        playlist = new Playlist("Paged");
+        for (int i = 0; i < 25; i++) {
+            playlist.addSong(new Song("Song " + i, "Artist", i, 2020, "Pop"));
+        }
+        pager = SongPager.of(playlist, 10);
+    }
+
+    /** Tests moving forwards and backwards through the pages. */
+    @Test
+    void testNextAndPrevious() {
+        assertEquals(3, pager.getPageCount());
+        assertEquals("Song 0", pager.getPageSongs().get(0).getTitle());
+        assertFalse(pager.previous());
+
+        assertTrue(pager.next());
+        assertTrue(pager.next());
+        assertFalse(pager.next());
+
+        List<Song> last = pager.getPageSongs();
+        assertEquals(2, pager.getPage());
+        assertEquals(20, pager.getFirstIndex());
+        assertEquals(5, last.size());
+        assertEquals("Song 20", last.get(0).getTitle());
+
+        assertTrue(pager.previous());
+        assertEquals("Song 10", pager.getPageSongs().get(0).getTitle());
+    }
+
+    /** Tests jumping to a page and rejecting pages that do not exist. */
+    @Test
+    void testJumpTo() {
+        pager.jumpTo(1);
+        assertEquals(10, pager.getFirstIndex());
+        assertThrows(IllegalArgumentException.class, () -> pager.jumpTo(3));
+        assertThrows(IllegalArgumentException.class, () -> pager.jumpTo(-1));
+        assertThrows(IllegalArgumentException.class, () -> new SongPager(playlist::getSongs, 0));
+    }
+
+    /** Tests that pages follow the playlist as it shrinks and that an empty listing has one empty page. */
+    @Test
+    void testListingChanges() {
+        pager.jumpTo(2);
+        for (Song song : playlist.getSongs().subList(15, 25)) {
+            playlist.removeSong(song);
+        }
+
+        assertEquals(2, pager.getPageCount());
+        assertEquals(1, pager.getPage());
+        assertEquals(5, pager.getPageSongs().size());
+
+        SongPager empty = SongPager.of(new Playlist("Empty"), 10);
+        assertEquals(1, empty.getPageCount());
+        assertTrue(empty.getPageSongs().isEmpty());
+    }
+}
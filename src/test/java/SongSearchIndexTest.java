@@ -0,0 +1,131 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SongSearchIndex class, verifying tokenizing, word search, type-ahead and ranking.
+ */
+public class SongSearchIndexTest {
+
+    private SongSearchIndex index;
+    private Song midnightRain;
+    private Song antiHero;
+    private Song purpleRain;
+
+    /** Sets up an index of three songs before each test. */
+    @BeforeEach
+    void setUp() {
+        index = new SongSearchIndex();
+        midnightRain = new Song("Midnight Rain", "Taylor Swift", 300, 2022, "Pop");
+        antiHero = new Song("Anti-Hero", "Taylor Swift", 100, 2022, "Pop");
+        purpleRain = new Song("Purple Rain", "Prince", 200, 1984, "Rock");
+        index.add(midnightRain);
+        index.add(antiHero);
+        index.add(purpleRain);
+    }
+
+    /** Tests that text is split on punctuation and lower-cased. */
+    @Test
+    void testTokenize() {
+        assertEquals(Arrays.asList("anti", "hero", "2"), SongSearchIndex.tokenize("Anti-Hero (2)"));
+        assertTrue(SongSearchIndex.tokenize(" -- ").isEmpty());
+        assertTrue(SongSearchIndex.tokenize(null).isEmpty());
+    }
+
+    /** Tests that every query word must match and results are ranked by play count. */
+    @Test
+    void testSearchRanksByPlays() {
+        assertEquals(Arrays.asList(midnightRain, purpleRain), index.search("RAIN", 10));
+        assertEquals(Arrays.asList(midnightRain), index.search("swift rain", 10));
+        assertEquals(Arrays.asList(midnightRain), index.search("rain", 1));
+        assertTrue(index.search("swift prince", 10).isEmpty());
+        assertTrue(index.search("ra", 10).isEmpty());
+    }
+
+    /** Tests that the ranking follows play counts as they change. */
+    @Test
+    void testRankingFollowsPlays() {
+        for (int i = 0; i < 101; i++) {
+            purpleRain.incrementPlayCount();
+        }
+
+        assertEquals(Arrays.asList(purpleRain, midnightRain), index.search("rain", 10));
+    }
+
+    /** Tests type-ahead matching where the last word may be incomplete. */
+    @Test
+    void testAutocomplete() {
+        assertEquals(Arrays.asList(midnightRain, purpleRain), index.autocomplete("r", 10));
+        assertEquals(Arrays.asList(midnightRain, antiHero), index.autocomplete("tay", 10));
+        assertEquals(Arrays.asList(antiHero), index.autocomplete("taylor he", 10));
+        assertTrue(index.autocomplete("prince her", 10).isEmpty());
+        assertTrue(index.autocomplete("", 10).isEmpty());
+    }
+
+    /** Tests word suggestions, most common words first. */
+    @Test
+    void testSuggest() {
+        index.add(new Song("Rainbow", "Kacey Musgraves", 10, 2018, "Country"));
+
+        List<String> words = index.suggest("Ra", 10);
+
+        assertEquals(Arrays.asList("rain", "rainbow"), words);
+        assertEquals(Arrays.asList("rain"), index.suggest("ra", 1));
+    }
+
+    /** Tests that a batch added at once is searchable alongside songs added one at a time. */
+    @Test
+    void testAddAll() {
+        Song rainOnMe = new Song("Rain On Me", "Lady Gaga", 50, 2020, "Pop");
+        Song badRomance = new Song("Bad Romance", "Lady Gaga", 40, 2009, "Pop");
+        index.addAll(Arrays.asList(rainOnMe, badRomance));
+
+        assertEquals(Arrays.asList(midnightRain, purpleRain, rainOnMe), index.search("rain", 10));
+        assertEquals(Arrays.asList(rainOnMe, badRomance), index.search("gaga", 10));
+    }
+
+    /** Tests that a word shared by more songs than are kept ranked still returns the most played, as plays change. */
+    @Test
+    void testCommonWordRanking() {
+        List<Song> band = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            band.add(new Song("Track " + i, "The Band", i, 2000, "Rock"));
+        }
+        index.addAll(band.subList(0, 100));
+        for (Song song : band.subList(100, 200)) {
+            index.add(song);
+        }
+
+        assertEquals(Arrays.asList(band.get(199), band.get(198)), index.search("band", 2));
+        for (int i = 0; i < 500; i++) {
+            band.get(3).incrementPlayCount();
+        }
+        assertEquals(Arrays.asList(band.get(3), band.get(199)), index.search("the band", 2));
+        assertEquals(Arrays.asList(band.get(3), band.get(199), band.get(198)), index.autocomplete("ba", 3));
+        assertEquals(Arrays.asList(band.get(3)), index.autocomplete("track 3", 1));
+
+        index.remove(band.get(3));
+        index.remove(band.get(199));
+        assertEquals(Arrays.asList(band.get(198), band.get(197)), index.search("band", 2));
+        assertEquals(band.get(1), index.search("band", 200).get(196));
+        assertEquals(Arrays.asList(band.get(5)), index.search("band 5", 10));
+        for (Song song : band) {
+            index.remove(song);
+        }
+        assertTrue(index.search("band", 10).isEmpty());
+    }
+
+    /** Tests that removed songs stop matching and their unused words are dropped. */
+    @Test
+    void testRemove() {
+        int terms = index.termCount();
+        index.remove(purpleRain);
+
+        assertEquals(Arrays.asList(midnightRain), index.search("rain", 10));
+        assertTrue(index.search("prince", 10).isEmpty());
+        assertEquals(terms - 2, index.termCount());
+    }
+}
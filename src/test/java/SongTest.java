@@ -47,6 +47,49 @@ public class SongTest {
         assertEquals(1, song.getPlayCount());
     }
 
+    /** Tests that songs with the same title, artist and year are equal regardless of play count and genre. */
+    @Test
+    void testEqualsAndHashCode() {
+        Song same = new Song("Test Song", "Test Artist", 42, 2023, "Rock");
+        Song other = new Song("Test Song", "Test Artist", 0, 2022, "Pop");
+
+        assertEquals(song, same);
+        assertEquals(song.hashCode(), same.hashCode());
+        assertNotEquals(song, other);
+    }
+
+    /** Tests that songs by the same artist and genre share codes and canonical strings. */
+    @Test
+    void testArtistAndGenreCodes() {
+        Song other = new Song("Other Song", new String("Test Artist"), 0, 2021, new String("Pop"));
+        Song different = new Song("Test Song", "Different Artist", 0, 2023, "Rock");
+
+        assertEquals(song.getArtistCode(), other.getArtistCode());
+        assertEquals(song.getGenreCode(), other.getGenreCode());
+        assertSame(song.getArtist(), other.getArtist());
+        assertNotEquals(song.getArtistCode(), different.getArtistCode());
+        assertNotEquals(song, different);
+    }
+
+    /** Tests that concurrent plays are all counted. */
+    @Test
+    void testConcurrentIncrementPlayCount() throws InterruptedException {
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    song.incrementPlayCount();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80000, song.getPlayCount());
+    }
+
     /** Tests the formatted string representation of the song. */
     @Test
     void testToStringFormat() {
@@ -0,0 +1,42 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the StringDictionary class, verifying encoding, lookup and decoding.
+ */
+public class StringDictionaryTest {
+
+    private StringDictionary dictionary;
+
+    /** Sets up an empty dictionary before each test. */
+    @BeforeEach
+    void setUp() {
+        dictionary = new StringDictionary();
+    }
+
+    /** Tests that codes are dense, stable and decode back to the same string. */
+    @Test
+    void testEncodeAndDecode() {
+        int pop = dictionary.encode("Pop");
+        int rock = dictionary.encode("Rock");
+
+        assertEquals(0, pop);
+        assertEquals(1, rock);
+        assertEquals(pop, dictionary.encode(new String("Pop")));
+        assertEquals("Rock", dictionary.decode(rock));
+        assertEquals(2, dictionary.size());
+    }
+
+    /** Tests that lookups do not add strings and null maps to NONE. */
+    @Test
+    void testLookupAndNull() {
+        dictionary.encode("Pop");
+
+        assertEquals(StringDictionary.NONE, dictionary.lookup("Jazz"));
+        assertEquals(1, dictionary.size());
+        assertEquals(StringDictionary.NONE, dictionary.encode(null));
+        assertNull(dictionary.decode(StringDictionary.NONE));
+        assertThrows(IndexOutOfBoundsException.class, () -> dictionary.decode(5));
+    }
+}
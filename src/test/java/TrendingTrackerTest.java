@@ -0,0 +1,215 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the TrendingTracker class, verifying window counts, bucket rotation, ranking and pruning.
+ */
+public class TrendingTrackerTest {
+
+    private ManualClock clock;
+    private TrendingTracker tracker;
+    private Song hit;
+    private Song classic;
+
+    /** Sets up a tracker on a clock the tests move by hand. */
+    @BeforeEach
+    void setUp() {
+        clock = new ManualClock(Instant.parse("2024-03-01T10:15:00Z"));
+        tracker = new TrendingTracker(clock);
+        hit = new Song("Hit", "Artist", 10, 2024, "Pop");
+        classic = new Song("Classic", "Artist", 1000, 1980, "Rock");
+    }
+
+    /** Tests that plays fall out of each window once it has passed. */
+    @Test
+    void testWindows() {
+        tracker.record(hit);
+        clock.advance(Duration.ofMinutes(30));
+        tracker.record(hit);
+        clock.advance(Duration.ofMinutes(45));
+
+        assertEquals(1, tracker.plays(hit, TrendingTracker.Window.HOUR));
+        assertEquals(2, tracker.plays(hit, TrendingTracker.Window.DAY));
+
+        clock.advance(Duration.ofDays(2));
+        tracker.record(hit);
+
+        assertEquals(1, tracker.plays(hit, TrendingTracker.Window.HOUR));
+        assertEquals(1, tracker.plays(hit, TrendingTracker.Window.DAY));
+        assertEquals(3, tracker.plays(hit, TrendingTracker.Window.WEEK));
+
+        clock.advance(Duration.ofDays(8));
+        assertEquals(0, tracker.plays(hit, TrendingTracker.Window.WEEK));
+        assertEquals(0, tracker.plays(classic, TrendingTracker.Window.WEEK));
+    }
+
+    /** Tests that reused buckets start from zero after a long quiet spell. */
+    @Test
+    void testBucketsAreReused() {
+        for (int i = 0; i < 5; i++) {
+            tracker.record(hit);
+        }
+        clock.advance(Duration.ofMinutes(60));
+        tracker.record(hit);
+
+        assertEquals(1, tracker.plays(hit, TrendingTracker.Window.HOUR));
+        clock.advance(Duration.ofDays(7));
+        tracker.record(hit);
+
+        assertEquals(1, tracker.plays(hit, TrendingTracker.Window.WEEK));
+    }
+
+    /** Tests ranking by recent plays, with lifetime plays breaking ties. */
+    @Test
+    void testTrending() {
+        Song newcomer = new Song("Newcomer", "Artist", 0, 2024, "Pop");
+        tracker.record(hit);
+        tracker.record(classic);
+        clock.advance(Duration.ofHours(3));
+        tracker.record(newcomer);
+        tracker.record(newcomer);
+        tracker.record(newcomer);
+
+        assertEquals(List.of(newcomer), tracker.trending(TrendingTracker.Window.HOUR, 5, song -> true));
+        assertEquals(List.of(newcomer, classic, hit), tracker.trending(TrendingTracker.Window.DAY, 5, song -> true));
+        assertEquals(List.of(newcomer, classic), tracker.trending(TrendingTracker.Window.WEEK, 2, song -> true));
+        assertTrue(tracker.trending(TrendingTracker.Window.DAY, 0, song -> true).isEmpty());
+
+        tracker.remove(newcomer);
+        assertEquals(List.of(classic, hit), tracker.trending(TrendingTracker.Window.DAY, 5, song -> true));
+        assertEquals(List.of(hit), tracker.trending(TrendingTracker.Window.DAY, 5, song -> song != classic));
+    }
+
+    /** Tests that a song played in every minute and hour keeps exact counts in its dense rings. */
+    @Test
+    void testBusySong() {
+        for (int minute = 0; minute < 3 * 60; minute++) {
+            tracker.record(hit);
+            tracker.record(hit);
+            clock.advance(Duration.ofMinutes(1));
+        }
+
+        assertEquals(118, tracker.plays(hit, TrendingTracker.Window.HOUR));
+        assertEquals(360, tracker.plays(hit, TrendingTracker.Window.DAY));
+        clock.advance(Duration.ofMinutes(30));
+        assertEquals(58, tracker.plays(hit, TrendingTracker.Window.HOUR));
+        clock.advance(Duration.ofHours(2));
+        tracker.record(hit);
+        assertEquals(1, tracker.plays(hit, TrendingTracker.Window.HOUR));
+        assertEquals(361, tracker.plays(hit, TrendingTracker.Window.WEEK));
+    }
+
+    /** Tests that the kept rankings match a count from scratch as songs are played between calls. */
+    @Test
+    void testRankingKeepsUp() {
+        Random random = new Random(42);
+        List<Song> songs = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            songs.add(new Song("Song " + i, "Artist", i, 2024, "Pop"));
+        }
+        for (int round = 0; round < 40; round++) {
+            for (int i = 0; i < 200; i++) {
+                tracker.record(songs.get((int) Math.abs(random.nextGaussian() * 60) % songs.size()));
+            }
+            if (round % 10 == 9) {
+                tracker.remove(songs.get(round));
+            }
+            clock.advance(Duration.ofSeconds(50));
+            for (TrendingTracker.Window window : TrendingTracker.Window.values()) {
+                Comparator<Song> order = Comparator.comparingLong((Song song) -> tracker.plays(song, window))
+                        .thenComparingLong(Song::getPlayCount).reversed();
+                List<Song> expected = new ArrayList<>(songs);
+                expected.removeIf(song -> tracker.plays(song, window) == 0 || song.getTitle().endsWith("0"));
+                expected.sort(order);
+
+                assertEquals(expected.subList(0, Math.min(20, expected.size())),
+                        tracker.trending(window, 20, song -> !song.getTitle().endsWith("0")));
+                assertEquals(expected.subList(0, Math.min(150, expected.size())),
+                        tracker.trending(window, 150, song -> !song.getTitle().endsWith("0")));
+            }
+        }
+    }
+
+    /** Tests that plays made while quiet songs are pruned are all kept. */
+    @Test
+    void testPruneDuringPlays() throws InterruptedException {
+        List<Song> songs = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            songs.add(new Song("Song " + i, "Artist", i, 2024, "Pop"));
+            tracker.record(songs.get(i));
+        }
+        clock.advance(Duration.ofDays(8));
+        Thread player = new Thread(() -> songs.forEach(tracker::record));
+
+        player.start();
+        tracker.prune();
+        player.join();
+
+        for (Song song : songs) {
+            assertEquals(1, tracker.plays(song, TrendingTracker.Window.WEEK), song.getTitle());
+        }
+    }
+
+    /** Tests that songs not played for a week are dropped. */
+    @Test
+    void testPrune() {
+        tracker.record(hit);
+        clock.advance(Duration.ofDays(3));
+        tracker.record(classic);
+        clock.advance(Duration.ofDays(5));
+        tracker.prune();
+
+        assertEquals(1, tracker.size());
+        assertEquals(1, tracker.plays(classic, TrendingTracker.Window.WEEK));
+    }
+
+    /** Tests parsing window names. */
+    @Test
+    void testParseWindow() {
+        assertEquals(TrendingTracker.Window.HOUR, TrendingTracker.Window.parse("1h"));
+        assertEquals(TrendingTracker.Window.WEEK, TrendingTracker.Window.parse(" 7D "));
+        assertEquals("24h", TrendingTracker.Window.DAY.getLabel());
+        assertThrows(IllegalArgumentException.class, () -> TrendingTracker.Window.parse("1y"));
+    }
+
+    /**
+     * Clock that only moves when told to.
+     */
+    private static final class ManualClock extends Clock {
+        private Instant now; // Current time
+
+        private ManualClock(Instant now) {
+            this.now = now;
+        }
+
+        /** Moves the clock forward. */
+        private void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
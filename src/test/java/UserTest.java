@@ -0,0 +1,151 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the User class, verifying playlists, per playlist shuffle and history.
+ */
+public class UserTest {
+
+    private final Map<Long, Song> catalog = new HashMap<>();
+    private User user;
+    private Song first;
+    private Song second;
+
+    /** Sets up a user and two catalog songs before each test. */
+    @BeforeEach
+    void setUp() {
+        user = new User(7, " Alex ", 3, catalog::get);
+        first = new Song("First", "Artist", 1, 2020, "Pop");
+        second = new Song("Second", "Artist", 2, 2021, "Rock");
+        catalog.put(first.getId(), first);
+        catalog.put(second.getId(), second);
+    }
+
+    /** Tests the user's identity and validation. */
+    @Test
+    void testIdentity() {
+        assertEquals(7, user.getId());
+        assertEquals("Alex", user.getName());
+        assertEquals("Alex (#7)", user.toString());
+        assertThrows(IllegalArgumentException.class, () -> new User(1, " ", 3, catalog::get));
+        assertThrows(IllegalArgumentException.class, () -> new User(1, "Sam", 0, catalog::get));
+    }
+
+    /** Tests creating, filling and deleting playlists. */
+    @Test
+    void testPlaylists() {
+        assertTrue(user.getPlaylistNames().isEmpty());
+        user.createPlaylist("Gym");
+        user.createPlaylist("Chill");
+        assertThrows(IllegalArgumentException.class, () -> user.createPlaylist("Gym"));
+
+        assertTrue(user.addToPlaylist("Gym", first));
+        assertTrue(user.addToPlaylist("Gym", second));
+        assertFalse(user.addToPlaylist("Gym", first));
+        assertTrue(user.removeFromPlaylist("Gym", first));
+
+        assertEquals(Arrays.asList("Gym", "Chill"), user.getPlaylistNames());
+        assertEquals(Arrays.asList(second), user.getPlaylistSongs("Gym"));
+        assertSame(second, user.getPlaylistSongs("Gym").get(0));
+        assertTrue(user.removePlaylist("Chill"));
+        assertFalse(user.removePlaylist("Chill"));
+        assertThrows(IllegalArgumentException.class, () -> user.getPlaylistSongs("Chill"));
+    }
+
+    /** Tests that shuffle is kept per playlist and keeps every song. */
+    @Test
+    void testShufflePerPlaylist() {
+        user.createPlaylist("Gym");
+        user.createPlaylist("Chill");
+        user.addToPlaylist("Gym", first);
+        user.setShuffle("Gym", true);
+        user.addToPlaylist("Gym", second);
+        user.addToPlaylist("Chill", first);
+
+        assertTrue(user.isShuffled("Gym"));
+        assertFalse(user.isShuffled("Chill"));
+        assertEquals(2, user.getPlaylistSongs("Gym").size());
+        assertTrue(user.getPlaylistSongs("Gym").containsAll(Arrays.asList(first, second)));
+        assertTrue(user.removeFromPlaylist("Gym", first));
+        assertEquals(Arrays.asList(second), user.getPlaylistSongs("Gym"));
+        user.setShuffle("Gym", false);
+        assertEquals(Arrays.asList(second), user.getPlaylistSongs("Gym"));
+    }
+
+    /** Tests that songs gone from the catalog drop out of playlists. */
+    @Test
+    void testRemovedSongsDropOut() {
+        user.createPlaylist("Gym");
+        user.addToPlaylist("Gym", first);
+        user.addToPlaylist("Gym", second);
+
+        catalog.remove(first.getId());
+
+        assertEquals(Arrays.asList(second), user.getPlaylistSongs("Gym"));
+        catalog.put(first.getId(), first);
+        assertEquals(Arrays.asList(second), user.getPlaylistSongs("Gym"));
+        assertTrue(user.addToPlaylist("Gym", first));
+    }
+
+    /** Tests that a long playlist keeps its order and every song through many removals, shuffled or not. */
+    @Test
+    void testLongPlaylist() {
+        user.createPlaylist("All");
+        List<Song> songs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Song song = new Song("Track " + i, "Band", 0, 2020, "Rock");
+            catalog.put(song.getId(), song);
+            songs.add(song);
+            assertTrue(user.addToPlaylist("All", song));
+        }
+        assertFalse(user.addToPlaylist("All", songs.get(500)));
+        assertFalse(user.addToPlaylist("All", Song.key("Track 1", "Band", 2020)));
+
+        for (int i = 0; i < 1000; i += 2) {
+            assertTrue(user.removeFromPlaylist("All", songs.get(i)));
+        }
+        assertFalse(user.removeFromPlaylist("All", songs.get(0)));
+        List<Song> odd = new ArrayList<>();
+        for (int i = 1; i < 1000; i += 2) {
+            odd.add(songs.get(i));
+        }
+        assertEquals(odd, user.getPlaylistSongs("All"));
+
+        user.setShuffle("All", true);
+        for (int i = 1; i < 500; i += 2) {
+            assertTrue(user.removeFromPlaylist("All", songs.get(i)));
+        }
+        assertTrue(user.addToPlaylist("All", songs.get(0)));
+        List<Song> shuffled = user.getPlaylistSongs("All");
+        assertEquals(251, shuffled.size());
+        assertEquals(251, new HashSet<>(shuffled).size());
+        assertTrue(shuffled.containsAll(odd.subList(250, 500)));
+        assertTrue(shuffled.contains(songs.get(0)));
+
+        user.setShuffle("All", false);
+        List<Song> expected = new ArrayList<>(odd.subList(250, 500));
+        expected.add(songs.get(0));
+        assertEquals(expected, user.getPlaylistSongs("All"));
+    }
+
+    /** Tests the user's own bounded history. */
+    @Test
+    void testHistory() {
+        assertTrue(user.getPlaybackHistory(5, song -> true).isEmpty());
+        for (int i = 0; i < 4; i++) {
+            user.recordPlay(i % 2 == 0 ? first : second);
+        }
+
+        List<Song> recent = user.getPlaybackHistory(5, song -> true);
+
+        assertEquals(Arrays.asList(second, first, second), recent);
+        assertEquals(Arrays.asList(first), user.getPlaybackHistory(5, song -> song == first));
+    }
+}